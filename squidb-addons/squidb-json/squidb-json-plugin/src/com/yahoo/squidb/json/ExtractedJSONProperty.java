@@ -0,0 +1,28 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.json;
+
+import com.yahoo.squidb.sql.Function;
+import com.yahoo.squidb.sql.TableModelName;
+
+/**
+ * A {@link JSONProperty} that selects the value at a single path of another JSON property, created using
+ * {@link JSONProperty#extract(String, String)}. SQLite's json_extract() returns scalar values as plain SQL values
+ * rather than JSON, so the extracted value is selected wrapped in a single element JSON array.
+ * {@link JSONPropertySupport#getValueFromJSON(com.yahoo.squidb.data.AbstractModel, JSONProperty,
+ * java.lang.reflect.Type) JSONPropertySupport.getValueFromJSON} unwraps it, so it can be read like any other
+ * JSONProperty.
+ */
+public class ExtractedJSONProperty<T> extends JSONProperty<T> {
+
+    public ExtractedJSONProperty(TableModelName tableModelName, String name, String alias, String columnDefinition) {
+        super(tableModelName, name, alias, columnDefinition);
+    }
+
+    public ExtractedJSONProperty(Function<String> function, String alias) {
+        super(function, alias);
+    }
+}
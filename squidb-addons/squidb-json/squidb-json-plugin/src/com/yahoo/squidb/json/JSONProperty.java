@@ -50,6 +50,22 @@ public class JSONProperty<T> extends StringProperty {
         return fromJSONFunction(JSONFunctions.json(jsonString), selectAs);
     }
 
+    /**
+     * Construct a JSONProperty that selects only the value at the given path of this property's JSON, using the
+     * json_extract() function from the json1 extension. Selecting a sub-path rather than the whole column avoids
+     * loading and parsing a large JSON document when only a small part of it is needed. Read the extracted value using
+     * {@link JSONPropertySupport#getValueFromJSON(com.yahoo.squidb.data.AbstractModel, JSONProperty,
+     * java.lang.reflect.Type) JSONPropertySupport.getValueFromJSON} with the Java type of the value at the path.
+     *
+     * @param path a PATH argument as described in the {@link JSONFunctions} documentation, e.g. "$.name"
+     * @param selectAs the alias to use. May be null.
+     * @return a property that selects the value at the given path
+     */
+    public <S> JSONProperty<S> extract(String path, String selectAs) {
+        Function<String> extracted = JSONFunctions.jsonExtract(this, path);
+        return new ExtractedJSONProperty<>(JSONFunctions.jsonArray(extracted), selectAs);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public JSONProperty<T> as(String newAlias) {
@@ -10,6 +10,7 @@ import com.yahoo.squidb.sql.SqlUtils;
 import com.yahoo.squidb.utility.Logger;
 
 import java.lang.reflect.Type;
+import java.util.List;
 
 /**
  * Business logic of managing serialization and deserialization of JSON properties. Clients of this plugin should
@@ -37,34 +38,43 @@ public class JSONPropertySupport {
     }
 
     /**
-     * Deserialize a JSON string property into the specified Java type
+     * Deserialize a JSON string property into the specified Java type. The parsed object is cached on the model using
+     * {@link AbstractModel#putDerivedValue(com.yahoo.squidb.sql.Property, Object)}, so repeated reads of an unchanged
+     * value don't parse it again.
      */
     public static <T> T getValueFromJSON(AbstractModel model, JSONProperty<T> property, Type javaType) {
-        String transitoryKey = transitoryKeyForProperty(property);
-        checkCacheIntegrity(model, property, transitoryKey);
+        String json = model.get(property); // Will throw if model doesn't have property
+        JSONObjectHolder<T> holder = getCachedHolder(model, property);
+        // The model discards the cached object when the property is changed through its own methods, so the string
+        // is almost always the same instance and the equality check is constant time. A full comparison is only needed
+        // if the model's values storage was written to directly.
+        if (holder != null && (holder.jsonString == json || SqlUtils.equals(holder.jsonString, json))) {
+            return holder.parsedObject;
+        }
 
-        if (!model.hasTransitory(transitoryKey)) {
-            T data = null;
-            String json = model.get(property); // Will throw if model doesn't have property
-            if (json != null) {
-                try {
-                    if (MAPPER == null) {
-                        throw new NullPointerException("JSONPropertySupport needs to be initialized with a "
-                                + "JSONMapper instance using setJSONMapper()");
-                    }
+        T data = null;
+        if (json != null) {
+            try {
+                if (MAPPER == null) {
+                    throw new NullPointerException("JSONPropertySupport needs to be initialized with a "
+                            + "JSONMapper instance using setJSONMapper()");
+                }
+                if (property instanceof ExtractedJSONProperty) {
+                    List<T> wrapped = MAPPER.fromJSON(json, ParameterizedTypeBuilder.build(List.class, javaType));
+                    data = wrapped == null || wrapped.isEmpty() ? null : wrapped.get(0);
+                } else {
                     data = MAPPER.fromJSON(json, javaType);
-                } catch (Exception e) {
-                    // TODO: Should this throw or at least not cache null?
-                    Logger.w(TAG, "Error deserializing JSON string: " + json, e);
+                }
+            } catch (Exception e) {
+                // TODO: Should this throw or at least not cache null?
+                Logger.w(TAG, "Error deserializing JSON string: " + json, e);
+                if (!model.isFrozen()) {
                     model.clearValue(property);
                 }
             }
-            putJSONTransitory(model, transitoryKey, data, json);
-            return data;
         }
-
-        JSONObjectHolder<T> holder = getJSONTransitory(model, transitoryKey);
-        return holder.parsedObject;
+        model.putDerivedValue(property, new JSONObjectHolder<>(data, json));
+        return data;
     }
 
     /**
@@ -86,7 +96,7 @@ public class JSONPropertySupport {
                 }
             }
             model.set(property, json);
-            putJSONTransitory(model, transitoryKeyForProperty(property), data, json);
+            model.putDerivedValue(property, new JSONObjectHolder<>(data, json));
             return true;
         } catch (Exception e) {
             Logger.w(TAG, "Error serializing object to JSON string: " + data, e);
@@ -95,33 +105,10 @@ public class JSONPropertySupport {
         }
     }
 
-    private static String transitoryKeyForProperty(JSONProperty<?> property) {
-        return "json__" + property.getName();
-    }
-
-    private static <T> void putJSONTransitory(AbstractModel model, String transitoryKey, T data, String jsonString) {
-        model.putTransitory(transitoryKey, new JSONObjectHolder<>(data, jsonString));
-    }
-
-    // We need to be able to check that our cached value is still correct, because some methods like
-    // model.clear(property) aren't able to clear associated transitory values
-    private static void checkCacheIntegrity(AbstractModel model, JSONProperty<?> property, String transitoryKey) {
-        if (!model.hasTransitory(transitoryKey)) {
-            return;
-        }
-        JSONObjectHolder<?> holder = getJSONTransitory(model, transitoryKey);
-        if (model.containsValue(property) || model.getDefaultValues().containsKey(property.getName())) {
-            String jsonValue = model.get(property);
-            if (SqlUtils.equals(holder.jsonString, jsonValue)) {
-                return;
-            }
-        }
-        model.clearTransitory(transitoryKey);
-    }
-
     @SuppressWarnings("unchecked")
-    private static <T> JSONObjectHolder<T> getJSONTransitory(AbstractModel model, String transitoryKey) {
-        return (JSONObjectHolder<T>) model.getTransitory(transitoryKey);
+    private static <T> JSONObjectHolder<T> getCachedHolder(AbstractModel model, JSONProperty<T> property) {
+        Object cached = model.getDerivedValue(property);
+        return cached instanceof JSONObjectHolder ? (JSONObjectHolder<T>) cached : null;
     }
 
 }
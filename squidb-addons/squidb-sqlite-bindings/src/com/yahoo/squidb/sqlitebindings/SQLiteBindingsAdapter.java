@@ -9,6 +9,7 @@ import com.yahoo.squidb.android.SquidCursorWrapper;
 import com.yahoo.squidb.data.ICursor;
 import com.yahoo.squidb.data.ISQLiteDatabase;
 import com.yahoo.squidb.data.ISQLitePreparedStatement;
+import com.yahoo.squidb.data.ITypedBindingSQLiteDatabase;
 import com.yahoo.squidb.data.SquidTransactionListener;
 import com.yahoo.squidb.utility.VersionCode;
 
@@ -20,7 +21,7 @@ import org.sqlite.database.sqlite.SQLiteTransactionListener;
  * ISQLiteDatabase implementation that wraps {@link org.sqlite.database.sqlite.SQLiteDatabase} from the Android
  * SQLite bindings project (https://www.sqlite.org/android/doc/trunk/www/index.wiki)
  */
-public class SQLiteBindingsAdapter implements ISQLiteDatabase {
+public class SQLiteBindingsAdapter implements ITypedBindingSQLiteDatabase {
 
     /**
      * The version of SQLite bundled by default with the squidb-sqlite-bindings module. If any user builds this module
@@ -119,16 +120,26 @@ public class SQLiteBindingsAdapter implements ISQLiteDatabase {
 
     @Override
     public ICursor rawQuery(String sql, Object[] bindArgs) {
+        return rawQuery(sql, bindArgs, null);
+    }
+
+    @Override
+    public ICursor rawQuery(String sql, Object[] bindArgs, int[] bindArgTypes) {
         return new SquidCursorWrapper(
-                db.rawQueryWithFactory(new SQLiteBindingsCursorFactory(bindArgs), sql, null, null));
+                db.rawQueryWithFactory(new SQLiteBindingsCursorFactory(bindArgs, bindArgTypes), sql, null, null));
     }
 
     @Override
     public String simpleQueryForString(String sql, Object[] bindArgs) {
+        return simpleQueryForString(sql, bindArgs, null);
+    }
+
+    @Override
+    public String simpleQueryForString(String sql, Object[] bindArgs, int[] bindArgTypes) {
         SQLiteStatement statement = null;
         try {
             statement = db.compileStatement(sql);
-            SQLiteBindingsCursorFactory.bindArgumentsToProgram(statement, bindArgs);
+            SQLiteBindingsCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
             return statement.simpleQueryForString();
         } finally {
             if (statement != null) {
@@ -139,10 +150,15 @@ public class SQLiteBindingsAdapter implements ISQLiteDatabase {
 
     @Override
     public long simpleQueryForLong(String sql, Object[] bindArgs) {
+        return simpleQueryForLong(sql, bindArgs, null);
+    }
+
+    @Override
+    public long simpleQueryForLong(String sql, Object[] bindArgs, int[] bindArgTypes) {
         SQLiteStatement statement = null;
         try {
             statement = db.compileStatement(sql);
-            SQLiteBindingsCursorFactory.bindArgumentsToProgram(statement, bindArgs);
+            SQLiteBindingsCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
             return statement.simpleQueryForLong();
         } finally {
             if (statement != null) {
@@ -248,10 +264,15 @@ public class SQLiteBindingsAdapter implements ISQLiteDatabase {
 
     @Override
     public int executeUpdateDelete(String sql, Object[] bindArgs) {
+        return executeUpdateDelete(sql, bindArgs, null);
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object[] bindArgs, int[] bindArgTypes) {
         SQLiteStatement statement = null;
         try {
             statement = db.compileStatement(sql);
-            SQLiteBindingsCursorFactory.bindArgumentsToProgram(statement, bindArgs);
+            SQLiteBindingsCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
             return statement.executeUpdateDelete();
         } finally {
             if (statement != null) {
@@ -262,10 +283,15 @@ public class SQLiteBindingsAdapter implements ISQLiteDatabase {
 
     @Override
     public long executeInsert(String sql, Object[] bindArgs) {
+        return executeInsert(sql, bindArgs, null);
+    }
+
+    @Override
+    public long executeInsert(String sql, Object[] bindArgs, int[] bindArgTypes) {
         SQLiteStatement statement = null;
         try {
             statement = db.compileStatement(sql);
-            SQLiteBindingsCursorFactory.bindArgumentsToProgram(statement, bindArgs);
+            SQLiteBindingsCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
             return statement.executeInsert();
         } finally {
             if (statement != null) {
@@ -7,6 +7,8 @@ package com.yahoo.squidb.sqlitebindings;
 
 import android.database.Cursor;
 
+import com.yahoo.squidb.sql.CompiledStatement;
+
 import org.sqlite.database.sqlite.SQLiteCursor;
 import org.sqlite.database.sqlite.SQLiteCursorDriver;
 import org.sqlite.database.sqlite.SQLiteDatabase;
@@ -23,23 +25,68 @@ import org.sqlite.database.sqlite.SQLiteQuery;
 public class SQLiteBindingsCursorFactory implements CursorFactory {
 
     private final Object[] sqlArgs;
+    private final int[] sqlArgTypes;
 
     public SQLiteBindingsCursorFactory(Object[] sqlArgs) {
+        this(sqlArgs, null);
+    }
+
+    /**
+     * @param sqlArgs the arguments to bind
+     * @param sqlArgTypes the {@link CompiledStatement} ARG_TYPE of each argument, or null to inspect the arguments
+     * when they are bound
+     */
+    public SQLiteBindingsCursorFactory(Object[] sqlArgs, int[] sqlArgTypes) {
         this.sqlArgs = sqlArgs;
+        this.sqlArgTypes = sqlArgTypes;
     }
 
     @Override
     public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable, SQLiteQuery query) {
-        bindArgumentsToProgram(query, sqlArgs);
+        bindArgumentsToProgram(query, sqlArgs, sqlArgTypes);
         return new SQLiteCursor(masterQuery, editTable, query);
     }
 
     public static void bindArgumentsToProgram(SQLiteProgram program, Object[] sqlArgs) {
+        bindArgumentsToProgram(program, sqlArgs, null);
+    }
+
+    /**
+     * Bind the given arguments to the program. If sqlArgTypes is not null, each argument is bound directly using its
+     * {@link CompiledStatement} ARG_TYPE rather than by inspecting the argument.
+     */
+    public static void bindArgumentsToProgram(SQLiteProgram program, Object[] sqlArgs, int[] sqlArgTypes) {
         if (sqlArgs == null) {
             return;
         }
+        if (sqlArgTypes == null) {
+            for (int i = 1; i <= sqlArgs.length; i++) {
+                bindObjectToProgram(program, i, sqlArgs[i - 1]);
+            }
+            return;
+        }
         for (int i = 1; i <= sqlArgs.length; i++) {
-            bindObjectToProgram(program, i, sqlArgs[i - 1]);
+            Object arg = sqlArgs[i - 1];
+            switch (sqlArgTypes[i - 1]) {
+                case CompiledStatement.ARG_TYPE_NULL:
+                    program.bindNull(i);
+                    break;
+                case CompiledStatement.ARG_TYPE_LONG:
+                    program.bindLong(i, ((Number) arg).longValue());
+                    break;
+                case CompiledStatement.ARG_TYPE_DOUBLE:
+                    program.bindDouble(i, ((Number) arg).doubleValue());
+                    break;
+                case CompiledStatement.ARG_TYPE_BOOLEAN:
+                    program.bindLong(i, (Boolean) arg ? 1 : 0);
+                    break;
+                case CompiledStatement.ARG_TYPE_BLOB:
+                    program.bindBlob(i, (byte[]) arg);
+                    break;
+                default:
+                    program.bindString(i, arg.toString());
+                    break;
+            }
         }
     }
 
@@ -14,21 +14,115 @@ import android.os.Build;
 import com.yahoo.squidb.data.ICursor;
 import com.yahoo.squidb.data.ISQLiteDatabase;
 import com.yahoo.squidb.data.ISQLitePreparedStatement;
+import com.yahoo.squidb.data.ITypedBindingSQLiteDatabase;
 import com.yahoo.squidb.data.SquidTransactionListener;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Wrapper for the default Android {@link SQLiteDatabase} that implements the common {@link ISQLiteDatabase}
  * interface.
+ * <p>
+ * The {@link SQLiteStatement SQLiteStatements} compiled by {@link #simpleQueryForLong(String, Object[])},
+ * {@link #simpleQueryForString(String, Object[])}, {@link #executeInsert(String, Object[])} and
+ * {@link #executeUpdateDelete(String, Object[])} are kept in a bounded LRU cache keyed by SQL, so repeated statements
+ * don't need to be compiled again. A statement is removed from the cache while it is in use, so concurrent calls
+ * with the same SQL each use their own statement. The cached statements are closed when this adapter is closed.
  */
-public class SQLiteDatabaseAdapter implements ISQLiteDatabase {
+public class SQLiteDatabaseAdapter implements ITypedBindingSQLiteDatabase {
+
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 16;
 
     private final SQLiteDatabase db;
 
+    private final int statementCacheSize;
+    private final Map<String, SQLiteStatement> statementCache;
+    private boolean statementCacheClosed = false;
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
     public SQLiteDatabaseAdapter(SQLiteDatabase db) {
+        this(db, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * @param db the database to wrap
+     * @param statementCacheSize the maximum number of compiled statements to cache, or 0 to disable the cache
+     */
+    public SQLiteDatabaseAdapter(SQLiteDatabase db, final int statementCacheSize) {
         if (db == null) {
             throw new NullPointerException("Can't create SQLiteDatabaseAdapter with a null SQLiteDatabase");
         }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("Statement cache size must be non-negative");
+        }
         this.db = db;
+        this.statementCacheSize = statementCacheSize;
+        this.statementCache = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > statementCacheSize) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the number of times a cached statement was reused
+     */
+    public long getStatementCacheHits() {
+        return statementCacheHits.get();
+    }
+
+    /**
+     * @return the number of times a statement had to be compiled because it was not found in the cache
+     */
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.get();
+    }
+
+    private SQLiteStatement acquireStatement(String sql) {
+        if (statementCacheSize > 0) {
+            SQLiteStatement statement;
+            synchronized (statementCache) {
+                statement = statementCache.remove(sql);
+            }
+            if (statement != null) {
+                statementCacheHits.incrementAndGet();
+                return statement;
+            }
+            statementCacheMisses.incrementAndGet();
+        }
+        return db.compileStatement(sql);
+    }
+
+    // Returns a statement acquired using acquireStatement to the cache, or closes it if it can't be reused
+    private void releaseStatement(String sql, SQLiteStatement statement, boolean reusable) {
+        if (reusable && statementCacheSize > 0) {
+            statement.clearBindings(); // Don't hold on to bound strings or blobs
+            SQLiteStatement previous;
+            synchronized (statementCache) {
+                if (!statementCacheClosed) {
+                    previous = statementCache.put(sql, statement);
+                    statement = null;
+                } else {
+                    previous = null;
+                }
+            }
+            if (previous != null) {
+                previous.close();
+            }
+        }
+        if (statement != null) {
+            statement.close();
+        }
     }
 
     private static class SQLiteTransactionListenerAdapter implements SQLiteTransactionListener {
@@ -102,6 +196,15 @@ public class SQLiteDatabaseAdapter implements ISQLiteDatabase {
 
     @Override
     public void close() {
+        List<SQLiteStatement> toClose;
+        synchronized (statementCache) {
+            statementCacheClosed = true;
+            toClose = new ArrayList<>(statementCache.values());
+            statementCache.clear();
+        }
+        for (SQLiteStatement statement : toClose) {
+            statement.close();
+        }
         db.close();
     }
 
@@ -199,34 +302,50 @@ public class SQLiteDatabaseAdapter implements ISQLiteDatabase {
 
     @Override
     public ICursor rawQuery(String sql, Object[] bindArgs) {
-        return new SquidCursorWrapper(db.rawQueryWithFactory(new SquidCursorFactory(bindArgs), sql, null, null));
+        return rawQuery(sql, bindArgs, null);
+    }
+
+    @Override
+    public ICursor rawQuery(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        return new SquidCursorWrapper(
+                db.rawQueryWithFactory(new SquidCursorFactory(bindArgs, bindArgTypes), sql, null, null));
     }
 
     @Override
     public String simpleQueryForString(String sql, Object[] bindArgs) {
-        SQLiteStatement statement = null;
+        return simpleQueryForString(sql, bindArgs, null);
+    }
+
+    @Override
+    public String simpleQueryForString(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        SQLiteStatement statement = acquireStatement(sql);
+        boolean success = false;
         try {
-            statement = db.compileStatement(sql);
-            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs);
-            return statement.simpleQueryForString();
+            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
+            String result = statement.simpleQueryForString();
+            success = true;
+            return result;
         } finally {
-            if (statement != null) {
-                statement.close();
-            }
+            releaseStatement(sql, statement, success);
         }
     }
 
     @Override
     public long simpleQueryForLong(String sql, Object[] bindArgs) {
-        SQLiteStatement statement = null;
+        return simpleQueryForLong(sql, bindArgs, null);
+    }
+
+    @Override
+    public long simpleQueryForLong(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        SQLiteStatement statement = acquireStatement(sql);
+        boolean success = false;
         try {
-            statement = db.compileStatement(sql);
-            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs);
-            return statement.simpleQueryForLong();
+            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
+            long result = statement.simpleQueryForLong();
+            success = true;
+            return result;
         } finally {
-            if (statement != null) {
-                statement.close();
-            }
+            releaseStatement(sql, statement, success);
         }
     }
 
@@ -252,29 +371,39 @@ public class SQLiteDatabaseAdapter implements ISQLiteDatabase {
 
     @Override
     public int executeUpdateDelete(String sql, Object[] bindArgs) {
-        SQLiteStatement statement = null;
+        return executeUpdateDelete(sql, bindArgs, null);
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        SQLiteStatement statement = acquireStatement(sql);
+        boolean success = false;
         try {
-            statement = db.compileStatement(sql);
-            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs);
-            return statement.executeUpdateDelete();
+            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
+            int result = statement.executeUpdateDelete();
+            success = true;
+            return result;
         } finally {
-            if (statement != null) {
-                statement.close();
-            }
+            releaseStatement(sql, statement, success);
         }
     }
 
     @Override
     public long executeInsert(String sql, Object[] bindArgs) {
-        SQLiteStatement statement = null;
+        return executeInsert(sql, bindArgs, null);
+    }
+
+    @Override
+    public long executeInsert(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        SQLiteStatement statement = acquireStatement(sql);
+        boolean success = false;
         try {
-            statement = db.compileStatement(sql);
-            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs);
-            return statement.executeInsert();
+            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
+            long result = statement.executeInsert();
+            success = true;
+            return result;
         } finally {
-            if (statement != null) {
-                statement.close();
-            }
+            releaseStatement(sql, statement, success);
         }
     }
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLiteOpenHelper;
+import com.yahoo.squidb.data.SquidDatabase;
+import com.yahoo.squidb.jdbc.JDBCOpenHelper;
+import com.yahoo.squidb.sql.Table;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * SquidDatabase used by the benchmarks. Each instance lives in its own temporary directory, which is deleted by
+ * {@link #destroy()}.
+ */
+public class BenchmarkDatabase extends SquidDatabase {
+
+    private final File directory;
+    private final boolean preparedStatementCacheEnabled;
+
+    public BenchmarkDatabase(boolean preparedStatementCacheEnabled) {
+        super();
+        try {
+            this.directory = Files.createTempDirectory("squidb-benchmarks").toFile();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to create benchmark database directory", e);
+        }
+        this.preparedStatementCacheEnabled = preparedStatementCacheEnabled;
+    }
+
+    @Override
+    public String getName() {
+        return "benchmarks.db";
+    }
+
+    @Override
+    protected Table[] getTables() {
+        return new Table[]{
+                BenchmarkModel.TABLE
+        };
+    }
+
+    @Override
+    protected ISQLiteOpenHelper createOpenHelper(String databaseName, OpenHelperDelegate delegate, int version) {
+        return new JDBCOpenHelper(directory.getAbsolutePath(), databaseName, delegate, version);
+    }
+
+    @Override
+    protected int getVersion() {
+        return 1;
+    }
+
+    @Override
+    protected boolean onUpgrade(ISQLiteDatabase db, int oldVersion, int newVersion) {
+        return true;
+    }
+
+    @Override
+    protected void onConfigure(ISQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+        setPreparedStatementCacheEnabled(preparedStatementCacheEnabled);
+    }
+
+    /**
+     * Delete the database and its temporary directory
+     */
+    public void destroy() {
+        clear();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * @return a new, unsaved model with values set for every column
+     */
+    public static BenchmarkModel newModel(int seed) {
+        return new BenchmarkModel()
+                .setFirstName("First" + seed)
+                .setLastName("Last" + seed)
+                .setBirthday(System.currentTimeMillis() - seed)
+                .setIsHappy(seed % 2 == 0)
+                .setLuckyNumber(seed)
+                .setScore(seed / 3.0)
+                .setData(new byte[]{(byte) seed, (byte) (seed >> 8), (byte) (seed >> 16)});
+    }
+
+    /**
+     * Insert the given number of rows in a single transaction
+     */
+    public void populate(int rowCount) {
+        beginTransaction();
+        try {
+            for (int i = 0; i < rowCount; i++) {
+                createNew(newModel(i));
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+    }
+}
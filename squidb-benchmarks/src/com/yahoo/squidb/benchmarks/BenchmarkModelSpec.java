@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.annotations.ColumnSpec;
+import com.yahoo.squidb.annotations.TableModelSpec;
+
+/**
+ * Model spec for the table used by the benchmarks. It includes a column of each of the common property types so that
+ * reading and writing rows exercises all the value storage and cursor reading code paths.
+ */
+@TableModelSpec(className = "BenchmarkModel", tableName = "benchmarkModels")
+public class BenchmarkModelSpec {
+
+    String firstName;
+
+    String lastName;
+
+    long birthday;
+
+    @ColumnSpec(defaultValue = "true")
+    boolean isHappy;
+
+    @ColumnSpec(defaultValue = "7")
+    int luckyNumber;
+
+    double score;
+
+    byte[] data;
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.data.SquidCursor;
+import com.yahoo.squidb.data.SquidDatabase;
+import com.yahoo.squidb.sql.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for row materialization: reading values out of a SquidCursor and into models. The
+ * readFromOpenCursor benchmarks reuse a cursor opened during setup, so they measure only the cost of
+ * SquidCursor.get and AbstractModel.readPropertiesFromCursor; queryAndReadAllRows and the queryFor* benchmarks include
+ * the cost of running the query. The readModelValues benchmarks compare the generated boxed getters with their
+ * primitive overloads on models read during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CursorReadBenchmark {
+
+    @Param({"1000"})
+    public int rowCount;
+
+    private BenchmarkDatabase database;
+    private Query query;
+    private SquidCursor<BenchmarkModel> cursor;
+    private List<BenchmarkModel> models;
+
+    @Setup
+    public void setup() {
+        database = new BenchmarkDatabase(true);
+        database.populate(rowCount);
+        query = Query.select(BenchmarkModel.PROPERTIES);
+        cursor = database.query(BenchmarkModel.class, query);
+        models = database.queryForList(BenchmarkModel.class, query);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cursor.close();
+        database.destroy();
+    }
+
+    @Benchmark
+    public void readFromOpenCursorIntoModel(Blackhole blackhole) {
+        BenchmarkModel model = new BenchmarkModel();
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            model.readPropertiesFromCursor(cursor);
+            blackhole.consume(model);
+        }
+    }
+
+    @Benchmark
+    public void readFromOpenCursorIntoNewModels(Blackhole blackhole) {
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            blackhole.consume(new BenchmarkModel(cursor));
+        }
+    }
+
+    @Benchmark
+    public void readFromOpenCursorWithGet(Blackhole blackhole) {
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            blackhole.consume(cursor.get(BenchmarkModel.FIRST_NAME));
+            blackhole.consume(cursor.get(BenchmarkModel.BIRTHDAY));
+            blackhole.consume(cursor.get(BenchmarkModel.LUCKY_NUMBER));
+            blackhole.consume(cursor.get(BenchmarkModel.SCORE));
+        }
+    }
+
+    @Benchmark
+    public void queryAndReadAllRows(Blackhole blackhole) {
+        SquidCursor<BenchmarkModel> queryCursor = database.query(BenchmarkModel.class, query);
+        try {
+            BenchmarkModel model = new BenchmarkModel();
+            for (queryCursor.moveToFirst(); !queryCursor.isAfterLast(); queryCursor.moveToNext()) {
+                model.readPropertiesFromCursor(queryCursor);
+                blackhole.consume(model);
+            }
+        } finally {
+            queryCursor.close();
+        }
+    }
+
+    @Benchmark
+    public void queryForList(Blackhole blackhole) {
+        blackhole.consume(database.queryForList(BenchmarkModel.class, query));
+    }
+
+    @Benchmark
+    public void queryForEachWithReusedModel(final Blackhole blackhole) {
+        database.queryForEach(BenchmarkModel.class, query, new BenchmarkModel(),
+                new SquidDatabase.ModelConsumer<BenchmarkModel>() {
+                    @Override
+                    public void accept(BenchmarkModel model) {
+                        blackhole.consume(model);
+                    }
+                });
+    }
+
+    @Benchmark
+    public long readModelValuesWithBoxedGetters() {
+        long sum = 0;
+        for (BenchmarkModel model : models) {
+            sum += model.getBirthday() + model.getLuckyNumber() + model.getScore().longValue()
+                    + (model.isHappy() ? 1 : 0);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readModelValuesWithPrimitiveGetters() {
+        long sum = 0;
+        for (BenchmarkModel model : models) {
+            sum += model.getBirthday(0) + model.getLuckyNumber(0) + (long) model.getScore(0)
+                    + (model.isHappy(false) ? 1 : 0);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.data.SimpleDataChangedNotifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for DataChangedNotifier dispatch. Each benchmark performs writes with the given number of notifiers
+ * registered for the written table, so comparing against notifierCount = 0 shows the overhead of dispatching
+ * notifications, both for writes outside a transaction (notifications flushed immediately) and for writes inside a
+ * transaction (notifications accumulated and flushed when the transaction ends).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataChangedNotifierBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"0", "1", "16"})
+    public int notifierCount;
+
+    private BenchmarkDatabase database;
+    private BenchmarkModel model;
+    private int counter = 0;
+    private long notificationCount = 0;
+
+    @Setup
+    public void setup() {
+        database = new BenchmarkDatabase(true);
+        model = BenchmarkDatabase.newModel(0);
+        database.createNew(model);
+        for (int i = 0; i < notifierCount; i++) {
+            database.registerDataChangedNotifier(new SimpleDataChangedNotifier(BenchmarkModel.TABLE) {
+                @Override
+                protected void onDataChanged() {
+                    notificationCount++;
+                }
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.unregisterAllDataChangedNotifiers();
+        database.destroy();
+    }
+
+    @Benchmark
+    public long updateOutsideTransaction() {
+        model.setLuckyNumber(counter++);
+        database.persist(model);
+        return notificationCount;
+    }
+
+    @Benchmark
+    public long updateBatchInTransaction() {
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                model.setLuckyNumber(counter++);
+                database.persist(model);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        return notificationCount;
+    }
+}
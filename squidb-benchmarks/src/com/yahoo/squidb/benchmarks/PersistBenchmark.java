@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for model persistence. The preparedStatementCache parameter compares inserts, updates, deletes and
+ * fetches by ID using the PreparedStatementCache against the uncached paths (e.g. SquidDatabase#insertRowLegacy),
+ * which compile new SQL for every row. Benchmarks that insert a single row build its model in the benchmark method, so
+ * their times include constructing one model.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"true", "false"})
+    public boolean preparedStatementCache;
+
+    private BenchmarkDatabase database;
+    private BenchmarkModel existing;
+    private int counter = 0;
+
+    /**
+     * A batch of new models, rebuilt before each invocation of the batch insert benchmarks. Level.Invocation setup
+     * adds timing overhead to every call, so only the benchmarks that insert a whole batch use this state.
+     */
+    @State(Scope.Thread)
+    public static class Batch {
+
+        private final BenchmarkModel[] models = new BenchmarkModel[BATCH_SIZE];
+        private int counter = 0;
+
+        @Setup(Level.Invocation)
+        public void prepareBatch() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                models[i] = BenchmarkDatabase.newModel(counter++);
+            }
+        }
+    }
+
+    @Setup
+    public void setup() {
+        database = new BenchmarkDatabase(preparedStatementCache);
+        existing = BenchmarkDatabase.newModel(-1);
+        database.createNew(existing);
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.destroy();
+    }
+
+    @Benchmark
+    public boolean insertSingleRow() {
+        return database.createNew(BenchmarkDatabase.newModel(counter++));
+    }
+
+    @Benchmark
+    public void insertBatchInTransaction(Batch batch) {
+        database.beginTransaction();
+        try {
+            for (BenchmarkModel model : batch.models) {
+                database.createNew(model);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    @Benchmark
+    public boolean insertBatchWithPersistAll(Batch batch) {
+        return database.persistAll(Arrays.asList(batch.models));
+    }
+
+    @Benchmark
+    public boolean updateExistingRow() {
+        existing.setLuckyNumber(counter++);
+        return database.persist(existing);
+    }
+
+    @Benchmark
+    public BenchmarkModel fetchById() {
+        return database.fetch(BenchmarkModel.class, existing.getRowId(), BenchmarkModel.PROPERTIES);
+    }
+
+    @Benchmark
+    public boolean insertAndDeleteById() {
+        BenchmarkModel model = BenchmarkDatabase.newModel(counter++);
+        database.createNew(model);
+        return database.delete(BenchmarkModel.class, model.getRowId());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.benchmarks;
+
+import com.yahoo.squidb.sql.CompileContext;
+import com.yahoo.squidb.sql.CompiledStatement;
+import com.yahoo.squidb.sql.Criterion;
+import com.yahoo.squidb.sql.Insert;
+import com.yahoo.squidb.sql.Query;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for building and compiling SQL statements (SqlBuilder and CompiledArgumentResolver)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlBuildingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int inCollectionSize;
+
+    private BenchmarkDatabase database;
+    private CompileContext compileContext;
+    private Query cachedQuery;
+    private List<Integer> inCollection;
+    private Query inCollectionQuery;
+
+    @Setup
+    public void setup() {
+        // Compile for the SQLite version the benchmarks actually run against
+        database = new BenchmarkDatabase(true);
+        compileContext = database.getCompileContext();
+        cachedQuery = buildQuery();
+        inCollection = new ArrayList<>(inCollectionSize);
+        for (int i = 0; i < inCollectionSize; i++) {
+            inCollection.add(i);
+        }
+        inCollectionQuery = Query.select(BenchmarkModel.PROPERTIES)
+                .where(BenchmarkModel.LUCKY_NUMBER.in(inCollection));
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.destroy();
+    }
+
+    private static Query buildQuery() {
+        return Query.select(BenchmarkModel.PROPERTIES)
+                .where(Criterion.and(BenchmarkModel.FIRST_NAME.like("First%"),
+                        BenchmarkModel.LUCKY_NUMBER.gt(5),
+                        BenchmarkModel.IS_HAPPY.isTrue()))
+                .orderBy(BenchmarkModel.BIRTHDAY.desc())
+                .limit(20, 10);
+    }
+
+    @Benchmark
+    public CompiledStatement buildAndCompileQuery() {
+        return buildQuery().compile(compileContext);
+    }
+
+    @Benchmark
+    public CompiledStatement compileCachedQuery() {
+        return cachedQuery.compile(compileContext);
+    }
+
+    @Benchmark
+    public CompiledStatement compileInCollectionQuery() {
+        return inCollectionQuery.compile(compileContext);
+    }
+
+    @Benchmark
+    public CompiledStatement buildAndCompileInsert() {
+        return Insert.into(BenchmarkModel.TABLE)
+                .columns(BenchmarkModel.FIRST_NAME, BenchmarkModel.LAST_NAME, BenchmarkModel.LUCKY_NUMBER)
+                .values("First", "Last", 7)
+                .compile(compileContext);
+    }
+}
@@ -11,12 +11,13 @@ import com.yahoo.android.sqlite.SQLiteTransactionListener;
 import com.yahoo.squidb.data.ICursor;
 import com.yahoo.squidb.data.ISQLiteDatabase;
 import com.yahoo.squidb.data.ISQLitePreparedStatement;
+import com.yahoo.squidb.data.ITypedBindingSQLiteDatabase;
 import com.yahoo.squidb.data.SquidTransactionListener;
 
 /**
  * Wrapper for the iOS port of SQLiteDatabase that implements the common {@link ISQLiteDatabase} interface.
  */
-public class IOSSQLiteDatabaseAdapter implements ISQLiteDatabase {
+public class IOSSQLiteDatabaseAdapter implements ITypedBindingSQLiteDatabase {
 
     private final SQLiteDatabase db;
 
@@ -183,15 +184,25 @@ public class IOSSQLiteDatabaseAdapter implements ISQLiteDatabase {
 
     @Override
     public ICursor rawQuery(String sql, Object[] bindArgs) {
-        return db.rawQueryWithFactory(new SquidCursorFactory(bindArgs), sql, null, null);
+        return rawQuery(sql, bindArgs, null);
+    }
+
+    @Override
+    public ICursor rawQuery(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        return db.rawQueryWithFactory(new SquidCursorFactory(bindArgs, bindArgTypes), sql, null, null);
     }
 
     @Override
     public String simpleQueryForString(String sql, Object[] bindArgs) {
+        return simpleQueryForString(sql, bindArgs, null);
+    }
+
+    @Override
+    public String simpleQueryForString(String sql, Object[] bindArgs, int[] bindArgTypes) {
         SQLiteStatement statement = null;
         try {
             statement = db.compileStatement(sql);
-            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs);
+            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
             return statement.simpleQueryForString();
         } finally {
             if (statement != null) {
@@ -202,10 +213,15 @@ public class IOSSQLiteDatabaseAdapter implements ISQLiteDatabase {
 
     @Override
     public long simpleQueryForLong(String sql, Object[] bindArgs) {
+        return simpleQueryForLong(sql, bindArgs, null);
+    }
+
+    @Override
+    public long simpleQueryForLong(String sql, Object[] bindArgs, int[] bindArgTypes) {
         SQLiteStatement statement = null;
         try {
             statement = db.compileStatement(sql);
-            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs);
+            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
             return statement.simpleQueryForLong();
         } finally {
             if (statement != null) {
@@ -236,10 +252,15 @@ public class IOSSQLiteDatabaseAdapter implements ISQLiteDatabase {
 
     @Override
     public int executeUpdateDelete(String sql, Object[] bindArgs) {
+        return executeUpdateDelete(sql, bindArgs, null);
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object[] bindArgs, int[] bindArgTypes) {
         SQLiteStatement statement = null;
         try {
             statement = db.compileStatement(sql);
-            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs);
+            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
             return statement.executeUpdateDelete();
         } finally {
             if (statement != null) {
@@ -250,10 +271,15 @@ public class IOSSQLiteDatabaseAdapter implements ISQLiteDatabase {
 
     @Override
     public long executeInsert(String sql, Object[] bindArgs) {
+        return executeInsert(sql, bindArgs, null);
+    }
+
+    @Override
+    public long executeInsert(String sql, Object[] bindArgs, int[] bindArgTypes) {
         SQLiteStatement statement = null;
         try {
             statement = db.compileStatement(sql);
-            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs);
+            SquidCursorFactory.bindArgumentsToProgram(statement, bindArgs, bindArgTypes);
             return statement.executeInsert();
         } finally {
             if (statement != null) {
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+import com.yahoo.squidb.data.ICursor;
+
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link ICursor} implementation for the JDBC adapter. JDBC result sets are forward-only and hold a lock on the
+ * underlying connection for as long as they are open, so like Android's CursorWindow this class copies the entire
+ * result set into memory when it is constructed. Values are stored using the same native types SQLite uses (Long,
+ * Double, String, byte[], or null) and are converted on read following the rules Android cursors use.
+ */
+public class JDBCCursor implements ICursor {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String[] columnNames;
+    private List<Object[]> rows;
+    private int position = -1;
+    private boolean closed = false;
+
+    JDBCCursor(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        columnNames = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+        }
+        rows = new ArrayList<>();
+        while (resultSet.next()) {
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = normalizeValue(resultSet.getObject(i + 1));
+            }
+            rows.add(row);
+        }
+    }
+
+    private static Object normalizeValue(Object value) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
+        }
+        return value;
+    }
+
+    @Override
+    public int getCount() {
+        return rows.size();
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(position + offset);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        int count = getCount();
+        if (position >= count) {
+            this.position = count;
+            return false;
+        }
+        if (position < 0) {
+            this.position = -1;
+            return false;
+        }
+        this.position = position;
+        return true;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(getCount() - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(position + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(position - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return position == 0 && getCount() != 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        int count = getCount();
+        return position == count - 1 && count != 0;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return getCount() == 0 || position == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        int count = getCount();
+        return count == 0 || position == count;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        // Mimic Android's handling of qualified column names
+        final int periodIndex = columnName.lastIndexOf('.');
+        if (periodIndex != -1) {
+            columnName = columnName.substring(periodIndex + 1);
+        }
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) throws IllegalArgumentException {
+        int index = getColumnIndex(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        }
+        return index;
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        return columnNames[columnIndex];
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    private Object getValue(int columnIndex) {
+        if (closed) {
+            throw new IllegalStateException("Attempted to read from a closed cursor");
+        }
+        if (position < 0 || position >= getCount()) {
+            throw new IndexOutOfBoundsException("Index " + position + " requested, with a size of " + getCount());
+        }
+        return rows.get(position)[columnIndex];
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null || value instanceof byte[]) {
+            return (byte[]) value;
+        } else if (value instanceof String) {
+            return ((String) value).getBytes(UTF_8);
+        }
+        throw new JDBCSQLiteException("Unable to convert " + value.getClass().getSimpleName() + " to blob");
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null || value instanceof String) {
+            return (String) value;
+        } else if (value instanceof byte[]) {
+            throw new JDBCSQLiteException("Unable to convert BLOB to string");
+        }
+        return value.toString();
+    }
+
+    @Override
+    public short getShort(int columnIndex) {
+        return (short) getLong(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        return (int) getLong(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null) {
+            return 0L;
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof String) {
+            String string = ((String) value).trim();
+            try {
+                return Long.parseLong(string);
+            } catch (NumberFormatException e) {
+                try {
+                    return (long) Double.parseDouble(string);
+                } catch (NumberFormatException e2) {
+                    return 0L;
+                }
+            }
+        }
+        throw new JDBCSQLiteException("Unable to convert BLOB to long");
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+        return (float) getDouble(columnIndex);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null) {
+            return 0.0;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return 0.0;
+            }
+        }
+        throw new JDBCSQLiteException("Unable to convert BLOB to double");
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        Object value = getValue(columnIndex);
+        if (value == null) {
+            return FIELD_TYPE_NULL;
+        } else if (value instanceof Double) {
+            return FIELD_TYPE_FLOAT;
+        } else if (value instanceof Number) {
+            return FIELD_TYPE_INTEGER;
+        } else if (value instanceof byte[]) {
+            return FIELD_TYPE_BLOB;
+        }
+        return FIELD_TYPE_STRING;
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        return getValue(columnIndex) == null;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        rows = new ArrayList<>(0);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLiteReaderOpenHelper;
+import com.yahoo.squidb.data.SquidDatabase;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * ISQLiteOpenHelper implementation for running SquidDatabase on a plain JVM using a SQLite JDBC driver. Returning an
+ * instance of this class in {@link SquidDatabase#createOpenHelper(String, SquidDatabase.OpenHelperDelegate, int)}
+ * will connect SquidDatabase to a {@link JDBCSQLiteDatabaseAdapter}. The version management logic mirrors that of
+ * android.database.sqlite.SQLiteOpenHelper.
+ * <p>
+ * By default, connections are opened using the "jdbc:sqlite:" URL scheme supported by org.xerial:sqlite-jdbc.
+ * Subclasses can override {@link #openConnection(String)} to use a different driver or connection properties.
+ * <p>
+ * This class also opens the read-only connections used by SquidDatabase's reader connection pool. Each one is a
+ * separate connection to the same file with PRAGMA query_only enabled.
+ */
+public class JDBCOpenHelper implements ISQLiteReaderOpenHelper {
+
+    private final File databaseFile;
+    private final SquidDatabase.OpenHelperDelegate delegate;
+    private final int version;
+
+    private JDBCSQLiteDatabaseAdapter database;
+    private boolean isInitializing = false;
+
+    /**
+     * @param path the directory the database file should be created in
+     * @param name the name of the database file
+     * @param delegate the delegate for handling open helper callbacks
+     * @param version the version of the database schema
+     */
+    public JDBCOpenHelper(String path, String name, SquidDatabase.OpenHelperDelegate delegate, int version) {
+        if (version < 1) {
+            throw new IllegalArgumentException("Version must be >= 1, was " + version);
+        }
+        this.databaseFile = new File(path, name);
+        this.delegate = delegate;
+        this.version = version;
+    }
+
+    /**
+     * Open a JDBC connection to the database file at the given path. The default implementation uses
+     * {@link DriverManager} with a "jdbc:sqlite:" URL.
+     */
+    protected Connection openConnection(String path) throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + path);
+    }
+
+    @Override
+    public synchronized ISQLiteDatabase openForWriting() {
+        if (database != null) {
+            if (database.isOpen()) {
+                return database;
+            }
+            database = null;
+        }
+
+        if (isInitializing) {
+            throw new IllegalStateException("openForWriting called recursively");
+        }
+
+        JDBCSQLiteDatabaseAdapter db = null;
+        try {
+            isInitializing = true;
+
+            File databaseParent = databaseFile.getParentFile();
+            if (databaseParent != null && !databaseParent.mkdirs() && !databaseParent.isDirectory()) {
+                throw new JDBCSQLiteException("Failed to create database parent directory");
+            }
+            String path = databaseFile.getPath();
+            try {
+                db = new JDBCSQLiteDatabaseAdapter(path, openConnection(path));
+            } catch (SQLException e) {
+                throw new JDBCSQLiteException("Failed to open database " + path, e);
+            }
+
+            delegate.onConfigure(db);
+
+            final int currentVersion = db.getVersion();
+            if (currentVersion != version) {
+                if (db.isReadOnly()) {
+                    throw new JDBCSQLiteException("Can't upgrade read-only database from version " + currentVersion
+                            + " to " + version + ": " + path);
+                }
+
+                db.beginTransaction();
+                try {
+                    if (currentVersion == 0) {
+                        delegate.onCreate(db);
+                    } else if (currentVersion > version) {
+                        delegate.onDowngrade(db, currentVersion, version);
+                    } else {
+                        delegate.onUpgrade(db, currentVersion, version);
+                    }
+                    db.setVersion(version);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            delegate.onOpen(db);
+
+            database = db;
+            return db;
+        } finally {
+            isInitializing = false;
+            if (db != null && db != database) {
+                db.close();
+            }
+        }
+    }
+
+    @Override
+    public ISQLiteDatabase openReaderConnection() {
+        String path = databaseFile.getPath();
+        JDBCSQLiteDatabaseAdapter db;
+        try {
+            db = new JDBCSQLiteDatabaseAdapter(path, openConnection(path));
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Failed to open reader connection to database " + path, e);
+        }
+        boolean configured = false;
+        try {
+            delegate.onConfigureReaderConnection(db);
+            db.execSQL("PRAGMA query_only = 1");
+            configured = true;
+            return db;
+        } finally {
+            if (!configured) {
+                db.close();
+            }
+        }
+    }
+
+    @Override
+    public String getDatabasePath() {
+        return databaseFile.getAbsolutePath();
+    }
+
+    @Override
+    public synchronized boolean deleteDatabase() {
+        close();
+        boolean deleted = databaseFile.delete();
+        deleted |= new File(databaseFile.getPath() + "-journal").delete();
+        deleted |= new File(databaseFile.getPath() + "-shm").delete();
+        deleted |= new File(databaseFile.getPath() + "-wal").delete();
+        return deleted;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (isInitializing) {
+            throw new IllegalStateException("Closed during initialization");
+        }
+        if (database != null && database.isOpen()) {
+            database.close();
+        }
+        database = null;
+    }
+}
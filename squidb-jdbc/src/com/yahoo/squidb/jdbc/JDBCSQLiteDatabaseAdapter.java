@@ -0,0 +1,724 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+import com.yahoo.squidb.data.ICursor;
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLitePreparedStatement;
+import com.yahoo.squidb.data.ITypedBindingSQLiteDatabase;
+import com.yahoo.squidb.data.SquidTransactionListener;
+import com.yahoo.squidb.sql.CompiledStatement;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wrapper for a JDBC {@link Connection} to a SQLite database that implements the common {@link ISQLiteDatabase}
+ * interface. This allows SquidDatabase to run on a desktop or server JVM (e.g. for profiling or load testing the
+ * data layer), using an embedded SQLite JDBC driver such as org.xerial:sqlite-jdbc.
+ * <p>
+ * Like android.database.sqlite.SQLiteDatabase, access to the underlying connection is serialized: each statement
+ * holds a lock on the connection while it executes, and a thread that begins a transaction holds that lock until
+ * the outermost transaction ends. Nested transactions follow Android's semantics--if any nested transaction is not
+ * marked successful, the whole transaction is rolled back when the outermost transaction ends.
+ * <p>
+ * Compiled statements used by the convenience methods (rawQuery, executeInsert, etc.) are kept in a small LRU cache,
+ * sized by {@link #setMaxSqlCacheSize(int)}, analogous to the per-connection statement cache on Android.
+ */
+public class JDBCSQLiteDatabaseAdapter implements ITypedBindingSQLiteDatabase {
+
+    private static final int DEFAULT_MAX_SQL_CACHE_SIZE = 25;
+    private static final int MAX_SQL_CACHE_SIZE = 100;
+
+    private final String path;
+    private final Connection connection;
+    private final ReentrantLock connectionLock = new ReentrantLock();
+    private final Deque<Transaction> transactionStack = new ArrayDeque<>();
+    private final StatementCache statementCache = new StatementCache();
+    private int maxSqlCacheSize = DEFAULT_MAX_SQL_CACHE_SIZE;
+    private volatile boolean closed = false;
+
+    public JDBCSQLiteDatabaseAdapter(String path, Connection connection) {
+        if (connection == null) {
+            throw new NullPointerException("Can't create JDBCSQLiteDatabaseAdapter with a null Connection");
+        }
+        this.path = path;
+        this.connection = connection;
+    }
+
+    private static class Transaction {
+
+        private final boolean exclusive;
+        private final SquidTransactionListener listener;
+        private boolean markedSuccessful;
+        private boolean childFailed;
+
+        private Transaction(boolean exclusive, SquidTransactionListener listener) {
+            this.exclusive = exclusive;
+            this.listener = listener;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class StatementCache extends LinkedHashMap<String, PreparedStatement> {
+
+        private StatementCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() > maxSqlCacheSize) {
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    }
+
+    void acquireConnection() {
+        connectionLock.lock();
+        if (closed) {
+            connectionLock.unlock();
+            throw new IllegalStateException("Attempted to use a closed database: " + path);
+        }
+    }
+
+    void releaseConnection() {
+        connectionLock.unlock();
+    }
+
+    // --- statement cache, must be called while holding the connection lock
+
+    private PreparedStatement acquireStatement(String sql) throws SQLException {
+        // Removing the statement from the cache while it's in use means that reentrant calls (e.g. from a
+        // transaction listener) will never be handed a statement that is already executing
+        PreparedStatement statement = statementCache.remove(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+        }
+        return statement;
+    }
+
+    private void releaseStatement(String sql, PreparedStatement statement) {
+        try {
+            statement.clearParameters();
+        } catch (SQLException e) {
+            closeQuietly(statement);
+            return;
+        }
+        PreparedStatement previous = statementCache.put(sql, statement);
+        if (previous != null && previous != statement) {
+            closeQuietly(previous);
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Ignored
+        }
+    }
+
+    static void bindArguments(PreparedStatement statement, Object[] bindArgs) throws SQLException {
+        bindArguments(statement, bindArgs, null);
+    }
+
+    static void bindArguments(PreparedStatement statement, Object[] bindArgs, int[] bindArgTypes)
+            throws SQLException {
+        if (bindArgs == null) {
+            return;
+        }
+        for (int i = 0; i < bindArgs.length; i++) {
+            int index = i + 1;
+            Object arg = bindArgs[i];
+            // Same rules as android.database.DatabaseUtils.bindObjectToProgram
+            int type = bindArgTypes != null ? bindArgTypes[i] : CompiledStatement.argumentType(arg);
+            switch (type) {
+                case CompiledStatement.ARG_TYPE_NULL:
+                    statement.setNull(index, java.sql.Types.NULL);
+                    break;
+                case CompiledStatement.ARG_TYPE_LONG:
+                    statement.setLong(index, ((Number) arg).longValue());
+                    break;
+                case CompiledStatement.ARG_TYPE_DOUBLE:
+                    statement.setDouble(index, ((Number) arg).doubleValue());
+                    break;
+                case CompiledStatement.ARG_TYPE_BOOLEAN:
+                    statement.setLong(index, (Boolean) arg ? 1 : 0);
+                    break;
+                case CompiledStatement.ARG_TYPE_BLOB:
+                    statement.setBytes(index, (byte[]) arg);
+                    break;
+                default:
+                    statement.setString(index, arg.toString());
+                    break;
+            }
+        }
+    }
+
+    static long readSingleLong(PreparedStatement statement) throws SQLException {
+        ResultSet resultSet = statement.executeQuery();
+        try {
+            if (!resultSet.next()) {
+                throw new JDBCSQLiteException("Simple query returned no rows");
+            }
+            return resultSet.getLong(1);
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    static String readSingleString(PreparedStatement statement) throws SQLException {
+        ResultSet resultSet = statement.executeQuery();
+        try {
+            if (!resultSet.next()) {
+                throw new JDBCSQLiteException("Simple query returned no rows");
+            }
+            return resultSet.getString(1);
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    /**
+     * Mimics the return value of android.database.sqlite.SQLiteStatement#executeInsert(): the rowid of the last
+     * inserted row if the statement changed any rows, or -1 otherwise. Must be called while holding the connection
+     * lock, immediately after executing the insert.
+     */
+    long lastInsertRowIdForChangeCount(int changes) throws SQLException {
+        if (changes <= 0) {
+            return -1;
+        }
+        String sql = "SELECT last_insert_rowid()";
+        PreparedStatement statement = acquireStatement(sql);
+        try {
+            return readSingleLong(statement);
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    private void executeRaw(String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+
+    // --- transactions
+
+    @Override
+    public void beginTransaction() {
+        beginTransactionInternal(true, null);
+    }
+
+    @Override
+    public void beginTransactionNonExclusive() {
+        beginTransactionInternal(false, null);
+    }
+
+    @Override
+    public void beginTransactionWithListener(SquidTransactionListener listener) {
+        beginTransactionInternal(true, listener);
+    }
+
+    @Override
+    public void beginTransactionWithListenerNonExclusive(SquidTransactionListener listener) {
+        beginTransactionInternal(false, listener);
+    }
+
+    private void beginTransactionInternal(boolean exclusive, SquidTransactionListener listener) {
+        acquireConnection();
+        boolean topLevel = transactionStack.isEmpty();
+        boolean begun = false;
+        try {
+            if (topLevel) {
+                executeRaw(exclusive ? "BEGIN EXCLUSIVE" : "BEGIN IMMEDIATE");
+                begun = true;
+            }
+            if (listener != null) {
+                listener.onBegin();
+            }
+            transactionStack.push(new Transaction(exclusive, listener));
+        } catch (SQLException e) {
+            rollbackAfterFailedBegin(topLevel && begun);
+            throw new JDBCSQLiteException("Error beginning transaction", e);
+        } catch (RuntimeException e) {
+            rollbackAfterFailedBegin(topLevel && begun);
+            throw e;
+        }
+    }
+
+    private void rollbackAfterFailedBegin(boolean rollback) {
+        try {
+            if (rollback) {
+                executeRaw("ROLLBACK");
+            }
+        } catch (SQLException e) {
+            // Ignored, the original exception will be rethrown
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    private Transaction requireTransaction() {
+        if (!inTransaction()) {
+            throw new IllegalStateException("Cannot perform this operation because there is no current transaction.");
+        }
+        return transactionStack.peek();
+    }
+
+    @Override
+    public void setTransactionSuccessful() {
+        Transaction transaction = requireTransaction();
+        if (transaction.markedSuccessful) {
+            throw new IllegalStateException("Cannot perform this operation because the transaction has already been "
+                    + "marked successful.  The only thing you can do now is call endTransaction().");
+        }
+        transaction.markedSuccessful = true;
+    }
+
+    @Override
+    public void endTransaction() {
+        Transaction transaction = requireTransaction();
+        boolean successful = transaction.markedSuccessful && !transaction.childFailed;
+        RuntimeException listenerException = null;
+        if (transaction.listener != null) {
+            try {
+                if (successful) {
+                    transaction.listener.onCommit();
+                } else {
+                    transaction.listener.onRollback();
+                }
+            } catch (RuntimeException e) {
+                listenerException = e;
+                successful = false;
+            }
+        }
+        transactionStack.pop();
+        try {
+            if (!transactionStack.isEmpty()) {
+                if (!successful) {
+                    transactionStack.peek().childFailed = true;
+                }
+            } else if (successful) {
+                commit();
+            } else {
+                executeRaw("ROLLBACK");
+            }
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error ending transaction", e);
+        } finally {
+            releaseConnection();
+        }
+        if (listenerException != null) {
+            throw listenerException;
+        }
+    }
+
+    private void commit() throws SQLException {
+        try {
+            executeRaw("COMMIT");
+        } catch (SQLException e) {
+            // A failed commit can leave the transaction open; roll it back so the connection remains usable
+            try {
+                executeRaw("ROLLBACK");
+            } catch (SQLException ignored) {
+                // Ignored, the original exception will be rethrown
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean inTransaction() {
+        return connectionLock.isHeldByCurrentThread() && !transactionStack.isEmpty();
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely() {
+        return yieldIfContendedSafely(0);
+    }
+
+    @Override
+    public boolean yieldIfContendedSafely(long sleepAfterYieldDelay) {
+        Transaction transaction = requireTransaction();
+        if (transactionStack.size() > 1) {
+            throw new IllegalStateException("Cannot yield a nested transaction");
+        }
+        if (transaction.markedSuccessful) {
+            throw new IllegalStateException("Cannot yield a transaction that has already been marked successful");
+        }
+        if (!connectionLock.hasQueuedThreads()) {
+            return false;
+        }
+
+        transaction.markedSuccessful = true;
+        endTransaction();
+        if (sleepAfterYieldDelay > 0) {
+            try {
+                Thread.sleep(sleepAfterYieldDelay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            Thread.yield();
+        }
+        beginTransactionInternal(transaction.exclusive, transaction.listener);
+        return true;
+    }
+
+    // --- statement execution
+
+    @Override
+    public int getVersion() {
+        return (int) simpleQueryForLong("PRAGMA user_version", null);
+    }
+
+    @Override
+    public void setVersion(int version) {
+        execSQL("PRAGMA user_version = " + version);
+    }
+
+    @Override
+    public ICursor rawQuery(String sql, Object[] bindArgs) {
+        return rawQuery(sql, bindArgs, null);
+    }
+
+    @Override
+    public ICursor rawQuery(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        acquireConnection();
+        try {
+            PreparedStatement statement = acquireStatement(sql);
+            try {
+                bindArguments(statement, bindArgs, bindArgTypes);
+                ResultSet resultSet = statement.executeQuery();
+                try {
+                    return new JDBCCursor(resultSet);
+                } finally {
+                    resultSet.close();
+                }
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error executing query: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public String simpleQueryForString(String sql, Object[] bindArgs) {
+        return simpleQueryForString(sql, bindArgs, null);
+    }
+
+    @Override
+    public String simpleQueryForString(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        acquireConnection();
+        try {
+            PreparedStatement statement = acquireStatement(sql);
+            try {
+                bindArguments(statement, bindArgs, bindArgTypes);
+                return readSingleString(statement);
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error executing query: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public long simpleQueryForLong(String sql, Object[] bindArgs) {
+        return simpleQueryForLong(sql, bindArgs, null);
+    }
+
+    @Override
+    public long simpleQueryForLong(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        acquireConnection();
+        try {
+            PreparedStatement statement = acquireStatement(sql);
+            try {
+                bindArguments(statement, bindArgs, bindArgTypes);
+                return readSingleLong(statement);
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error executing query: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public long executeInsert(String sql, Object[] bindArgs) {
+        return executeInsert(sql, bindArgs, null);
+    }
+
+    @Override
+    public long executeInsert(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        acquireConnection();
+        try {
+            PreparedStatement statement = acquireStatement(sql);
+            try {
+                bindArguments(statement, bindArgs, bindArgTypes);
+                return lastInsertRowIdForChangeCount(statement.executeUpdate());
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error executing insert: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object[] bindArgs) {
+        return executeUpdateDelete(sql, bindArgs, null);
+    }
+
+    @Override
+    public int executeUpdateDelete(String sql, Object[] bindArgs, int[] bindArgTypes) {
+        acquireConnection();
+        try {
+            PreparedStatement statement = acquireStatement(sql);
+            try {
+                bindArguments(statement, bindArgs, bindArgTypes);
+                return statement.executeUpdate();
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error executing update/delete: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public void execSQL(String sql) {
+        acquireConnection();
+        try {
+            executeRaw(sql);
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error executing statement: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public void execSQL(String sql, Object[] bindArgs) {
+        acquireConnection();
+        try {
+            PreparedStatement statement = acquireStatement(sql);
+            try {
+                bindArguments(statement, bindArgs);
+                statement.execute();
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error executing statement: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public void ensureSqlCompiles(String sql) {
+        acquireConnection();
+        try {
+            connection.prepareStatement(sql).close();
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error compiling statement: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    PreparedStatement prepareJdbcStatement(String sql) throws SQLException {
+        acquireConnection();
+        try {
+            return connection.prepareStatement(sql);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public ISQLitePreparedStatement prepareStatement(String sql) {
+        acquireConnection();
+        try {
+            return new JDBCSQLiteStatementAdapter(this, sql, connection.prepareStatement(sql));
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error compiling statement: " + sql, e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    // --- connection state and configuration
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        connectionLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (PreparedStatement statement : statementCache.values()) {
+                closeQuietly(statement);
+            }
+            statementCache.clear();
+            connection.close();
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error closing database: " + path, e);
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private void throwIfInTransaction(String operation) {
+        if (inTransaction()) {
+            throw new IllegalStateException(operation + " not allowed while in a transaction");
+        }
+    }
+
+    @Override
+    public void disableWriteAheadLogging() {
+        throwIfInTransaction("disableWriteAheadLogging");
+        simpleQueryForString("PRAGMA journal_mode = DELETE", null);
+    }
+
+    @Override
+    public boolean enableWriteAheadLogging() {
+        throwIfInTransaction("enableWriteAheadLogging");
+        return "wal".equalsIgnoreCase(simpleQueryForString("PRAGMA journal_mode = WAL", null));
+    }
+
+    @Override
+    public boolean isWriteAheadLoggingEnabled() {
+        return "wal".equalsIgnoreCase(simpleQueryForString("PRAGMA journal_mode", null));
+    }
+
+    @Override
+    public long getMaximumSize() {
+        long pageCount = simpleQueryForLong("PRAGMA max_page_count", null);
+        return pageCount * getPageSize();
+    }
+
+    @Override
+    public long getPageSize() {
+        return simpleQueryForLong("PRAGMA page_size", null);
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public boolean isDatabaseIntegrityOk() {
+        return "ok".equalsIgnoreCase(simpleQueryForString("PRAGMA integrity_check(1)", null));
+    }
+
+    @Override
+    public boolean isDbLockedByCurrentThread() {
+        return connectionLock.isHeldByCurrentThread();
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        acquireConnection();
+        try {
+            return connection.isReadOnly();
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error reading connection state", e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public boolean needUpgrade(int newVersion) {
+        return newVersion > getVersion();
+    }
+
+    @Override
+    public void setForeignKeyConstraintsEnabled(boolean enable) {
+        throwIfInTransaction("setForeignKeyConstraintsEnabled");
+        execSQL("PRAGMA foreign_keys = " + (enable ? 1 : 0));
+    }
+
+    @Override
+    public void setMaxSqlCacheSize(int cacheSize) {
+        if (cacheSize > MAX_SQL_CACHE_SIZE || cacheSize < 0) {
+            throw new IllegalStateException("expected value between 0 and " + MAX_SQL_CACHE_SIZE);
+        }
+        acquireConnection();
+        try {
+            maxSqlCacheSize = cacheSize;
+            Iterator<PreparedStatement> iterator = statementCache.values().iterator();
+            while (statementCache.size() > maxSqlCacheSize && iterator.hasNext()) {
+                closeQuietly(iterator.next());
+                iterator.remove();
+            }
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    @Override
+    public void setMaximumSize(long numBytes) {
+        long pageSize = getPageSize();
+        long numPages = numBytes / pageSize;
+        // If numBytes isn't a multiple of pageSize, bump up a page
+        if ((numBytes % pageSize) != 0) {
+            numPages++;
+        }
+        simpleQueryForLong("PRAGMA max_page_count = " + numPages, null);
+    }
+
+    @Override
+    public void setPageSize(long numBytes) {
+        execSQL("PRAGMA page_size = " + numBytes);
+    }
+
+    @Override
+    public Connection getWrappedObject() {
+        return connection;
+    }
+
+    @Override
+    public String toString() {
+        return "JDBCSQLiteDatabaseAdapter: " + path;
+    }
+}
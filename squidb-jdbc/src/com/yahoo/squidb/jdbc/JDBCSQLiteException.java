@@ -0,0 +1,25 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+/**
+ * Unchecked exception thrown by the JDBC adapter classes in place of {@link java.sql.SQLException}. SquidDatabase
+ * expects database errors to surface as RuntimeExceptions (as android.database.SQLException does), so any checked
+ * exceptions thrown by the JDBC driver are wrapped in this class.
+ */
+public class JDBCSQLiteException extends RuntimeException {
+
+    /* suppress compiler warning */
+    private static final long serialVersionUID = 7361589062143385571L;
+
+    public JDBCSQLiteException(String message) {
+        super(message);
+    }
+
+    public JDBCSQLiteException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+import com.yahoo.squidb.data.ISQLitePreparedStatement;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Wrapper for a JDBC {@link PreparedStatement} that implements the common {@link ISQLitePreparedStatement} interface.
+ * Executing the statement acquires the connection lock of the {@link JDBCSQLiteDatabaseAdapter} that created it, so
+ * instances of this class can safely be shared with other threads using the same database.
+ * <p>
+ * The sqlite-jdbc driver may finalize a PreparedStatement when executing it fails (e.g. because of a constraint
+ * violation), whereas an Android SQLiteStatement remains usable. To match the Android behavior, the underlying
+ * statement is discarded when executing it fails and prepared again the next time it is used. Any bindings are lost
+ * when that happens, so they should be rebound before executing the statement again.
+ */
+public class JDBCSQLiteStatementAdapter implements ISQLitePreparedStatement {
+
+    private final JDBCSQLiteDatabaseAdapter db;
+    private final String sql;
+    private PreparedStatement statement;
+    private boolean closed = false;
+    private boolean discarded = false;
+
+    JDBCSQLiteStatementAdapter(JDBCSQLiteDatabaseAdapter db, String sql, PreparedStatement statement) {
+        if (statement == null) {
+            throw new NullPointerException("Can't create JDBCSQLiteStatementAdapter with a null PreparedStatement");
+        }
+        this.db = db;
+        this.sql = sql;
+        this.statement = statement;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (discarded || !db.isOpen()) {
+            // Closing the connection finalizes all of its statements, so there's nothing left to close
+            return;
+        }
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error closing statement", e);
+        }
+    }
+
+    private PreparedStatement statement() throws SQLException {
+        if (discarded && !closed) {
+            statement = db.prepareJdbcStatement(sql);
+            discarded = false;
+        }
+        return statement;
+    }
+
+    private void discardStatement() {
+        discarded = true;
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Ignored, the statement may have already been finalized by the driver
+        }
+    }
+
+    @Override
+    public void bindNull(int index) {
+        try {
+            statement().setNull(index, Types.NULL);
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error binding null to index " + index, e);
+        }
+    }
+
+    @Override
+    public void bindLong(int index, long value) {
+        try {
+            statement().setLong(index, value);
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error binding long to index " + index, e);
+        }
+    }
+
+    @Override
+    public void bindDouble(int index, double value) {
+        try {
+            statement().setDouble(index, value);
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error binding double to index " + index, e);
+        }
+    }
+
+    @Override
+    public void bindString(int index, String value) {
+        try {
+            statement().setString(index, value);
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error binding string to index " + index, e);
+        }
+    }
+
+    @Override
+    public void bindBlob(int index, byte[] value) {
+        try {
+            statement().setBytes(index, value);
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error binding blob to index " + index, e);
+        }
+    }
+
+    @Override
+    public void clearBindings() {
+        try {
+            statement().clearParameters();
+        } catch (SQLException e) {
+            throw new JDBCSQLiteException("Error clearing bindings", e);
+        }
+    }
+
+    @Override
+    public void execute() {
+        db.acquireConnection();
+        try {
+            statement().execute();
+        } catch (SQLException e) {
+            discardStatement();
+            throw new JDBCSQLiteException("Error executing statement", e);
+        } finally {
+            db.releaseConnection();
+        }
+    }
+
+    @Override
+    public int executeUpdateDelete() {
+        db.acquireConnection();
+        try {
+            return statement().executeUpdate();
+        } catch (SQLException e) {
+            discardStatement();
+            throw new JDBCSQLiteException("Error executing update/delete", e);
+        } finally {
+            db.releaseConnection();
+        }
+    }
+
+    @Override
+    public long executeInsert() {
+        db.acquireConnection();
+        try {
+            return db.lastInsertRowIdForChangeCount(statement().executeUpdate());
+        } catch (SQLException e) {
+            discardStatement();
+            throw new JDBCSQLiteException("Error executing insert", e);
+        } finally {
+            db.releaseConnection();
+        }
+    }
+
+    @Override
+    public long simpleQueryForLong() {
+        db.acquireConnection();
+        try {
+            return JDBCSQLiteDatabaseAdapter.readSingleLong(statement());
+        } catch (SQLException e) {
+            discardStatement();
+            throw new JDBCSQLiteException("Error executing simple query", e);
+        } finally {
+            db.releaseConnection();
+        }
+    }
+
+    @Override
+    public String simpleQueryForString() {
+        db.acquireConnection();
+        try {
+            return JDBCSQLiteDatabaseAdapter.readSingleString(statement());
+        } catch (SQLException e) {
+            discardStatement();
+            throw new JDBCSQLiteException("Error executing simple query", e);
+        } finally {
+            db.releaseConnection();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+import com.yahoo.squidb.data.ISQLiteDatabase;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests for SquidDatabase's reader connection pool. Unlike on Android, JDBCOpenHelper supports reader connections and
+ * JDBCTestDatabase uses write-ahead logging, so queries outside of transactions really do run on pooled connections.
+ */
+public class JDBCReaderConnectionPoolTest extends TestCase {
+
+    private File directory;
+    private JDBCTestDatabase database;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("squidb-jdbc-tests").toFile();
+        database = new JDBCTestDatabase(directory, 1);
+        assertTrue(database.persist(new JDBCTestModel().setName("a")));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        database.readerConnectionOpenGate = null;
+        database.setReaderConnectionPoolEnabled(false, 0, 0);
+        database.clear();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory.toPath());
+    }
+
+    public void testAcquireAndRelease() {
+        database.setReaderConnectionPoolEnabled(true, 2, 50);
+        long acquisitions = database.getReaderConnectionAcquisitions();
+
+        assertEquals(1, database.countAll(JDBCTestModel.class));
+        assertEquals(acquisitions + 1, database.getReaderConnectionAcquisitions());
+        assertEquals(1, database.getReaderConnectionPoolSize());
+        assertEquals(0.0, database.getReaderConnectionPoolUtilization());
+
+        // The released connection is reused, and sees writes committed on the main connection
+        assertTrue(database.persist(new JDBCTestModel().setName("b")));
+        assertEquals(2, database.countAll(JDBCTestModel.class));
+        assertEquals(acquisitions + 2, database.getReaderConnectionAcquisitions());
+        assertEquals(1, database.getReaderConnectionPoolSize());
+        assertEquals(1, database.openedReaderConnections.size());
+        assertEquals(0, database.getReaderConnectionTimeouts());
+
+        // Reads in a transaction use the main connection
+        database.beginTransaction();
+        try {
+            assertTrue(database.persist(new JDBCTestModel().setName("c")));
+            assertEquals(3, database.countAll(JDBCTestModel.class));
+            assertEquals(acquisitions + 2, database.getReaderConnectionAcquisitions());
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    public void testTimeoutFallsBackToMainConnection() throws InterruptedException {
+        database.setReaderConnectionPoolEnabled(true, 1, 50);
+        QueryThread holder = startQueryHoldingReaderConnection();
+        try {
+            long timeouts = database.getReaderConnectionTimeouts();
+            long acquisitions = database.getReaderConnectionAcquisitions();
+
+            // The only reader connection is taken, so this query waits for it and then uses the main connection
+            assertEquals(1, database.countAll(JDBCTestModel.class));
+            assertEquals(timeouts + 1, database.getReaderConnectionTimeouts());
+            assertEquals(acquisitions, database.getReaderConnectionAcquisitions());
+            assertTrue(database.getReaderConnectionWaitTimeMillis() >= 50);
+            assertEquals(1.0, database.getReaderConnectionPoolUtilization());
+        } finally {
+            database.readerConnectionOpenGate.countDown();
+            holder.join();
+        }
+        holder.assertResult(1);
+        assertEquals(1, database.getReaderConnectionPoolSize());
+        assertEquals(0.0, database.getReaderConnectionPoolUtilization());
+    }
+
+    public void testPoolClosedWhileConnectionInUse() throws InterruptedException {
+        database.setReaderConnectionPoolEnabled(true, 1, 50);
+        QueryThread holder = startQueryHoldingReaderConnection();
+        try {
+            database.setReaderConnectionPoolEnabled(false, 0, 0);
+            assertEquals(0, database.getReaderConnectionPoolSize());
+        } finally {
+            database.readerConnectionOpenGate.countDown();
+            holder.join();
+        }
+
+        // The query still ran on the reader connection, which was closed when it was released
+        holder.assertResult(1);
+        assertEquals(1, database.openedReaderConnections.size());
+        ISQLiteDatabase reader = database.openedReaderConnections.get(0);
+        assertFalse(reader.isOpen());
+
+        long acquisitions = database.getReaderConnectionAcquisitions();
+        assertEquals(1, database.countAll(JDBCTestModel.class));
+        assertEquals(acquisitions, database.getReaderConnectionAcquisitions());
+        assertEquals(0, database.getReaderConnectionPoolSize());
+    }
+
+    // Starts a query on another thread and returns once it has claimed a reader connection. The connection isn't
+    // opened until the test counts down readerConnectionOpenGate.
+    private QueryThread startQueryHoldingReaderConnection() throws InterruptedException {
+        database.readerConnectionOpening = new CountDownLatch(1);
+        database.readerConnectionOpenGate = new CountDownLatch(1);
+        QueryThread thread = new QueryThread();
+        thread.start();
+        database.readerConnectionOpening.await();
+        return thread;
+    }
+
+    private class QueryThread extends Thread {
+
+        private final AtomicInteger result = new AtomicInteger(-1);
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        @Override
+        public void run() {
+            try {
+                result.set(database.countAll(JDBCTestModel.class));
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        }
+
+        void assertResult(int expected) {
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+            assertEquals(expected, result.get());
+        }
+    }
+}
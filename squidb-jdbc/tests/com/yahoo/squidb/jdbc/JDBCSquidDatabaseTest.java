@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+import com.yahoo.squidb.data.ICursor;
+import com.yahoo.squidb.data.SquidCursor;
+import com.yahoo.squidb.sql.CompiledStatement;
+import com.yahoo.squidb.sql.Query;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class JDBCSquidDatabaseTest extends TestCase {
+
+    private File directory;
+    private JDBCTestDatabase database;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("squidb-jdbc-tests").toFile();
+        database = new JDBCTestDatabase(directory, 1);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+        database.clear();
+        deleteDirectory();
+    }
+
+    private void deleteDirectory() throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(directory.toPath());
+    }
+
+    private JDBCTestModel insertModel(String name) {
+        JDBCTestModel model = new JDBCTestModel().setName(name).setCount(3L).setScore(1.5)
+                .setData(new byte[]{1, 2, 3});
+        assertTrue(database.persist(model));
+        assertTrue(model.isSaved());
+        return model;
+    }
+
+    public void testOpenCreatesTables() {
+        JDBCSQLiteDatabaseAdapter adapter = database.getAdapter();
+        assertTrue(adapter.isOpen());
+        assertEquals(1, adapter.getVersion());
+        assertEquals(0, database.countAll(JDBCTestModel.class));
+        assertEquals(-1, database.upgradedFromVersion);
+    }
+
+    public void testMigrate() {
+        JDBCTestModel model = insertModel("a");
+        database.close();
+
+        JDBCTestDatabase upgraded = new JDBCTestDatabase(directory, 2);
+        try {
+            assertEquals(2, upgraded.getAdapter().getVersion());
+            assertEquals(1, upgraded.upgradedFromVersion);
+            assertEquals(2, upgraded.upgradedToVersion);
+            JDBCTestModel fetched = upgraded.fetch(JDBCTestModel.class, model.getRowId());
+            assertEquals("a", fetched.getName());
+        } finally {
+            upgraded.close();
+        }
+    }
+
+    public void testPersistAndQuery() {
+        JDBCTestModel model = insertModel("a");
+        insertModel("b");
+
+        JDBCTestModel fetched = database.fetch(JDBCTestModel.class, model.getRowId());
+        assertEquals("a", fetched.getName());
+        assertEquals(3L, fetched.getCount().longValue());
+        assertTrue(fetched.isHappy());
+        assertEquals(1.5, fetched.getScore());
+        assertTrue(Arrays.equals(new byte[]{1, 2, 3}, fetched.getData()));
+
+        fetched.setCount(4L).setIsHappy(false);
+        assertTrue(database.persist(fetched));
+        SquidCursor<JDBCTestModel> cursor = database.query(JDBCTestModel.class,
+                Query.select().where(JDBCTestModel.IS_HAPPY.isFalse()));
+        try {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(4L, cursor.get(JDBCTestModel.COUNT).longValue());
+        } finally {
+            cursor.close();
+        }
+
+        assertTrue(database.delete(JDBCTestModel.class, model.getRowId()));
+        assertEquals(1, database.countAll(JDBCTestModel.class));
+    }
+
+    public void testStatementReusableAfterConstraintViolation() {
+        insertModel("a");
+        try {
+            database.persist(new JDBCTestModel().setName("a"));
+            fail("Expected a unique constraint violation");
+        } catch (JDBCSQLiteException e) {
+            // Expected
+        }
+        // The cached insert statement must still be usable
+        insertModel("b");
+        assertEquals(2, database.countAll(JDBCTestModel.class));
+    }
+
+    public void testNestedTransactionSuccess() {
+        database.beginTransaction();
+        try {
+            insertModel("a");
+            database.beginTransaction();
+            try {
+                insertModel("b");
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        assertEquals(2, database.countAll(JDBCTestModel.class));
+    }
+
+    public void testNestedTransactionRollback() {
+        database.beginTransaction();
+        try {
+            insertModel("a");
+            database.beginTransaction();
+            try {
+                insertModel("b");
+            } finally {
+                // Not marked successful, so the entire outer transaction is rolled back
+                database.endTransaction();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        assertEquals(0, database.countAll(JDBCTestModel.class));
+    }
+
+    public void testTypedBinding() {
+        Object[] args = new Object[]{null, 2L, 2.5, true, new byte[]{1}, "2"};
+        int[] argTypes = new int[]{CompiledStatement.ARG_TYPE_NULL, CompiledStatement.ARG_TYPE_LONG,
+                CompiledStatement.ARG_TYPE_DOUBLE, CompiledStatement.ARG_TYPE_BOOLEAN,
+                CompiledStatement.ARG_TYPE_BLOB, CompiledStatement.ARG_TYPE_STRING};
+        ICursor cursor = database.getAdapter().rawQuery("SELECT typeof(?), typeof(?), typeof(?), typeof(?), "
+                + "typeof(?), typeof(?)", args, argTypes);
+        try {
+            assertTrue(cursor.moveToFirst());
+            String[] expectedTypes = new String[]{"null", "integer", "real", "integer", "blob", "text"};
+            for (int i = 0; i < expectedTypes.length; i++) {
+                assertEquals(expectedTypes[i], cursor.getString(i));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        JDBCSQLiteDatabaseAdapter adapter = database.getAdapter();
+        long rowId = adapter.executeInsert("INSERT INTO jdbcTestModels (name, count, isHappy) VALUES (?, ?, ?)",
+                new Object[]{"a", 5, false}, new int[]{CompiledStatement.ARG_TYPE_STRING,
+                        CompiledStatement.ARG_TYPE_LONG, CompiledStatement.ARG_TYPE_BOOLEAN});
+        assertTrue(rowId > 0);
+        assertEquals(5, adapter.simpleQueryForLong("SELECT count FROM jdbcTestModels WHERE name = ?",
+                new Object[]{"a"}, new int[]{CompiledStatement.ARG_TYPE_STRING}));
+        assertEquals("0", adapter.simpleQueryForString("SELECT isHappy FROM jdbcTestModels WHERE rowid = ?",
+                new Object[]{rowId}, new int[]{CompiledStatement.ARG_TYPE_LONG}));
+        assertEquals(1, adapter.executeUpdateDelete("DELETE FROM jdbcTestModels WHERE rowid = ?",
+                new Object[]{rowId}, new int[]{CompiledStatement.ARG_TYPE_LONG}));
+    }
+}
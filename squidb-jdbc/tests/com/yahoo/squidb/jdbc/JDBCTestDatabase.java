@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+import com.yahoo.squidb.data.ISQLiteDatabase;
+import com.yahoo.squidb.data.ISQLiteOpenHelper;
+import com.yahoo.squidb.data.SquidDatabase;
+import com.yahoo.squidb.sql.Table;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * SquidDatabase used by the squidb-jdbc tests. The database file lives in the given directory, so that several
+ * instances (e.g. with different versions) can open the same file.
+ */
+public class JDBCTestDatabase extends SquidDatabase {
+
+    private final File directory;
+    private final int version;
+
+    public int upgradedFromVersion = -1;
+    public int upgradedToVersion = -1;
+
+    /**
+     * If set, opening a reader connection counts down {@link #readerConnectionOpening} and then blocks until this latch
+     * is released, so tests can hold a reader connection slot while other queries run
+     */
+    public volatile CountDownLatch readerConnectionOpenGate;
+    public volatile CountDownLatch readerConnectionOpening;
+    public final List<ISQLiteDatabase> openedReaderConnections =
+            Collections.synchronizedList(new ArrayList<ISQLiteDatabase>());
+
+    public JDBCTestDatabase(File directory, int version) {
+        super();
+        this.directory = directory;
+        this.version = version;
+    }
+
+    @Override
+    public String getName() {
+        return "jdbcTest.db";
+    }
+
+    @Override
+    protected Table[] getTables() {
+        return new Table[]{
+                JDBCTestModel.TABLE
+        };
+    }
+
+    @Override
+    protected ISQLiteOpenHelper createOpenHelper(String databaseName, OpenHelperDelegate delegate, int version) {
+        return new JDBCOpenHelper(directory.getAbsolutePath(), databaseName, delegate, version) {
+            @Override
+            public ISQLiteDatabase openReaderConnection() {
+                CountDownLatch gate = readerConnectionOpenGate;
+                if (gate != null) {
+                    readerConnectionOpening.countDown();
+                    try {
+                        gate.await();
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                ISQLiteDatabase connection = super.openReaderConnection();
+                openedReaderConnections.add(connection);
+                return connection;
+            }
+        };
+    }
+
+    @Override
+    protected int getVersion() {
+        return version;
+    }
+
+    @Override
+    protected boolean onUpgrade(ISQLiteDatabase db, int oldVersion, int newVersion) {
+        upgradedFromVersion = oldVersion;
+        upgradedToVersion = newVersion;
+        return true;
+    }
+
+    @Override
+    protected void onConfigure(ISQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+        setPreparedStatementCacheEnabled(true);
+    }
+
+    @Override
+    public void setReaderConnectionPoolEnabled(boolean enabled, int maxConnections, long maxWaitMillis) {
+        super.setReaderConnectionPoolEnabled(enabled, maxConnections, maxWaitMillis);
+    }
+
+    /**
+     * @return the underlying {@link JDBCSQLiteDatabaseAdapter}, opening the database if necessary
+     */
+    public JDBCSQLiteDatabaseAdapter getAdapter() {
+        return (JDBCSQLiteDatabaseAdapter) getDatabase();
+    }
+}
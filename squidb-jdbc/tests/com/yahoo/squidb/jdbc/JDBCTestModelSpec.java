@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.jdbc;
+
+import com.yahoo.squidb.annotations.ColumnSpec;
+import com.yahoo.squidb.annotations.TableModelSpec;
+
+/**
+ * Model spec for the table used by the squidb-jdbc tests. It includes a column of each of the common property types
+ * so that reading and writing rows exercises each of the JDBC binding and cursor reading code paths.
+ */
+@TableModelSpec(className = "JDBCTestModel", tableName = "jdbcTestModels")
+public class JDBCTestModelSpec {
+
+    @ColumnSpec(constraints = "UNIQUE")
+    String name;
+
+    long count;
+
+    @ColumnSpec(defaultValue = "true")
+    boolean isHappy;
+
+    double score;
+
+    byte[] data;
+}
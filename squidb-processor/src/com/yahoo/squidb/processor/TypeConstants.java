@@ -50,6 +50,12 @@ public class TypeConstants {
     public static final DeclaredTypeName VALUES_STORAGE = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "ValuesStorage");
     public static final DeclaredTypeName MAP_VALUES_STORAGE
             = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "MapValuesStorage");
+    public static final DeclaredTypeName ARRAY_VALUES_STORAGE
+            = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "ArrayValuesStorage");
+    // Registered as a known name rather than imported, so generated code refers to it qualified by its outer class.
+    // Importing it would clash with a model or another class in the model's package named Schema.
+    public static final DeclaredTypeName ARRAY_VALUES_STORAGE_SCHEMA
+            = new DeclaredTypeName(SQUIDB_DATA_PACKAGE, "ArrayValuesStorage.Schema");
     public static final DeclaredTypeName CONTENT_VALUES = new DeclaredTypeName("android.content.ContentValues");
     public static final DeclaredTypeName MAP = new DeclaredTypeName("java.util.Map");
     public static final DeclaredTypeName MAP_VALUES = MAP.clone();
@@ -60,6 +60,7 @@ public class TableModelSpecWrapper extends ModelSpec<TableModelSpec> {
         imports.add(TypeConstants.LONG_PROPERTY);
         imports.add(TypeConstants.TABLE_MODEL);
         imports.add(TypeConstants.TABLE_MODEL_NAME);
+        imports.add(TypeConstants.ARRAY_VALUES_STORAGE);
         imports.add(getTableType());
     }
 
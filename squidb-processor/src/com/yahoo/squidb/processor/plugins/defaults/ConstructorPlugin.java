@@ -26,7 +26,8 @@ import javax.lang.model.element.Modifier;
 
 /**
  * A {@link Plugin} that controls generating constructors in model classes. This plugin generates four distinct
- * constructors in each model class. It is enabled by default but can be disabled by passing
+ * constructors in each model class, as well as clone() and snapshot() methods that return the model's own type. It
+ * is enabled by default but can be disabled by passing
  * {@link PluginEnvironment#OPTIONS_DISABLE_DEFAULT_CONSTRUCTORS 'disableDefaultConstructors'} as one
  * of the values for the 'squidbOptions' key.
  */
@@ -90,5 +91,18 @@ public class ConstructorPlugin extends Plugin {
         writer.beginMethodDefinition(cloneParams)
                 .writeStatement(cloneBody)
                 .finishMethodDefinition();
+
+        MethodDeclarationParameters snapshotParams = new MethodDeclarationParameters()
+                .setModifiers(Modifier.PUBLIC)
+                .setMethodName("snapshot")
+                .setReturnType(modelSpec.getGeneratedClassName());
+
+        Expression snapshotBody = Expressions.callMethodOn("super", "snapshot")
+                .cast(modelSpec.getGeneratedClassName()).returnExpr();
+
+        writer.writeAnnotation(CoreTypes.OVERRIDE);
+        writer.beginMethodDefinition(snapshotParams)
+                .writeStatement(snapshotBody)
+                .finishMethodDefinition();
     }
 }
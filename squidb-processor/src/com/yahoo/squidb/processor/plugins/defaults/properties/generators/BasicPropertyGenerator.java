@@ -180,6 +180,45 @@ public abstract class BasicPropertyGenerator extends PropertyGenerator {
         writeGetterBody(writer, params);
         writer.finishMethodDefinition();
         modelSpec.getPluginBundle().afterEmitGetter(writer, this, params);
+        emitPrimitiveGetter(writer);
+    }
+
+    /**
+     * Writes an overload of the getter that returns the value as a primitive without boxing it, e.g.
+     * <code>long getBirthday(long valueIfNull)</code>. The overload is only written if the getter returns a boxed
+     * Long, Integer, Double, or Boolean. Subclasses that customize the getter body should override this hook if the
+     * overload would not be consistent with their getter.
+     */
+    protected void emitPrimitiveGetter(JavaFileWriter writer) throws IOException {
+        DeclaredTypeName accessorType = getTypeForAccessors();
+        DeclaredTypeName primitiveType;
+        String methodToInvoke;
+        if (CoreTypes.JAVA_LONG.equals(accessorType)) {
+            primitiveType = CoreTypes.PRIMITIVE_LONG;
+            methodToInvoke = "getLong";
+        } else if (CoreTypes.JAVA_INTEGER.equals(accessorType)) {
+            primitiveType = CoreTypes.PRIMITIVE_INT;
+            methodToInvoke = "getInt";
+        } else if (CoreTypes.JAVA_DOUBLE.equals(accessorType)) {
+            primitiveType = CoreTypes.PRIMITIVE_DOUBLE;
+            methodToInvoke = "getDouble";
+        } else if (CoreTypes.JAVA_BOOLEAN.equals(accessorType)) {
+            primitiveType = CoreTypes.PRIMITIVE_BOOLEAN;
+            methodToInvoke = "getBoolean";
+        } else {
+            return;
+        }
+
+        String argName = "valueIfNull";
+        MethodDeclarationParameters params = new MethodDeclarationParameters()
+                .setMethodName(getterMethodName())
+                .setModifiers(Modifier.PUBLIC)
+                .setReturnType(primitiveType)
+                .setArgumentTypes(primitiveType)
+                .setArgumentNames(argName);
+        writer.beginMethodDefinition(params);
+        writer.writeStatement(Expressions.callMethod(methodToInvoke, propertyName, argName).returnExpr());
+        writer.finishMethodDefinition();
     }
 
     @Override
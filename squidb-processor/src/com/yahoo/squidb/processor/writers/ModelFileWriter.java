@@ -106,7 +106,8 @@ public abstract class ModelFileWriter<T extends ModelSpec<?>> {
         modelSpec.addRequiredImports(imports);
         writer.writeImports(imports);
         writer.registerOtherKnownNames(TypeConstants.CREATOR,
-                TypeConstants.TABLE_MAPPING_VISITORS, modelSpec.getModelSpecName());
+                TypeConstants.TABLE_MAPPING_VISITORS, TypeConstants.ARRAY_VALUES_STORAGE_SCHEMA,
+                modelSpec.getModelSpecName());
     }
 
     private void beginClassDeclaration() throws IOException {
@@ -5,8 +5,10 @@
  */
 package com.yahoo.squidb.processor.writers;
 
+import com.yahoo.aptutils.model.CoreTypes;
 import com.yahoo.aptutils.utils.AptUtils;
 import com.yahoo.aptutils.writer.expressions.Expressions;
+import com.yahoo.aptutils.writer.parameters.MethodDeclarationParameters;
 import com.yahoo.squidb.processor.TypeConstants;
 import com.yahoo.squidb.processor.data.TableModelSpecWrapper;
 import com.yahoo.squidb.processor.plugins.PluginEnvironment;
@@ -16,6 +18,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 
 /**
@@ -25,6 +28,16 @@ public class TableModelFileWriter extends ModelFileWriter<TableModelSpecWrapper>
 
     public static final String TABLE_NAME = "TABLE";
     public static final String TABLE_MODEL_NAME = "TABLE_MODEL_NAME";
+    private static final String VALUES_STORAGE_SCHEMA_NAME = "valuesStorageSchema";
+
+    private static final MethodDeclarationParameters GET_VALUES_STORAGE_SCHEMA_PARAMS;
+
+    static {
+        GET_VALUES_STORAGE_SCHEMA_PARAMS = new MethodDeclarationParameters()
+                .setMethodName("getValuesStorageSchema")
+                .setModifiers(Modifier.PROTECTED)
+                .setReturnType(TypeConstants.ARRAY_VALUES_STORAGE_SCHEMA);
+    }
 
     public TableModelFileWriter(TypeElement element, PluginEnvironment pluginEnv, AptUtils utils) {
         super(new TableModelSpecWrapper(element, pluginEnv, utils), pluginEnv, utils);
@@ -78,6 +91,25 @@ public class TableModelFileWriter extends ModelFileWriter<TableModelSpecWrapper>
         }
     }
 
+    @Override
+    protected void emitDefaultValues() throws IOException {
+        // The schema must be initialized before the default values, which are stored using it
+        emitValuesStorageSchema();
+        super.emitDefaultValues();
+    }
+
+    private void emitValuesStorageSchema() throws IOException {
+        writer.writeComment("--- values storage schema");
+        writer.writeFieldDeclaration(TypeConstants.ARRAY_VALUES_STORAGE_SCHEMA, VALUES_STORAGE_SCHEMA_NAME,
+                Expressions.callConstructor(TypeConstants.ARRAY_VALUES_STORAGE_SCHEMA, PROPERTIES_ARRAY_NAME),
+                Modifier.PROTECTED, Modifier.STATIC, Modifier.FINAL);
+        writer.writeNewline();
+        writer.writeAnnotation(CoreTypes.OVERRIDE)
+                .beginMethodDefinition(GET_VALUES_STORAGE_SCHEMA_PARAMS)
+                .writeStringStatement("return " + VALUES_STORAGE_SCHEMA_NAME)
+                .finishMethodDefinition();
+    }
+
     @Override
     protected void emitDefaultValuesInitializationBlock() throws IOException {
         for (PropertyGenerator generator : modelSpec.getPropertyGenerators()) {
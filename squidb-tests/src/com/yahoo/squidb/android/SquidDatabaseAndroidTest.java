@@ -5,6 +5,8 @@
  */
 package com.yahoo.squidb.android;
 
+import android.database.sqlite.SQLiteDatabase;
+
 import com.yahoo.squidb.sqlitebindings.SQLiteBindingsAdapter;
 import com.yahoo.squidb.test.DatabaseTestCase;
 
@@ -15,4 +17,36 @@ public class SquidDatabaseAndroidTest extends DatabaseTestCase {
             assertEquals(SQLiteBindingsAdapter.SQLITE_VERSION, database.getSqliteVersion());
         }
     }
+
+    public void testStatementCacheReusesStatements() {
+        SQLiteDatabaseAdapter adapter = new SQLiteDatabaseAdapter(SQLiteDatabase.create(null));
+        try {
+            adapter.execSQL("CREATE TABLE t (a INTEGER)");
+            for (int i = 0; i < 3; i++) {
+                adapter.executeInsert("INSERT INTO t (a) VALUES (?)", new Object[]{i});
+            }
+            assertEquals(3, adapter.simpleQueryForLong("SELECT COUNT(*) FROM t", null));
+            assertEquals(2, adapter.getStatementCacheHits());
+            assertEquals(2, adapter.getStatementCacheMisses());
+
+            assertEquals(1, adapter.executeUpdateDelete("DELETE FROM t WHERE a = ?", new Object[]{0}));
+            assertEquals(2, adapter.simpleQueryForLong("SELECT COUNT(*) FROM t", null));
+            assertEquals(3, adapter.getStatementCacheHits());
+            assertEquals(3, adapter.getStatementCacheMisses());
+        } finally {
+            adapter.close();
+        }
+    }
+
+    public void testStatementCacheCanBeDisabled() {
+        SQLiteDatabaseAdapter adapter = new SQLiteDatabaseAdapter(SQLiteDatabase.create(null), 0);
+        try {
+            assertEquals(1, adapter.simpleQueryForLong("SELECT 1", null));
+            assertEquals(1, adapter.simpleQueryForLong("SELECT 1", null));
+            assertEquals(0, adapter.getStatementCacheHits());
+            assertEquals(0, adapter.getStatementCacheMisses());
+        } finally {
+            adapter.close();
+        }
+    }
 }
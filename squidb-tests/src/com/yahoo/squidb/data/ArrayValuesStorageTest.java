@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Property.IntegerProperty;
+import com.yahoo.squidb.test.SquidTestCase;
+import com.yahoo.squidb.test.TestModel;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ArrayValuesStorageTest extends SquidTestCase {
+
+    private static final ArrayValuesStorage.Schema SCHEMA = new ArrayValuesStorage.Schema(TestModel.PROPERTIES);
+
+    public void testPutAndGetPreservesTypes() {
+        ArrayValuesStorage storage = new ArrayValuesStorage(SCHEMA);
+        storage.put(TestModel.FIRST_NAME.getName(), "Sam");
+        storage.put(TestModel.BIRTHDAY.getName(), 1234567890123L);
+        storage.put(TestModel.LUCKY_NUMBER.getName(), 7);
+        storage.put(TestModel.IS_HAPPY.getName(), false);
+        storage.put(TestModel.SOME_DOUBLE.getName(), 2.5);
+        storage.putNull(TestModel.LAST_NAME.getName());
+
+        assertEquals(6, storage.size());
+        assertEquals("Sam", storage.get(TestModel.FIRST_NAME.getName()));
+        assertEquals(1234567890123L, storage.get(TestModel.BIRTHDAY.getName()));
+        assertEquals(7, storage.get(TestModel.LUCKY_NUMBER.getName()));
+        assertEquals(false, storage.get(TestModel.IS_HAPPY.getName()));
+        assertEquals(2.5, storage.get(TestModel.SOME_DOUBLE.getName()));
+        assertTrue(storage.containsKey(TestModel.LAST_NAME.getName()));
+        assertNull(storage.get(TestModel.LAST_NAME.getName()));
+        assertFalse(storage.containsKey(TestModel.SOME_ENUM.getName()));
+
+        // Overwriting a slot with a value of a different type
+        storage.put(TestModel.LUCKY_NUMBER.getName(), "seven");
+        assertEquals("seven", storage.get(TestModel.LUCKY_NUMBER.getName()));
+        storage.put(TestModel.LUCKY_NUMBER.getName(), 8L);
+        assertEquals(8L, storage.get(TestModel.LUCKY_NUMBER.getName()));
+
+        storage.remove(TestModel.FIRST_NAME.getName());
+        assertFalse(storage.containsKey(TestModel.FIRST_NAME.getName()));
+        assertEquals(5, storage.size());
+    }
+
+    public void testKeysOutsideSchema() {
+        ArrayValuesStorage storage = new ArrayValuesStorage(SCHEMA);
+        storage.put("notAColumn", 5);
+        storage.put(TestModel.FIRST_NAME.getName(), "Sam");
+
+        assertEquals(2, storage.size());
+        assertEquals(5, storage.get("notAColumn"));
+        assertTrue(storage.keySet().contains("notAColumn"));
+        assertTrue(storage.keySet().contains(TestModel.FIRST_NAME.getName()));
+
+        ArrayValuesStorage copy = new ArrayValuesStorage(SCHEMA);
+        copy.putAll(storage);
+        assertEquals(storage, copy);
+        assertEquals(storage.hashCode(), copy.hashCode());
+
+        storage.remove("notAColumn");
+        assertEquals(1, storage.size());
+        assertFalse(storage.equals(copy));
+    }
+
+    public void testEqualsMapValuesStorage() {
+        ArrayValuesStorage storage = new ArrayValuesStorage(SCHEMA);
+        storage.put(TestModel.FIRST_NAME.getName(), "Sam");
+        storage.put(TestModel.LUCKY_NUMBER.getName(), 7);
+        storage.putNull(TestModel.LAST_NAME.getName());
+        storage.put("notAColumn", 1.5);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put(TestModel.FIRST_NAME.getName(), "Sam");
+        values.put(TestModel.LUCKY_NUMBER.getName(), 7);
+        values.put(TestModel.LAST_NAME.getName(), null);
+        values.put("notAColumn", 1.5);
+        MapValuesStorage mapStorage = new MapValuesStorage(values);
+
+        assertEquals(storage, mapStorage);
+        assertEquals(mapStorage, storage);
+        assertEquals(mapStorage.hashCode(), storage.hashCode());
+
+        MapValuesStorage mapCopy = new MapValuesStorage();
+        mapCopy.putAll(storage);
+        assertEquals(mapStorage, mapCopy);
+
+        // Same value, different type
+        values.put(TestModel.LUCKY_NUMBER.getName(), 7L);
+        assertFalse(storage.equals(mapStorage));
+    }
+
+    public void testCopyOnWrite() {
+        ArrayValuesStorage original = new ArrayValuesStorage(SCHEMA);
+        original.put(TestModel.FIRST_NAME.getName(), "Sam");
+        original.put(TestModel.LUCKY_NUMBER.getName(), 7);
+        original.put("notAColumn", 5);
+
+        ArrayValuesStorage copy = original.copyOnWrite();
+        assertEquals(original, copy);
+
+        original.put(TestModel.FIRST_NAME.getName(), "Bob");
+        original.remove("notAColumn");
+        assertEquals("Sam", copy.get(TestModel.FIRST_NAME.getName()));
+        assertEquals(5, copy.get("notAColumn"));
+        assertEquals(3, copy.size());
+
+        copy.put(TestModel.LUCKY_NUMBER.getName(), 8);
+        copy.put(TestModel.SOME_DOUBLE.getName(), 2.5);
+        assertEquals(7, original.get(TestModel.LUCKY_NUMBER.getName()));
+        assertFalse(original.containsKey(TestModel.SOME_DOUBLE.getName()));
+        assertEquals("Bob", original.get(TestModel.FIRST_NAME.getName()));
+        assertEquals(2, original.size());
+    }
+
+    public void testManySlots() {
+        // More slots than fit in a single word of the bitset
+        Property<?>[] properties = new Property<?>[130];
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = IntegerProperty.literal(i, "col" + i);
+        }
+        ArrayValuesStorage storage = new ArrayValuesStorage(new ArrayValuesStorage.Schema(properties));
+        for (int i = 0; i < properties.length; i += 3) {
+            storage.put("col" + i, i);
+        }
+        int count = 0;
+        for (Map.Entry<String, Object> entry : storage.valueSet()) {
+            assertEquals("col" + entry.getValue(), entry.getKey());
+            count++;
+        }
+        assertEquals(storage.size(), count);
+        assertEquals(44, count);
+    }
+
+    public void testPrimitiveGettersMatchMapValuesStorage() {
+        ArrayValuesStorage arrayStorage = new ArrayValuesStorage(SCHEMA);
+        MapValuesStorage mapStorage = new MapValuesStorage();
+        String key = TestModel.BIRTHDAY.getName();
+        Object[] values = new Object[]{true, (short) 3, 7, 9L, 2.5f, 1.9, "12"};
+        for (Object value : values) {
+            arrayStorage.put(key, value, true);
+            mapStorage.put(key, value, true);
+            assertEquals(mapStorage.getLong(key, -1), arrayStorage.getLong(key, -1));
+            assertEquals(mapStorage.getInt(key, -1), arrayStorage.getInt(key, -1));
+            if (!(value instanceof Boolean)) {
+                assertEquals(mapStorage.getDouble(key, -1), arrayStorage.getDouble(key, -1));
+            }
+            if (!(value instanceof String)) {
+                assertEquals(mapStorage.getBoolean(key, false), arrayStorage.getBoolean(key, false));
+            }
+        }
+
+        arrayStorage.putNull(key);
+        assertEquals(-1, arrayStorage.getLong(key, -1));
+        assertEquals(-1, arrayStorage.getInt("notAColumn", -1));
+        arrayStorage.put("notAColumn", 5L);
+        assertEquals(5, arrayStorage.getInt("notAColumn", -1));
+
+        arrayStorage.put(key, "abc");
+        try {
+            arrayStorage.getLong(key, -1);
+            fail("Expected ClassCastException");
+        } catch (ClassCastException e) {
+            // expected
+        }
+    }
+}
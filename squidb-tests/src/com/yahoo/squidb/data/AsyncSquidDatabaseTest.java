@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.test.DatabaseTestCase;
+import com.yahoo.squidb.test.TestModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncSquidDatabaseTest extends DatabaseTestCase {
+
+    private AsyncSquidDatabase asyncDatabase;
+    private int modelCount = 0;
+
+    @Override
+    protected void setupDatabase() {
+        super.setupDatabase();
+        asyncDatabase = new AsyncSquidDatabase(database);
+    }
+
+    @Override
+    protected void tearDownDatabase() {
+        asyncDatabase.shutdown();
+        super.tearDownDatabase();
+    }
+
+    private TestModel newModel(String firstName) {
+        // Last names and birthdays are unique
+        return new TestModel().setFirstName(firstName).setLastName("Async" + firstName)
+                .setBirthday(testDate + modelCount++);
+    }
+
+    public void testWritesAndReads() throws Exception {
+        List<Future<Boolean>> writes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            writes.add(asyncDatabase.persist(newModel("Model" + i), null));
+        }
+        for (Future<Boolean> write : writes) {
+            assertTrue(write.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(50, asyncDatabase.count(TestModel.class, TestModel.LAST_NAME.like("Async%"), null)
+                .get(5, TimeUnit.SECONDS).intValue());
+    }
+
+    public void testFailedWriteInCoalescedTransactionDoesNotFailOthers() throws Exception {
+        // Block the writer thread so that the following writes are coalesced into one transaction
+        final CountDownLatch blockWriter = new CountDownLatch(1);
+        asyncDatabase.write(new AsyncSquidDatabase.Operation<Void>() {
+            @Override
+            public Void run(SquidDatabase database) {
+                try {
+                    blockWriter.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return null;
+            }
+        });
+
+        Future<Boolean> first = asyncDatabase.persist(newModel("First"), null);
+        Future<Boolean> failing = asyncDatabase.write(new AsyncSquidDatabase.Operation<Boolean>() {
+            @Override
+            public Boolean run(SquidDatabase database) {
+                database.persist(newModel("RolledBack"));
+                throw new IllegalStateException("Failing write");
+            }
+        });
+        final CountDownLatch callbackCalled = new CountDownLatch(1);
+        Future<Boolean> last = asyncDatabase.persist(newModel("Last"), new AsyncSquidDatabase.Callback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean result) {
+                callbackCalled.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+            }
+        });
+        blockWriter.countDown();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(last.get(5, TimeUnit.SECONDS));
+        assertTrue(callbackCalled.await(5, TimeUnit.SECONDS));
+        try {
+            failing.get(5, TimeUnit.SECONDS);
+            fail("Failing write should have thrown");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(2, database.count(TestModel.class, TestModel.LAST_NAME.like("Async%")));
+        assertEquals(0, database.count(TestModel.class, TestModel.FIRST_NAME.eq("RolledBack")));
+    }
+
+    public void testWriteThatThrowsInNestedTransactionDoesNotFailOthers() throws Exception {
+        // Block the writer thread so that the following writes are coalesced into one transaction
+        final CountDownLatch blockWriter = new CountDownLatch(1);
+        asyncDatabase.write(new AsyncSquidDatabase.Operation<Void>() {
+            @Override
+            public Void run(SquidDatabase database) {
+                try {
+                    blockWriter.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return null;
+            }
+        });
+
+        Future<Boolean> first = asyncDatabase.persist(newModel("First"), null);
+        // Ending the nested transaction unsuccessfully makes the outer transaction roll back without an exception
+        Future<Boolean> failing = asyncDatabase.write(new AsyncSquidDatabase.Operation<Boolean>() {
+            @Override
+            public Boolean run(SquidDatabase database) {
+                database.beginTransaction();
+                try {
+                    database.persist(newModel("RolledBack"));
+                    throw new IllegalStateException("Failing write");
+                } finally {
+                    database.endTransaction();
+                }
+            }
+        });
+        Future<Boolean> last = asyncDatabase.persist(newModel("Last"), null);
+        blockWriter.countDown();
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(last.get(5, TimeUnit.SECONDS));
+        try {
+            failing.get(5, TimeUnit.SECONDS);
+            fail("Failing write should have thrown");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(2, database.count(TestModel.class, TestModel.LAST_NAME.like("Async%")));
+        assertEquals(0, database.count(TestModel.class, TestModel.FIRST_NAME.eq("RolledBack")));
+    }
+
+    public void testCancelledWriteIsSkipped() throws Exception {
+        final CountDownLatch blockWriter = new CountDownLatch(1);
+        asyncDatabase.write(new AsyncSquidDatabase.Operation<Void>() {
+            @Override
+            public Void run(SquidDatabase database) {
+                try {
+                    blockWriter.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return null;
+            }
+        });
+
+        final CountDownLatch callbackCalled = new CountDownLatch(1);
+        Future<Boolean> cancelled = asyncDatabase.persist(newModel("Cancelled"),
+                new AsyncSquidDatabase.Callback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean result) {
+                        callbackCalled.countDown();
+                    }
+
+                    @Override
+                    public void onFailure(Throwable error) {
+                        callbackCalled.countDown();
+                    }
+                });
+        Future<Boolean> last = asyncDatabase.persist(newModel("Last"), null);
+        assertTrue(cancelled.cancel(false));
+        assertTrue(cancelled.isCancelled());
+        assertTrue(cancelled.isDone());
+        assertFalse(cancelled.cancel(false));
+        blockWriter.countDown();
+
+        assertTrue(last.get(5, TimeUnit.SECONDS));
+        try {
+            cancelled.get();
+            fail("Cancelled write should have thrown");
+        } catch (CancellationException expected) {
+            // Expected
+        }
+        assertFalse(last.cancel(false));
+        assertEquals(1, callbackCalled.getCount());
+        assertEquals(1, database.count(TestModel.class, TestModel.LAST_NAME.like("Async%")));
+        assertEquals(0, database.count(TestModel.class, TestModel.FIRST_NAME.eq("Cancelled")));
+    }
+
+    public void testShutdownRunsQueuedWrites() throws Exception {
+        Future<Boolean> write = asyncDatabase.persist(newModel("Queued"), null);
+        asyncDatabase.shutdown();
+        assertTrue(asyncDatabase.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(write.isDone());
+        assertEquals(1, database.count(TestModel.class, TestModel.LAST_NAME.like("Async%")));
+        try {
+            asyncDatabase.persist(newModel("Rejected"), null);
+            fail("Writes after shutdown should be rejected");
+        } catch (RejectedExecutionException expected) {
+            // Expected
+        }
+    }
+}
@@ -48,18 +48,19 @@ public class DataChangedNotifierTest extends DatabaseTestCase {
 
     public void testFlushAccumulationsClearsSet() {
         TestDataChangedNotifier notifier = new TestDataChangedNotifier();
+        Set<TestDataChangedNotifier> accumulated = new HashSet<>();
 
-        notifier.onDataChanged(null, database, DataChangedNotifier.DBOperation.INSERT, null, 0);
+        notifier.onDataChanged(accumulated, null, database, DataChangedNotifier.DBOperation.INSERT, null, 0);
         assertFalse(notifier.accumulatorSet.isEmpty());
-        notifier.flushAccumulatedNotifications(database, true);
+        notifier.flushAccumulatedNotifications(database, accumulated, true);
         assertTrue(notifier.accumulateCalled);
         assertTrue(notifier.sendNotificationCalled);
         assertTrue(notifier.accumulatorSet.isEmpty());
         notifier.reset();
 
-        notifier.onDataChanged(null, database, DataChangedNotifier.DBOperation.INSERT, null, 0);
+        notifier.onDataChanged(accumulated, null, database, DataChangedNotifier.DBOperation.INSERT, null, 0);
         assertFalse(notifier.accumulatorSet.isEmpty());
-        notifier.flushAccumulatedNotifications(database, false);
+        notifier.flushAccumulatedNotifications(database, accumulated, false);
         assertTrue(notifier.accumulateCalled);
         assertFalse(notifier.sendNotificationCalled);
         assertTrue(notifier.accumulatorSet.isEmpty());
@@ -277,6 +278,64 @@ public class DataChangedNotifierTest extends DatabaseTestCase {
         assertEquals(1, onDataChangedCalledCount.get());
     }
 
+    public void testNotificationsNotSentWhenNestedTransactionFails() {
+        TestDataChangedNotifier notifier = new TestDataChangedNotifier();
+        database.registerDataChangedNotifier(notifier);
+        database.beginTransaction();
+        try {
+            insertBasicTestModel("Peter", "Quincy Taggart", System.currentTimeMillis() - 5);
+            database.beginTransaction();
+            try {
+                insertBasicTestModel("Guy", "Fleegman", System.currentTimeMillis() - 4);
+            } finally {
+                database.endTransaction();
+            }
+            assertTrue(notifier.accumulateCalled);
+            assertFalse(notifier.sendNotificationCalled);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        assertFalse(notifier.sendNotificationCalled);
+        assertTrue(notifier.accumulatorSet.isEmpty());
+
+        // The failed transaction should not leak into the next one
+        notifier.reset();
+        insertBasicTestModel("Gwen", "DeMarco", System.currentTimeMillis() - 3);
+        assertTrue(notifier.sendNotificationCalled);
+    }
+
+    public void testNotificationCounters() {
+        long accumulatedBefore = database.getDataChangedNotificationsAccumulated();
+        long flushedBefore = database.getDataChangedNotificationsFlushed();
+
+        // No notifiers registered
+        insertBasicTestModel("Peter", "Quincy Taggart", System.currentTimeMillis() - 5);
+        assertEquals(accumulatedBefore, database.getDataChangedNotificationsAccumulated());
+        assertEquals(flushedBefore, database.getDataChangedNotificationsFlushed());
+
+        TestDataChangedNotifier notifier = new TestDataChangedNotifier();
+        database.registerDataChangedNotifier(notifier);
+        database.beginTransaction();
+        try {
+            insertBasicTestModel("Guy", "Fleegman", System.currentTimeMillis() - 4);
+            insertBasicTestModel("Gwen", "DeMarco", System.currentTimeMillis() - 3);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        // The second insert finds the notifier already in the accumulator set
+        assertEquals(accumulatedBefore + 1, database.getDataChangedNotificationsAccumulated());
+        assertEquals(flushedBefore + 1, database.getDataChangedNotificationsFlushed());
+
+        database.unregisterDataChangedNotifier(notifier);
+        notifier.reset();
+        insertBasicTestModel("Jason", "Nesmith", System.currentTimeMillis() - 2);
+        assertFalse(notifier.accumulateCalled);
+        assertEquals(accumulatedBefore + 1, database.getDataChangedNotificationsAccumulated());
+        assertEquals(flushedBefore + 1, database.getDataChangedNotificationsFlushed());
+    }
+
     public void testNotifierConstructors() {
         testNotifierConstructorsInternal(new SimpleDataChangedNotifier() {
             @Override
@@ -28,12 +28,15 @@ public class JSONFunctionTest extends DatabaseTestCase {
     }
 
     private void testJsonFunction(Runnable toTest, VersionCode minVersionCode) {
-        if (isJson1ExtensionEnabled()) {
+        if (isJson1ExtensionEnabled(database)) {
             testForMinVersionCode(minVersionCode, toTest);
         }
     }
 
-    private boolean isJson1ExtensionEnabled() {
+    static boolean isJson1ExtensionEnabled(SquidDatabase database) {
+        if (!database.getSqliteVersion().isAtLeast(JSONFunctions.JSON1_MIN_VERSION)) {
+            return false;
+        }
         try {
             return database.simpleQueryForLong(Query.select(JSONFunctions.jsonValid("{ \"a\" : \"b\" }"))) != 0;
         } catch (RuntimeException e) {
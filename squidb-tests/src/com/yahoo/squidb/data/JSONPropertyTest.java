@@ -6,7 +6,9 @@
 package com.yahoo.squidb.data;
 
 import com.yahoo.squidb.json.JSONMapper;
+import com.yahoo.squidb.json.JSONProperty;
 import com.yahoo.squidb.json.JSONPropertySupport;
+import com.yahoo.squidb.json.ParameterizedTypeBuilder;
 import com.yahoo.squidb.sql.Property;
 import com.yahoo.squidb.sql.Query;
 import com.yahoo.squidb.test.DatabaseTestCase;
@@ -94,6 +96,11 @@ public class JSONPropertyTest extends DatabaseTestCase {
             if (JSONObject.NULL == object) {
                 return null;
             }
+            if (object instanceof JSONArray && type instanceof ParameterizedType && List.class
+                    .equals(((ParameterizedType) type).getRawType())) {
+                // e.g. a list nested in the array that wraps a value selected with JSONProperty.extract()
+                return (T) deserializeArray((JSONArray) object, ((ParameterizedType) type).getActualTypeArguments()[0]);
+            }
             if (!(object instanceof JSONObject)) {
                 return (T) object;
             }
@@ -174,8 +181,8 @@ public class JSONPropertyTest extends DatabaseTestCase {
         }
     }
 
-    private String transitoryKeyForProperty(Property<?> property) {
-        return "json__" + property.getName();
+    private boolean hasCachedJSON(AbstractModel model, Property<?> property) {
+        return model.getDerivedValue(property) != null;
     }
 
     public void testListProperty() {
@@ -190,11 +197,11 @@ public class JSONPropertyTest extends DatabaseTestCase {
 
                 model = database.fetch(TestModel.class, model.getRowId(), TestModel.PROPERTIES);
                 int currentFromJSONCount = currentMapper.fromJSONCount;
-                assertFalse(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_LIST)));
+                assertFalse(hasCachedJSON(model, TestModel.SOME_LIST));
                 assertEquals(numbers, model.getSomeList());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
                 // Second call reads from cache; assert that works too
-                assertTrue(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_LIST)));
+                assertTrue(hasCachedJSON(model, TestModel.SOME_LIST));
                 assertEquals(numbers, model.getSomeList());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
             }
@@ -217,11 +224,11 @@ public class JSONPropertyTest extends DatabaseTestCase {
 
                 model = database.fetch(TestModel.class, model.getRowId(), TestModel.PROPERTIES);
                 int currentFromJSONCount = currentMapper.fromJSONCount;
-                assertFalse(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_MAP)));
+                assertFalse(hasCachedJSON(model, TestModel.SOME_MAP));
                 assertEquals(numbers, model.getSomeMap());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
                 // Second call reads from cache; assert that works too
-                assertTrue(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_MAP)));
+                assertTrue(hasCachedJSON(model, TestModel.SOME_MAP));
                 assertEquals(numbers, model.getSomeMap());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
             }
@@ -241,11 +248,11 @@ public class JSONPropertyTest extends DatabaseTestCase {
 
                 model = database.fetch(TestModel.class, model.getRowId(), TestModel.PROPERTIES);
                 int currentFromJSONCount = currentMapper.fromJSONCount;
-                assertFalse(model.hasTransitory(transitoryKeyForProperty(TestModel.COMPLICATED_MAP)));
+                assertFalse(hasCachedJSON(model, TestModel.COMPLICATED_MAP));
                 assertEquals(crazyMap, model.getComplicatedMap());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
                 // Second call reads from cache; assert that works too
-                assertTrue(model.hasTransitory(transitoryKeyForProperty(TestModel.COMPLICATED_MAP)));
+                assertTrue(hasCachedJSON(model, TestModel.COMPLICATED_MAP));
                 assertEquals(crazyMap, model.getComplicatedMap());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
             }
@@ -296,11 +303,11 @@ public class JSONPropertyTest extends DatabaseTestCase {
                 assertEquals(pojo.pojoList, readPojo.pojoList);
 
                 int currentFromJSONCount = currentMapper.fromJSONCount;
-                assertFalse(viewModel.hasTransitory(transitoryKeyForProperty(TestViewModel.CRAZY_MAP)));
+                assertFalse(hasCachedJSON(viewModel, TestViewModel.CRAZY_MAP));
                 assertEquals(crazyMap, viewModel.getCrazyMap());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
                 // Second call reads from cache; assert that works too
-                assertTrue(viewModel.hasTransitory(transitoryKeyForProperty(TestViewModel.CRAZY_MAP)));
+                assertTrue(hasCachedJSON(viewModel, TestViewModel.CRAZY_MAP));
                 assertEquals(crazyMap, viewModel.getCrazyMap());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
             }
@@ -325,7 +332,7 @@ public class JSONPropertyTest extends DatabaseTestCase {
                 assertEquals(Collections.emptyList(), model.getSomeList());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
                 // Second call reads from cache; assert that works too
-                assertTrue(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_LIST)));
+                assertTrue(hasCachedJSON(model, TestModel.SOME_LIST));
                 assertEquals(Collections.emptyList(), model.getSomeList());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
             }
@@ -345,7 +352,7 @@ public class JSONPropertyTest extends DatabaseTestCase {
                 model.readPropertiesFromValuesStorage(newStorage, TestModel.SOME_LIST);
                 assertEquals(Arrays.asList("D", "E", "F"), model.getSomeList());
                 // Second call reads from cache; assert that works too
-                assertTrue(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_LIST)));
+                assertTrue(hasCachedJSON(model, TestModel.SOME_LIST));
                 assertEquals(Arrays.asList("D", "E", "F"), model.getSomeList());
 
                 newStorage.put(TestModel.SOME_LIST.getName(), "[\"H\", \"I\", \"J\"]");
@@ -354,13 +361,70 @@ public class JSONPropertyTest extends DatabaseTestCase {
                 assertEquals(Arrays.asList("H", "I", "J"), model.getSomeList());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
                 // Second call reads from cache; assert that works too
-                assertTrue(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_LIST)));
+                assertTrue(hasCachedJSON(model, TestModel.SOME_LIST));
                 assertEquals(Arrays.asList("H", "I", "J"), model.getSomeList());
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
             }
         });
     }
 
+    public void testCacheOnlyInvalidatedForChangedProperty() {
+        testWithAllMappers(new Runnable() {
+            @Override
+            public void run() {
+                TestModel model = new TestModel();
+                model.setSomeList(Arrays.asList("A", "B", "C"));
+                database.persist(model);
+
+                model = database.fetch(TestModel.class, model.getRowId(), TestModel.PROPERTIES);
+                int currentFromJSONCount = currentMapper.fromJSONCount;
+                assertEquals(Arrays.asList("A", "B", "C"), model.getSomeList());
+                assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
+
+                // Changing some other property doesn't require parsing the list again
+                model.setFirstName("Sam");
+                model.markSaved();
+                assertTrue(hasCachedJSON(model, TestModel.SOME_LIST));
+                assertEquals(Arrays.asList("A", "B", "C"), model.getSomeList());
+                assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
+
+                // Writing the JSON column directly discards the cached list
+                model.set(TestModel.SOME_LIST, "[\"D\"]");
+                assertFalse(hasCachedJSON(model, TestModel.SOME_LIST));
+                assertEquals(Collections.singletonList("D"), model.getSomeList());
+                assertEquals(currentFromJSONCount + 2, currentMapper.fromJSONCount);
+            }
+        });
+    }
+
+    public void testExtractedProperty() {
+        testWithAllMappers(new Runnable() {
+            @Override
+            public void run() {
+                if (!JSONFunctionTest.isJson1ExtensionEnabled(database)) {
+                    return;
+                }
+                TestModel model = new TestModel().setSomePojo(mockPojo()).setComplicatedMap(mockComplicatedMap());
+                database.persist(model);
+
+                JSONProperty<String> pojoStr = TestModel.SOME_POJO.extract("$.pojoStr", "pojoStr");
+                JSONProperty<List<Integer>> abc123 = TestModel.COMPLICATED_MAP.extract("$.ABC.123", "abc123");
+                JSONProperty<Map<String, List<Integer>>> xyz = TestModel.COMPLICATED_MAP.extract("$.XYZ", "xyz");
+                JSONProperty<String> missing = TestModel.SOME_POJO.extract("$.notAKey", "missing");
+                TestModel extracted = database.fetchByQuery(TestModel.class,
+                        Query.select(pojoStr, abc123, xyz, missing).from(TestModel.TABLE));
+
+                Type listOfIntegers = ParameterizedTypeBuilder.build(List.class, Integer.class);
+                assertEquals("ABC", JSONPropertySupport.getValueFromJSON(extracted, pojoStr, String.class));
+                assertEquals(Arrays.asList(1, 2, 3),
+                        JSONPropertySupport.getValueFromJSON(extracted, abc123, listOfIntegers));
+                assertEquals(mockComplicatedMap().get("XYZ"), JSONPropertySupport.getValueFromJSON(extracted, xyz,
+                        ParameterizedTypeBuilder.build(Map.class, String.class, listOfIntegers)));
+                assertNull(JSONPropertySupport.getValueFromJSON(extracted, missing, String.class));
+            }
+        });
+    }
+
     public void testGetterThrowsIfJSONPropertyNotPresent() {
         testWithAllMappers(new Runnable() {
             @Override
@@ -373,11 +437,11 @@ public class JSONPropertyTest extends DatabaseTestCase {
                     }
                 }, UnsupportedOperationException.class);
                 int currentFromJSONCount = currentMapper.fromJSONCount;
-                assertFalse(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_LIST)));
+                assertFalse(hasCachedJSON(model, TestModel.SOME_LIST));
                 assertEquals(Collections.emptyList(), model.getSomeList()); // This property has a default
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
                 // Second call reads from cache; assert that works too
-                assertTrue(model.hasTransitory(transitoryKeyForProperty(TestModel.SOME_LIST)));
+                assertTrue(hasCachedJSON(model, TestModel.SOME_LIST));
                 assertEquals(Collections.emptyList(), model.getSomeList()); // This property has a default
                 assertEquals(currentFromJSONCount + 1, currentMapper.fromJSONCount);
             }
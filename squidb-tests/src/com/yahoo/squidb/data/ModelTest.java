@@ -8,6 +8,7 @@ package com.yahoo.squidb.data;
 import com.yahoo.squidb.sql.Property;
 import com.yahoo.squidb.sql.Query;
 import com.yahoo.squidb.test.DatabaseTestCase;
+import com.yahoo.squidb.test.Schema;
 import com.yahoo.squidb.test.TestEnum;
 import com.yahoo.squidb.test.TestModel;
 import com.yahoo.squidb.test.Thing;
@@ -34,6 +35,90 @@ public class ModelTest extends DatabaseTestCase {
         assertFalse(model.isModified());
     }
 
+    public void testPrimitiveGetters() {
+        TestModel model = new TestModel();
+        // Default values
+        assertEquals(7, model.getLuckyNumber(0));
+        assertTrue(model.isHappy(false));
+        try {
+            model.getBirthday(0);
+            fail("Expected UnsupportedOperationException for a value not found in the model");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        model.setBirthday(null);
+        model.setSomeDouble(2.5);
+        model.setLuckyNumber(3);
+        assertEquals(-1L, model.getBirthday(-1L));
+        assertEquals(2.5, model.getSomeDouble(0));
+        assertEquals(3, model.getLuckyNumber(0));
+        assertEquals(3, model.getInt(TestModel.LUCKY_NUMBER, 0));
+
+        database.persist(model.setBirthday(testDate));
+        TestModel fetched = database.fetch(TestModel.class, model.getRowId());
+        assertEquals(testDate, fetched.getBirthday(0));
+        assertEquals(model.getRowId(), fetched.getRowId());
+    }
+
+    public void testMergedValuesView() {
+        TestModel model = new TestModel();
+        ValuesStorage merged = model.getMergedValues();
+        assertEquals(model.getDefaultValues(), merged);
+        assertEquals(7, merged.get(TestModel.LUCKY_NUMBER.getName()));
+
+        // The view is live and prioritizes set values over database values over defaults
+        model.setFirstName("Sam");
+        model.markSaved();
+        model.setLuckyNumber(3);
+        assertSame(merged, model.getMergedValues());
+        assertEquals("Sam", merged.get(TestModel.FIRST_NAME.getName()));
+        assertEquals(3, merged.get(TestModel.LUCKY_NUMBER.getName()));
+
+        ValuesStorage copy = new MapValuesStorage();
+        copy.putAll(model.getDefaultValues());
+        copy.putAll(model.getDatabaseValues());
+        copy.putAll(model.getSetValues());
+        assertEquals(copy, merged);
+        assertEquals(merged, copy);
+        assertEquals(copy.hashCode(), merged.hashCode());
+        assertEquals(copy.size(), merged.size());
+        assertEquals(copy.keySet(), merged.keySet());
+
+        try {
+            merged.put(TestModel.LAST_NAME.getName(), "B");
+            fail("Expected UnsupportedOperationException when modifying merged values");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testEqualsAndHashCodeTrackModifications() {
+        TestModel model = new TestModel().setFirstName("Sam").setLastName("B");
+        TestModel clone = model.clone();
+        assertEquals(model, clone);
+        assertEquals(model.hashCode(), clone.hashCode());
+
+        int hashCode = model.hashCode();
+        model.setLuckyNumber(3);
+        assertFalse(model.equals(clone));
+        assertFalse(hashCode == model.hashCode());
+
+        model.setLuckyNumber(7);
+        model.markSaved();
+        assertEquals(hashCode, model.hashCode());
+        assertEquals(model, clone);
+
+        // Writing to a storage directly also invalidates any cached hash code
+        model.getDatabaseValues().put(TestModel.LAST_NAME.getName(), "C");
+        assertFalse(model.equals(clone));
+        assertFalse(hashCode == model.hashCode());
+
+        model.clear();
+        assertEquals(new TestModel(), model);
+        assertEquals(new TestModel().hashCode(), model.hashCode());
+    }
+
     public void testContainsNonNullValueMethod() {
         TestModel model = new TestModel();
         model.setFirstName("Test");
@@ -94,6 +179,46 @@ public class ModelTest extends DatabaseTestCase {
         assertNull(emptyClone.getAllTransitoryKeys());
     }
 
+    public void testSnapshot() {
+        TestModel model = new TestModel().setFirstName("Sam");
+        model.markSaved();
+        model.setLastName("B");
+
+        TestModel snapshot = model.snapshot();
+        assertTrue(snapshot.isFrozen());
+        assertFalse(model.isFrozen());
+        assertSame(snapshot, snapshot.snapshot());
+        assertEquals(model, snapshot);
+
+        // Changes to the original are not visible in the snapshot
+        model.setFirstName("Bob");
+        model.markSaved();
+        assertEquals("Sam", snapshot.getFirstName());
+        assertEquals("B", snapshot.getLastName());
+        assertTrue(snapshot.fieldIsDirty(TestModel.LAST_NAME));
+
+        try {
+            snapshot.setFirstName("Bob");
+            fail("Expected IllegalStateException when modifying a frozen model");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        try {
+            database.persist(snapshot);
+            fail("Expected IllegalStateException when saving a frozen model");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        // Transitory values can still be changed, and cloning a frozen model gives a mutable copy
+        snapshot.putTransitory("a", "A");
+        TestModel clone = snapshot.clone();
+        assertFalse(clone.isFrozen());
+        clone.setFirstName("Bob");
+        assertEquals("Sam", snapshot.getFirstName());
+        assertTrue(database.persist(clone));
+    }
+
     public void testCrudMethods() {
         // insert
         TestModel model = insertBasicTestModel("Sam", "Bosley", testDate);
@@ -111,7 +236,6 @@ public class ModelTest extends DatabaseTestCase {
 
         // delete
         assertTrue(database.delete(TestModel.class, id));
-        assertEquals(0, database.countAll(TestModel.class));
     }
 
     public void testCrudMethodsWithNonDefaultPrimaryKey() {
@@ -221,4 +345,13 @@ public class ModelTest extends DatabaseTestCase {
     public void testNonPublicConstantCopying() {
         assertEquals("somePackageProtectedConst", TestModel.PACKAGE_PROTECTED_CONST);
     }
+
+    public void testModelNamedSchema() {
+        // The generated model must not clash with ArrayValuesStorage.Schema, which every table model uses
+        Schema model = new Schema().setName("a");
+        model.markSaved();
+        model.setName("b");
+        assertEquals("b", model.getName());
+        assertEquals("a", model.getDatabaseValues().get(Schema.NAME.getName()));
+    }
 }
@@ -47,6 +47,34 @@ public class SquidCursorTest extends DatabaseTestCase {
         }
     }
 
+    public void testColumnIndexForField() {
+        StringProperty literalString = StringProperty.literal("literalString", "testStr");
+        IntegerProperty literalInteger = IntegerProperty.literal(2, "testInt");
+
+        // Not one of the cursor's fields, but refers to an existing column by name
+        IntegerProperty sameName = IntegerProperty.literal(0, literalInteger.getName());
+        final IntegerProperty missing = IntegerProperty.literal(0, "missingColumn");
+
+        Query query = Query.select(literalString, literalInteger);
+        final SquidCursor<?> cursor = database.query(null, query);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(0, cursor.getColumnIndexForField(literalString));
+            assertEquals(1, cursor.getColumnIndexForField(literalInteger));
+            assertEquals(1, cursor.getColumnIndexForField(sameName));
+            assertEquals(2, cursor.get(sameName).intValue());
+
+            testThrowsException(new Runnable() {
+                @Override
+                public void run() {
+                    cursor.get(missing);
+                }
+            }, IllegalArgumentException.class);
+        } finally {
+            cursor.close();
+        }
+    }
+
     public void testMultiWindowCursor() {
         // Create a cursor that should contain more than 2MB of data (the default CursorWindow size)
         // to make sure that windowing is working correctly
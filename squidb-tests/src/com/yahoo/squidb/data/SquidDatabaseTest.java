@@ -5,9 +5,12 @@
  */
 package com.yahoo.squidb.data;
 
+import com.yahoo.squidb.sql.Criterion;
 import com.yahoo.squidb.sql.Field;
+import com.yahoo.squidb.sql.Function;
 import com.yahoo.squidb.sql.Property.StringProperty;
 import com.yahoo.squidb.sql.Query;
+import com.yahoo.squidb.sql.SubqueryTable;
 import com.yahoo.squidb.sql.TableModelName;
 import com.yahoo.squidb.sql.TableStatement;
 import com.yahoo.squidb.test.DatabaseTestCase;
@@ -25,9 +28,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class SquidDatabaseTest extends DatabaseTestCase {
@@ -536,6 +541,467 @@ public class SquidDatabaseTest extends DatabaseTestCase {
         assertEquals(testDate, fetch.getBirthday().longValue());
     }
 
+    public void testQueryForList() {
+        insertBasicTestModel("A", "B", testDate);
+        insertBasicTestModel("C", null, testDate + 1);
+        insertBasicTestModel("E", "F", testDate + 2);
+
+        List<TestModel> models = database.queryForList(TestModel.class,
+                Query.select(TestModel.PROPERTIES).orderBy(TestModel.BIRTHDAY.asc()));
+        assertEquals(3, models.size());
+        assertEquals("A", models.get(0).getFirstName());
+        assertEquals("B", models.get(0).getLastName());
+        assertEquals(testDate, models.get(0).getBirthday().longValue());
+        assertTrue(models.get(0).isHappy());
+        assertEquals("C", models.get(1).getFirstName());
+        assertNull(models.get(1).getLastName());
+        assertEquals("E", models.get(2).getFirstName());
+
+        assertTrue(database.queryForList(TestModel.class,
+                Query.select().where(TestModel.FIRST_NAME.eq("Z"))).isEmpty());
+    }
+
+    public void testQueryForEachReusesModel() {
+        insertBasicTestModel("A", "B", testDate);
+        insertBasicTestModel("C", "D", testDate + 1);
+
+        final TestModel reusable = new TestModel();
+        final List<String> firstNames = new ArrayList<>();
+        int count = database.queryForEach(TestModel.class, Query.select().orderBy(TestModel.BIRTHDAY.asc()),
+                reusable, new SquidDatabase.ModelConsumer<TestModel>() {
+                    @Override
+                    public void accept(TestModel model) {
+                        assertSame(reusable, model);
+                        assertFalse(model.isModified());
+                        firstNames.add(model.getFirstName());
+                    }
+                });
+        assertEquals(2, count);
+        assertEquals(Arrays.asList("A", "C"), firstNames);
+        assertEquals("C", reusable.getFirstName());
+        assertEquals("D", reusable.getLastName());
+
+        final List<TestModel> models = new ArrayList<>();
+        count = database.queryForEach(TestModel.class, Query.select(), null,
+                new SquidDatabase.ModelConsumer<TestModel>() {
+                    @Override
+                    public void accept(TestModel model) {
+                        models.add(model);
+                    }
+                });
+        assertEquals(2, count);
+        assertNotSame(models.get(0), models.get(1));
+    }
+
+    public void testPreparedStatementCacheForUpdateDeleteAndFetch() {
+        // TestDatabase enables the prepared statement cache in onConfigure
+        TestModel model = insertBasicTestModel();
+        long hits = database.getPreparedStatementCacheHits();
+        long misses = database.getPreparedStatementCacheMisses();
+
+        model.setFirstName("Alice");
+        assertTrue(database.persist(model));
+        assertEquals(misses + 1, database.getPreparedStatementCacheMisses());
+
+        model.setFirstName("Bob");
+        assertTrue(database.persist(model));
+        assertEquals(hits + 1, database.getPreparedStatementCacheHits());
+
+        model.setFirstName("Carol").setLastName(null);
+        assertTrue(database.persist(model));
+        assertEquals(misses + 2, database.getPreparedStatementCacheMisses());
+
+        TestModel fetched = database.fetch(TestModel.class, model.getRowId(), TestModel.PROPERTIES);
+        assertEquals("Carol", fetched.getFirstName());
+        assertNull(fetched.getLastName());
+        assertEquals(testDate, fetched.getBirthday().longValue());
+        fetched = database.fetch(TestModel.class, model.getRowId(), TestModel.PROPERTIES);
+        assertEquals("Carol", fetched.getFirstName());
+        assertEquals(hits + 2, database.getPreparedStatementCacheHits());
+        assertNull(database.fetch(TestModel.class, model.getRowId() + 1, TestModel.PROPERTIES));
+
+        assertFalse(database.delete(TestModel.class, model.getRowId() + 1));
+        assertTrue(database.delete(TestModel.class, model.getRowId()));
+        assertEquals(0, database.countAll(TestModel.class));
+
+        // Updating a row that no longer exists
+        model.setFirstName("Dave");
+        assertFalse(database.persist(model));
+    }
+
+    public void testPersistAll() {
+        TestModel existing = insertBasicTestModel();
+        existing.setFirstName("Updated");
+
+        final AtomicInteger notificationCount = new AtomicInteger();
+        database.registerDataChangedNotifier(new SimpleDataChangedNotifier() {
+            @Override
+            protected void onDataChanged() {
+                notificationCount.incrementAndGet();
+            }
+        });
+
+        // Enough rows to need more than one multi-row insert, with a saved model and another table in between
+        List<TableModel> models = new ArrayList<>();
+        List<TestModel> testModels = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Birthdays are unique, and must not replace the existing model's row
+            TestModel model = new TestModel().setFirstName("First" + i).setLastName("Last" + i)
+                    .setBirthday(testDate + 1 + i);
+            testModels.add(model);
+            if (i == 150) {
+                models.add(existing);
+                models.add(new Thing().setFoo("foo").setBar(1));
+            }
+            models.add(model);
+        }
+
+        assertTrue(database.persistAll(models));
+        assertEquals(1, notificationCount.get());
+        assertEquals(301, database.countAll(TestModel.class));
+        assertEquals(1, database.countAll(Thing.class));
+        assertEquals("Updated", database.fetch(TestModel.class, existing.getRowId()).getFirstName());
+        for (TestModel model : testModels) {
+            assertTrue(model.isSaved());
+            assertFalse(model.isModified());
+            TestModel fetched = database.fetch(TestModel.class, model.getRowId());
+            assertEquals(model.getFirstName(), fetched.getFirstName());
+            assertEquals(model.getBirthday(), fetched.getBirthday());
+        }
+
+        // insertAll inserts new rows even if the models were already saved
+        List<TestModel> copies = testModels.subList(0, 10);
+        for (TestModel model : copies) {
+            model.setLastName(model.getLastName() + "Copy").setBirthday(model.getBirthday() + 1000);
+        }
+        assertTrue(database.insertAll(copies));
+        assertEquals(311, database.countAll(TestModel.class));
+    }
+
+    public void testPersistAllWithSkippedRows() {
+        // Rows skipped by the trigger mean the row IDs of a multi-row insert can't be matched to the models
+        database.tryExecSql("CREATE TEMP TRIGGER skip_rows BEFORE INSERT ON " + TestModel.TABLE.getName()
+                + " WHEN NEW." + TestModel.FIRST_NAME.getName() + " = 'Skip' BEGIN SELECT RAISE(IGNORE); END");
+        try {
+            List<TestModel> models = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                models.add(new TestModel().setFirstName(i == 2 ? "Skip" : "First" + i).setLastName("Last" + i)
+                        .setBirthday(testDate + i));
+            }
+
+            assertFalse(database.persistAll(models));
+            assertEquals(4, database.countAll(TestModel.class));
+            for (TestModel model : models) {
+                if ("Skip".equals(model.getFirstName())) {
+                    assertFalse(model.isSaved());
+                } else {
+                    assertTrue(model.isSaved());
+                    TestModel fetched = database.fetch(TestModel.class, model.getRowId());
+                    assertEquals(model.getFirstName(), fetched.getFirstName());
+                }
+            }
+        } finally {
+            database.tryExecSql("DROP TRIGGER IF EXISTS temp.skip_rows");
+        }
+    }
+
+    public void testQueryResultCache() {
+        database.setQueryResultCacheEnabled(true);
+        try {
+            insertBasicTestModel("Sam", "Bosley", testDate);
+            Query query = Query.select(TestModel.PROPERTIES).from(TestModel.TABLE)
+                    .where(TestModel.IS_HAPPY.isTrue()).freeze();
+            Query countQuery = Query.select(Function.count()).from(TestModel.TABLE).freeze();
+
+            assertEquals(1, database.queryForList(TestModel.class, query).size());
+            assertEquals(1, database.simpleQueryForLong(countQuery));
+            long hits = database.getQueryResultCacheHits();
+
+            // Results are served from the cache, and modifying a returned model doesn't affect the cache
+            List<TestModel> cached = database.queryForList(TestModel.class, query);
+            assertEquals(1, cached.size());
+            cached.get(0).setFirstName("Modified");
+            assertEquals("Sam", database.queryForList(TestModel.class, query).get(0).getFirstName());
+            assertEquals(1, database.simpleQueryForLong(countQuery));
+            assertEquals(hits + 3, database.getQueryResultCacheHits());
+
+            // Writes to a table invalidate the results of queries that read from it, but not others
+            database.persist(new Thing().setFoo("foo"));
+            assertEquals(1, database.simpleQueryForLong(countQuery));
+            assertEquals(hits + 4, database.getQueryResultCacheHits());
+            insertBasicTestModel("Kevin", "Lange", testDate + 1);
+            assertEquals(2, database.queryForList(TestModel.class, query).size());
+            assertEquals(2, database.simpleQueryForLong(countQuery));
+            assertEquals(hits + 4, database.getQueryResultCacheHits());
+
+            // Writes inside a transaction invalidate cached results
+            database.beginTransaction();
+            try {
+                insertBasicTestModel("Jonathan", "Koren", testDate + 2);
+                assertEquals(3, database.simpleQueryForLong(countQuery));
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            assertEquals(3, database.simpleQueryForLong(countQuery));
+
+            // Invalidation doesn't depend on data changed notifications
+            database.setDataChangedNotificationsEnabled(false);
+            database.deleteWhere(TestModel.class, TestModel.FIRST_NAME.eq("Jonathan"));
+            database.setDataChangedNotificationsEnabled(true);
+            assertEquals(2, database.simpleQueryForLong(countQuery));
+
+            // Raw SQL invalidates everything
+            database.tryExecSql("DELETE FROM " + TestModel.TABLE.getName());
+            assertEquals(0, database.simpleQueryForLong(countQuery));
+            assertEquals(0, database.queryForList(TestModel.class, query).size());
+        } finally {
+            database.setQueryResultCacheEnabled(false);
+        }
+    }
+
+    public void testQueryResultCacheDistinguishesSubqueriesWithSameAlias() {
+        database.setQueryResultCacheEnabled(true);
+        try {
+            insertBasicTestModel("Sam", "Bosley", testDate);
+            insertBasicTestModel("Kevin", "Lange", testDate + 1);
+            SubqueryTable sams = Query.select(TestModel.ID).from(TestModel.TABLE)
+                    .where(TestModel.FIRST_NAME.eq("Sam")).as("t");
+            SubqueryTable everyone = Query.select(TestModel.ID).from(TestModel.TABLE)
+                    .where(TestModel.LAST_NAME.neq("Sam")).as("t");
+            Query samsCount = Query.select(Function.count()).from(sams).freeze();
+            Query everyoneCount = Query.select(Function.count()).from(everyone).freeze();
+
+            // Both queries have the same arguments and both subqueries are aliased "t", but each query must still get
+            // its own cache entry
+            long hits = database.getQueryResultCacheHits();
+            assertEquals(1, database.simpleQueryForLong(samsCount));
+            assertEquals(2, database.simpleQueryForLong(everyoneCount));
+            assertEquals(hits, database.getQueryResultCacheHits());
+            assertEquals(1, database.simpleQueryForLong(samsCount));
+            assertEquals(2, database.simpleQueryForLong(everyoneCount));
+            assertEquals(hits + 2, database.getQueryResultCacheHits());
+        } finally {
+            database.setQueryResultCacheEnabled(false);
+        }
+    }
+
+    public void testReaderConnectionPool() {
+        database.setReaderConnectionPoolEnabled(true, 2, 50);
+        try {
+            insertBasicTestModel();
+            long acquisitions = database.getReaderConnectionAcquisitions();
+            assertEquals(1, database.countAll(TestModel.class));
+            // The pool is only used if the open helper supports it and the database uses WAL
+            if (database.getReaderConnectionAcquisitions() > acquisitions) {
+                assertEquals(1, database.getReaderConnectionPoolSize());
+                assertEquals(0.0, database.getReaderConnectionPoolUtilization());
+            }
+
+            // Reads in a transaction use the main connection, so they see the transaction's writes
+            database.beginTransaction();
+            try {
+                acquisitions = database.getReaderConnectionAcquisitions();
+                insertBasicTestModel("A", "B", System.currentTimeMillis() + 100);
+                assertEquals(2, database.countAll(TestModel.class));
+                assertEquals(acquisitions, database.getReaderConnectionAcquisitions());
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            assertEquals(2, database.countAll(TestModel.class));
+            SquidCursor<TestModel> cursor = database.query(TestModel.class, Query.select(TestModel.ID));
+            try {
+                assertEquals(2, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            database.setReaderConnectionPoolEnabled(false);
+        }
+        assertEquals(0, database.getReaderConnectionPoolSize());
+    }
+
+    public void testGroupCommit() throws InterruptedException {
+        int numThreads = 10;
+        // A long window, closed early once every thread has joined the group, makes the writes coalesce reliably
+        database.setGroupCommitEnabled(true, 5000, numThreads);
+        try {
+            long transactionsBefore = database.getGroupCommitTransactions();
+            long writesBefore = database.getGroupCommitWrites();
+            final AtomicInteger successes = new AtomicInteger();
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                final int index = i;
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        // Last name and birthday are both unique
+                        TestModel model = new TestModel().setFirstName("Writer").setLastName("Group" + index)
+                                .setBirthday(testDate + index + 1);
+                        if (database.persist(model) && model.isSaved()) {
+                            successes.incrementAndGet();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            assertEquals(numThreads, successes.get());
+            assertEquals(numThreads, database.count(TestModel.class, TestModel.FIRST_NAME.eq("Writer")));
+            assertEquals(writesBefore + numThreads, database.getGroupCommitWrites());
+            long transactions = database.getGroupCommitTransactions() - transactionsBefore;
+            assertTrue("Expected writes to share transactions, but used " + transactions,
+                    transactions < numThreads);
+
+            // Writes in an explicit transaction don't use group commit
+            database.beginTransaction();
+            try {
+                insertBasicTestModel();
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+            assertEquals(writesBefore + numThreads, database.getGroupCommitWrites());
+        } finally {
+            database.setGroupCommitEnabled(false);
+        }
+    }
+
+    public void testGroupCommitFollowerWriteThrows() throws InterruptedException {
+        GroupCommitter committer = new GroupCommitter(database, 5000, 3, new AtomicLong(), new AtomicLong());
+        final RuntimeException followerError = new RuntimeException("Follower failed");
+        List<GroupCommitWriter> writers = runGroupCommitWrites(committer, new GroupCommitter.Write<Boolean>() {
+            @Override
+            public Boolean run() {
+                return database.persist(new TestModel().setFirstName("Leader").setLastName("L")
+                        .setBirthday(testDate + 1));
+            }
+        }, new GroupCommitter.Write<Boolean>() {
+            @Override
+            public Boolean run() {
+                database.persist(new TestModel().setFirstName("Thrower").setLastName("T").setBirthday(testDate + 2));
+                throw followerError;
+            }
+        }, new GroupCommitter.Write<Boolean>() {
+            @Override
+            public Boolean run() {
+                return database.persist(new TestModel().setFirstName("Follower").setLastName("F")
+                        .setBirthday(testDate + 3));
+            }
+        });
+
+        // Only the failed write is rolled back, and only its thread sees the error
+        assertEquals(Boolean.TRUE, writers.get(0).result);
+        assertNull(writers.get(0).error);
+        assertSame(followerError, writers.get(1).error);
+        assertEquals(Boolean.TRUE, writers.get(2).result);
+        assertNull(writers.get(2).error);
+        assertEquals(2, database.countAll(TestModel.class));
+        assertEquals(0, database.count(TestModel.class, TestModel.FIRST_NAME.eq("Thrower")));
+    }
+
+    public void testGroupCommitRerunsWritesWhenNestedTransactionFails() throws InterruptedException {
+        AtomicLong transactions = new AtomicLong();
+        AtomicLong writes = new AtomicLong();
+        GroupCommitter committer = new GroupCommitter(database, 5000, 3, transactions, writes);
+        List<GroupCommitWriter> writers = runGroupCommitWrites(committer, new GroupCommitter.Write<Boolean>() {
+            @Override
+            public Boolean run() {
+                return database.persist(new TestModel().setFirstName("Leader").setLastName("L")
+                        .setBirthday(testDate + 1));
+            }
+        }, new GroupCommitter.Write<Boolean>() {
+            @Override
+            public Boolean run() {
+                database.beginTransaction();
+                try {
+                    return database.persist(new TestModel().setFirstName("Nested").setLastName("N")
+                            .setBirthday(testDate + 2));
+                } finally {
+                    database.endTransaction(); // Not marked successful, which dooms the shared transaction
+                }
+            }
+        }, new GroupCommitter.Write<Boolean>() {
+            @Override
+            public Boolean run() {
+                return database.persist(new TestModel().setFirstName("Follower").setLastName("F")
+                        .setBirthday(testDate + 3));
+            }
+        });
+
+        // The shared transaction was rolled back, and each write ran again in its own transaction
+        for (GroupCommitWriter writer : writers) {
+            assertNull(writer.error);
+        }
+        assertEquals(1, database.count(TestModel.class, TestModel.FIRST_NAME.eq("Leader")));
+        assertEquals(0, database.count(TestModel.class, TestModel.FIRST_NAME.eq("Nested")));
+        assertEquals(1, database.count(TestModel.class, TestModel.FIRST_NAME.eq("Follower")));
+        assertEquals(4, transactions.get());
+        assertEquals(3, writes.get());
+    }
+
+    private static class GroupCommitWriter extends Thread {
+
+        private final GroupCommitter committer;
+        private final GroupCommitter.Write<Boolean> write;
+        private Boolean result;
+        private RuntimeException error;
+
+        GroupCommitWriter(GroupCommitter committer, GroupCommitter.Write<Boolean> write) {
+            this.committer = committer;
+            this.write = write;
+        }
+
+        @Override
+        public void run() {
+            try {
+                result = committer.run(write);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+        }
+    }
+
+    // Runs the first write on a thread that leads a group, then each of the others on a thread that joins it
+    @SafeVarargs
+    private static List<GroupCommitWriter> runGroupCommitWrites(GroupCommitter committer,
+            final GroupCommitter.Write<Boolean> leaderWrite, GroupCommitter.Write<Boolean>... followerWrites)
+            throws InterruptedException {
+        final CountDownLatch leading = new CountDownLatch(1);
+        List<GroupCommitWriter> writers = new ArrayList<>();
+        writers.add(new GroupCommitWriter(committer, new GroupCommitter.Write<Boolean>() {
+            @Override
+            public Boolean run() {
+                leading.countDown();
+                return leaderWrite.run();
+            }
+        }));
+        for (GroupCommitter.Write<Boolean> write : followerWrites) {
+            writers.add(new GroupCommitWriter(committer, write));
+        }
+        writers.get(0).start();
+        leading.await();
+        for (int i = 1; i < writers.size(); i++) {
+            writers.get(i).start();
+        }
+        for (GroupCommitWriter writer : writers) {
+            writer.join();
+        }
+        return writers;
+    }
+
     public void testPropertiesAreNullable() {
         TestModel model = insertBasicTestModel();
         model.setFirstName(null);
@@ -875,6 +1341,45 @@ public class SquidDatabaseTest extends DatabaseTestCase {
         }
     }
 
+    public void testRepeatedValidatedQueries() {
+        database.persist(new Thing().setFoo("a").setBar(1));
+        for (int i = 0; i < 2; i++) {
+            Query query = Query.select(Thing.ID).from(Thing.TABLE)
+                    .where(Criterion.fromRawSelection(Thing.FOO.getName() + " = ?", new String[]{"a"}));
+            query.requestValidation();
+            SquidCursor<Thing> cursor = database.query(Thing.class, query);
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+
+            // Failed validations are not cached
+            final Query invalid = Query.select(Thing.ID).from(Thing.TABLE)
+                    .where(Criterion.fromRawSelection("not a valid selection", null));
+            invalid.requestValidation();
+            testThrowsRuntimeException(new Runnable() {
+                @Override
+                public void run() {
+                    database.query(Thing.class, invalid);
+                }
+            });
+        }
+
+        // Selections referencing a column that has since been added to the table are validated again
+        final Query newColumn = Query.select(Thing.ID).from(Thing.TABLE)
+                .where(Criterion.fromRawSelection("extra IS NULL", null));
+        newColumn.requestValidation();
+        testThrowsRuntimeException(new Runnable() {
+            @Override
+            public void run() {
+                database.query(Thing.class, newColumn);
+            }
+        });
+        assertTrue(database.tryExecSql("ALTER TABLE " + Thing.TABLE.getExpression() + " ADD COLUMN extra TEXT"));
+        database.query(Thing.class, newColumn).close();
+    }
+
     public void testCopyDatabase() {
         insertBasicTestModel(); // Make sure DB is open and populated
 
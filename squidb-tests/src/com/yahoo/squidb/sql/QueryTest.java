@@ -448,6 +448,33 @@ public class QueryTest extends DatabaseTestCase {
         testReusableQueryInternal(name, "elmo", query);
     }
 
+    public void testCompiledArgumentTypes() {
+        // BooleanProperty.eq(true) compiles to a constant comparison, so use an untyped field to get a boolean argument
+        Field<Object> isHappy = Field.field(Employee.IS_HAPPY.getExpression());
+        Query query = Query.select(Employee.ID).where(Employee.NAME.eq("bigBird").and(Employee.ID.gt(1))
+                .and(isHappy.eq(true)).and(Function.abs(Employee.ID).lt(2.5)));
+        CompiledStatement compiled = query.compile(database.getCompileContext());
+        assertEquals(Arrays.<Object>asList("bigBird", 1, true, 2.5), Arrays.asList(compiled.sqlArgs));
+        assertTrue(Arrays.equals(new int[]{CompiledStatement.ARG_TYPE_STRING, CompiledStatement.ARG_TYPE_LONG,
+                CompiledStatement.ARG_TYPE_BOOLEAN, CompiledStatement.ARG_TYPE_DOUBLE}, compiled.sqlArgTypes));
+
+        // Constant arguments are resolved once and reused
+        assertSame(compiled, query.compile(database.getCompileContext()));
+    }
+
+    public void testCompiledArgumentTypesForDeferredArguments() {
+        AtomicReference<String> name = new AtomicReference<>("bigBird");
+        Query query = Query.select(Employee.ID).where(Employee.NAME.eq(name));
+        CompiledStatement compiled = query.compile(database.getCompileContext());
+        assertEquals("bigBird", compiled.sqlArgs[0]);
+        assertEquals(CompiledStatement.ARG_TYPE_STRING, compiled.sqlArgTypes[0]);
+
+        name.set(null);
+        compiled = query.compile(database.getCompileContext());
+        assertNull(compiled.sqlArgs[0]);
+        assertEquals(CompiledStatement.ARG_TYPE_NULL, compiled.sqlArgTypes[0]);
+    }
+
     private void testReusableQueryInternal(AtomicReference<String> ref, String name, Query query) {
         ref.set(name);
         SquidCursor<Employee> cursor = database.query(Employee.class, query);
@@ -513,7 +540,7 @@ public class QueryTest extends DatabaseTestCase {
     }
 
     public void testDatabaseProvidedArgumentResolver() {
-        database.useCustomArgumentBinder = true;
+        database.setUseCustomArgumentBinder(true);
         Query query = Query.select(TestModel.SOME_ENUM).from(TestModel.TABLE)
                 .where(TestModel.SOME_ENUM.eq(TestEnum.APPLE));
 
@@ -560,6 +587,27 @@ public class QueryTest extends DatabaseTestCase {
         }
     }
 
+    public void testInCollectionPaddedToBucketedSize() {
+        List<String> names = new ArrayList<>(Arrays.asList("bigBird", "cookieMonster", "elmo"));
+        Query query = Query.select().from(Employee.TABLE).where(Employee.NAME.in(names));
+        CompiledStatement compiled = query.compile(database.getCompileContext());
+        assertEquals(4, compiled.sqlArgs.length);
+        assertEquals(Arrays.<Object>asList("bigBird", "cookieMonster", "elmo", "elmo"),
+                Arrays.asList(compiled.sqlArgs));
+        assertEquals(3, database.count(Employee.class, Employee.NAME.in(names)));
+
+        names.add("oscar");
+        CompiledStatement compiledWithFour = query.compile(database.getCompileContext());
+        assertEquals(compiled.sql, compiledWithFour.sql);
+        assertEquals(4, database.count(Employee.class, Employee.NAME.in(names)));
+
+        assertEquals(0, CompiledArgumentResolver.bucketedSize(0));
+        assertEquals(2, CompiledArgumentResolver.bucketedSize(2));
+        assertEquals(4, CompiledArgumentResolver.bucketedSize(3));
+        assertEquals(8, CompiledArgumentResolver.bucketedSize(5));
+        assertEquals(512, CompiledArgumentResolver.bucketedSize(300));
+    }
+
     public void testQueryWithMaxSqlArgs() {
         int numRows = SqlStatement.MAX_VARIABLE_NUMBER + 1;
         Set<Long> rowIds = new HashSet<>();
@@ -587,6 +635,39 @@ public class QueryTest extends DatabaseTestCase {
         testMaxSqlArgRowIds(query, rowIds.size());
     }
 
+    public void testLargeInListLoadedIntoTempTable() {
+        database.useTempTableForLargeInLists = true;
+        database.close(); // Rebuilds the compile context when the database is reopened
+
+        int numRows = SqlStatement.MAX_VARIABLE_NUMBER + 1;
+        Set<Long> rowIds = new HashSet<>();
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < numRows; i++) {
+                TestModel testModel = new TestModel();
+                database.persist(testModel);
+                rowIds.add(testModel.getRowId());
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        Query query = Query.select(TestModel.ID).where(TestModel.ID.in(rowIds));
+        CompiledStatement compiled = query.compile(database.getCompileContext());
+        assertTrue(compiled.sql.contains(SqlStatement.IN_LIST_VALUES_TABLE));
+        assertEquals(1, compiled.sqlArgs.length);
+        assertEquals(1, compiled.inListValues.size());
+        assertEquals(numRows, compiled.inListValues.get(0).values.length);
+
+        testMaxSqlArgRowIds(query, numRows);
+        assertEquals(numRows, database.count(TestModel.class, TestModel.ID.in(rowIds)));
+
+        // The values are deleted once each statement is done with them
+        assertEquals(0, database.simpleQueryForLong("SELECT COUNT(*) FROM temp." + SqlStatement.IN_LIST_VALUES_TABLE,
+                null));
+    }
+
     private void testMaxSqlArgRowIds(Query query, int expectedSize) {
         SquidCursor<TestModel> cursor = database.query(TestModel.class, query);
         try {
@@ -908,6 +989,120 @@ public class QueryTest extends DatabaseTestCase {
         assertEquals(Field.field("2"), query.getLimit());
     }
 
+    public void testCompileCacheKeyedByCompileContext() {
+        CompileContext compileContext = database.getCompileContext();
+        assertSame(compileContext, database.getCompileContext());
+
+        Query query = Query.select().from(Employee.TABLE).where(Employee.NAME.eq("bigBird"));
+        CompiledStatement first = query.compile(compileContext);
+        CompiledStatement second = query.compile(compileContext);
+        assertSame(first.sql, second.sql);
+
+        // A different context must not reuse SQL compiled for another one
+        CompileContext resolvingContext = new CompileContext.Builder(compileContext.getVersionCode())
+                .setArgumentResolver(new DefaultArgumentResolver() {
+                    @Override
+                    protected boolean canResolveCustomType(Object arg) {
+                        return arg instanceof String && !((String) arg).startsWith("resolved-");
+                    }
+
+                    @Override
+                    protected Object resolveCustomType(Object arg) {
+                        return "resolved-" + arg;
+                    }
+                }).build();
+        assertEquals("resolved-bigBird", query.compile(resolvingContext).sqlArgs[0]);
+        assertEquals("bigBird", query.compile(compileContext).sqlArgs[0]);
+
+        // Modifying the query invalidates the cache
+        query.limit(1);
+        assertFalse(first.sql.equals(query.compile(compileContext).sql));
+    }
+
+    public void testFrozenQueryCompiledConcurrently() throws InterruptedException {
+        final Query query = Query.select().from(Employee.TABLE)
+                .where(Employee.ID.in(Arrays.asList(1L, 2L, 3L))).freeze();
+        final CompileContext compileContext = database.getCompileContext();
+        CompiledStatement expected = query.compile(compileContext);
+        final String expectedSql = expected.sql;
+        final List<Object> expectedArgs = Arrays.asList(expected.sqlArgs);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            CompiledStatement compiled = query.compile(compileContext);
+                            assertEquals(expectedSql, compiled.sql);
+                            // The IN list is padded to a bucketed size, so compare against a single-threaded compile
+                            assertEquals(expectedArgs, Arrays.asList(compiled.sqlArgs));
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    public void testQueryEqualsAndHashCodeAreStructural() {
+        Query query1 = Query.select(Employee.ID, Employee.NAME).from(Employee.TABLE)
+                .join(Join.left(TestModel.TABLE, TestModel.ID.eq(Employee.ID)))
+                .where(Employee.MANAGER_ID.eq(1))
+                .union(Query.select(Employee.ID, Employee.NAME).from(Employee.TABLE).where(Employee.ID.eq(2)))
+                .orderBy(Employee.NAME.asc())
+                .limit(5, 2);
+        Query query2 = Query.select(Employee.ID, Employee.NAME).from(Employee.TABLE)
+                .join(Join.left(TestModel.TABLE, TestModel.ID.eq(Employee.ID)))
+                .where(Employee.MANAGER_ID.eq(1))
+                .union(Query.select(Employee.ID, Employee.NAME).from(Employee.TABLE).where(Employee.ID.eq(2)))
+                .orderBy(Employee.NAME.asc())
+                .limit(5, 2);
+        assertEquals(query1, query2);
+        assertEquals(query1.hashCode(), query2.hashCode());
+
+        assertFalse(query1.equals(query2.fork().limit(5, 3)));
+        assertFalse(query1.equals(query2.fork().orderBy(Employee.NAME.desc())));
+        assertFalse(query1.equals(query2.fork().where(Employee.IS_HAPPY.isTrue())));
+        assertFalse(Query.select(Employee.ID).from(Employee.TABLE)
+                .equals(Query.selectDistinct(Employee.ID).from(Employee.TABLE)));
+        assertFalse(query1.equals(query2.fork().leftJoin(Thing.TABLE, Thing.ID.eq(Employee.ID))));
+        assertFalse(query1.equals(query2.fork().from(TestModel.TABLE)));
+
+        Set<Query> querySet = new HashSet<>();
+        querySet.add(query1.freeze());
+        assertTrue(querySet.contains(query2));
+        assertTrue(querySet.contains(query2.freeze()));
+        assertEquals(query2.hashCode(), query1.hashCode());
+        assertFalse(querySet.contains(query2.limit(1)));
+    }
+
+    public void testQueriesFromSubqueriesWithSameAliasAreNotEqual() {
+        Query subquery1 = Query.select(Employee.ID).from(Employee.TABLE).where(Employee.MANAGER_ID.isNull());
+        Query subquery2 = Query.select(Employee.ID).from(Employee.TABLE).where(Employee.MANAGER_ID.isNotNull());
+        Query query1 = Query.select().from(subquery1.as("t"));
+        Query query2 = Query.select().from(subquery2.as("t"));
+        assertFalse(query1.toString().equals(query2.toString()));
+        assertFalse(query1.equals(query2));
+        assertFalse(query1.hashCode() == query2.hashCode());
+
+        Query joined1 = Query.select(Employee.ID).from(Employee.TABLE)
+                .join(Join.inner(subquery1.as("t"), Employee.ID.isNotNull()));
+        Query joined2 = Query.select(Employee.ID).from(Employee.TABLE)
+                .join(Join.inner(subquery2.as("t"), Employee.ID.isNotNull()));
+        assertFalse(joined1.equals(joined2));
+
+        assertEquals(query1, Query.select().from(Query.select(Employee.ID).from(Employee.TABLE)
+                .where(Employee.MANAGER_ID.isNull()).as("t")));
+    }
+
     // the following four tests all use the same query but different compound operators
 
     public void testUnion() {
@@ -0,0 +1,18 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.test;
+
+import com.yahoo.squidb.annotations.TableModelSpec;
+
+/**
+ * A model whose name matches the values storage schema class (ArrayValuesStorage.Schema) used by every generated table
+ * model, to make sure generated code refers to that class in a way that doesn't clash with the model's own name.
+ */
+@TableModelSpec(className = "Schema", tableName = "schemas")
+public class SchemaSpec {
+
+    String name;
+}
@@ -17,7 +17,8 @@ import com.yahoo.squidb.sql.View;
 public class TestDatabase extends SquidDatabase {
 
     public boolean caughtCustomMigrationException;
-    public boolean useCustomArgumentBinder;
+    private boolean useCustomArgumentBinder;
+    public boolean useTempTableForLargeInLists;
 
     private static final Index INDEX_TESTMODELS_LUCKYNUMBER = TestModel.TABLE
             .index("index_testmodels_luckynumber", TestModel.LUCKY_NUMBER);
@@ -31,6 +32,11 @@ public class TestDatabase extends SquidDatabase {
         return "testDb";
     }
 
+    public void setUseCustomArgumentBinder(boolean useCustomArgumentBinder) {
+        this.useCustomArgumentBinder = useCustomArgumentBinder;
+        invalidateCompileContext();
+    }
+
     @Override
     protected Table[] getTables() {
         return new Table[]{
@@ -86,7 +92,7 @@ public class TestDatabase extends SquidDatabase {
     protected void onConfigure(ISQLiteDatabase db) {
         /** @see AttachDetachTest#testAttacherInTransactionOnAnotherThread() */
         db.enableWriteAheadLogging();
-        setPreparedInsertCacheEnabled(true);
+        setPreparedStatementCacheEnabled(true);
     }
 
     @Override
@@ -117,6 +123,7 @@ public class TestDatabase extends SquidDatabase {
                 }
             });
         }
+        builder.setUseTempTableForLargeInLists(useTempTableForLargeInLists);
     }
 
     private static class CustomMigrationException extends MigrationFailedException {
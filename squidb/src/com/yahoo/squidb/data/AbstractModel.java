@@ -37,10 +37,14 @@ import java.util.Set;
  * data that will not be saved to the database if you persist the model. Transitory values are not considered when
  * calling get(Property) or using generated getters; use {@link #getTransitory(String) getTransitory} to read these
  * values. Alternatively, use {@link #hasTransitory(String) checkTransitory} to merely check the presence of a
- * transitory value. Transitory values are often short-lived, and may be used for things like caching a parsed
- * representation of simpler values (e.g. in the case of JSONProperty in the squidb-json addon). As such, transitory
- * values will be cleared when repopulating a model instance using methods like
- * {@link #readPropertiesFromCursor(SquidCursor)} or {@link #readPropertiesFromValuesStorage(ValuesStorage, Property[])}
+ * transitory value. Transitory values are often short-lived, and may be used for things like caching data computed
+ * from the model's values. As such, transitory values will be cleared when repopulating a model instance using
+ * methods like {@link #readPropertiesFromCursor(SquidCursor)} or
+ * {@link #readPropertiesFromValuesStorage(ValuesStorage, Property[])}
+ * <p>
+ * Objects derived from a property's value (e.g. the parsed representation of a JSONProperty in the squidb-json addon)
+ * can be cached using {@link #putDerivedValue(Property, Object) putDerivedValue}. These are discarded automatically
+ * when the property's value changes.
  * <p>
  * <h3>Interacting with Models</h3>
  * Models are usually created by fetching from a database or reading from a {@link SquidCursor} after querying a
@@ -68,6 +72,15 @@ import java.util.Set;
  * values. Transitory values will be copied to a new transitory storage for the new model but will not be a deep copy
  * of the values themselves. If you require a deep copy of stored transitory values, you should implement custom
  * cloning logic.
+ * <p>
+ * Cloning is cheap for models stored in an {@link ArrayValuesStorage} (i.e. most generated table models), since the
+ * clone shares its values with the original until one of them is modified.
+ * <p>
+ * <h3>Snapshots</h3>
+ * A model can be {@link #freeze() frozen} to make it read-only, after which any attempt to modify its values will
+ * throw an exception. {@link #snapshot()} returns a frozen clone of a model, which can be safely handed to another
+ * thread (e.g. a UI thread) while the original continues to be modified. Transitory values can still be changed on a
+ * frozen model, since they are often used to cache data derived from the model's values.
  *
  * @see com.yahoo.squidb.data.TableModel
  * @see com.yahoo.squidb.data.ViewModel
@@ -99,6 +112,15 @@ public abstract class AbstractModel implements Cloneable {
     /** Transitory Metadata (not saved in database) */
     protected HashMap<String, Object> transitoryData = null;
 
+    /** Lazily created view returned by {@link #getMergedValues()} */
+    private MergedValuesStorage mergedValues = null;
+
+    /** Objects derived from property values, keyed by property name. See {@link #putDerivedValue} */
+    private HashMap<String, Object> derivedValues = null;
+
+    /** True if {@link #freeze()} has been called on this model */
+    private boolean frozen = false;
+
     /** @return the database-read values for this object */
     public ValuesStorage getDatabaseValues() {
         return values;
@@ -109,23 +131,15 @@ public abstract class AbstractModel implements Cloneable {
         return setValues;
     }
 
-    /** @return a mapping of all field/value pairs merged across data sources */
+    /**
+     * @return a mapping of all field/value pairs merged across data sources. The returned object is a read-only view
+     * of this model's values rather than a copy, and will reflect any later changes to the model. To get an
+     * independent copy, call {@link ValuesStorage#putAll(ValuesStorage) putAll} on a new storage.
+     */
     public ValuesStorage getMergedValues() {
-        ValuesStorage mergedValues = newValuesStorage();
-
-        ValuesStorage defaultValues = getDefaultValues();
-        if (defaultValues != null) {
-            mergedValues.putAll(defaultValues);
-        }
-
-        if (values != null) {
-            mergedValues.putAll(values);
-        }
-
-        if (setValues != null) {
-            mergedValues.putAll(setValues);
+        if (mergedValues == null) {
+            mergedValues = new MergedValuesStorage(this);
         }
-
         return mergedValues;
     }
 
@@ -142,9 +156,11 @@ public abstract class AbstractModel implements Cloneable {
      * Clear all data on this model, including transitory values
      */
     public void clear() {
+        checkNotFrozen();
         values = null;
         setValues = null;
         transitoryData = null;
+        derivedValues = null;
     }
 
     /**
@@ -152,6 +168,7 @@ public abstract class AbstractModel implements Cloneable {
      * saves will not need to write all the data again. Users should not usually need to call this method.
      */
     public void markSaved() {
+        checkNotFrozen();
         if (values == null) {
             values = setValues;
         } else if (setValues != null) {
@@ -160,6 +177,17 @@ public abstract class AbstractModel implements Cloneable {
         setValues = null;
     }
 
+    /**
+     * Restore the values and set values of this model to those of the given copy of it, e.g. one made by
+     * {@link #clone()}. Transitory data is not affected.
+     */
+    void restoreValuesFrom(AbstractModel copy) {
+        checkNotFrozen();
+        values = copy.values == null ? null : copyValuesStorage(copy.values);
+        setValues = copy.setValues == null ? null : copyValuesStorage(copy.setValues);
+        derivedValues = null;
+    }
+
     /**
      * Use merged values to compare two models to each other. Must be of exactly the same class.
      */
@@ -191,21 +219,73 @@ public abstract class AbstractModel implements Cloneable {
         }
 
         if (setValues != null) {
-            clone.setValues = newValuesStorage();
-            clone.setValues.putAll(setValues);
+            clone.setValues = copyValuesStorage(setValues);
         }
 
         if (values != null) {
-            clone.values = newValuesStorage();
-            clone.values.putAll(values);
+            clone.values = copyValuesStorage(values);
         }
 
         if (transitoryData != null) {
             clone.transitoryData = new HashMap<>(transitoryData);
         }
+        if (derivedValues != null) {
+            clone.derivedValues = new HashMap<>(derivedValues);
+        }
+        clone.mergedValues = null;
+        clone.frozen = false;
         return clone;
     }
 
+    private ValuesStorage copyValuesStorage(ValuesStorage source) {
+        if (source instanceof ArrayValuesStorage) {
+            return ((ArrayValuesStorage) source).copyOnWrite();
+        }
+        ValuesStorage copy = newValuesStorage();
+        copy.putAll(source);
+        return copy;
+    }
+
+    /**
+     * Makes this model read-only. Any future calls that would modify the model's values, e.g. setters,
+     * {@link #markSaved()}, or reading values from a cursor, will throw an {@link IllegalStateException}, as will
+     * trying to save the model to a database. The storages returned by {@link #getSetValues()} and
+     * {@link #getDatabaseValues()} should not be modified directly either. Use {@link #clone()} to get a mutable
+     * copy of a frozen model.
+     *
+     * @return this model
+     */
+    public AbstractModel freeze() {
+        this.frozen = true;
+        return this;
+    }
+
+    /**
+     * @return true if {@link #freeze()} has been called on this model; false otherwise
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Returns a {@link #freeze() frozen} copy of this model. The copy shares its values with this model until this
+     * model is modified, so taking a snapshot is cheap. If this model is already frozen, it is returned as is.
+     *
+     * @return a frozen copy of this model
+     */
+    public AbstractModel snapshot() {
+        if (frozen) {
+            return this;
+        }
+        return clone().freeze();
+    }
+
+    void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Can't modify a frozen model; clone it to get a mutable copy");
+        }
+    }
+
     /**
      * @return true if this model has values that have been changed
      */
@@ -259,9 +339,7 @@ public abstract class AbstractModel implements Cloneable {
     public void readPropertiesFromCursor(SquidCursor<?> cursor) {
         prepareToReadProperties();
 
-        for (Field<?> field : cursor.getFields()) {
-            readFieldIntoModel(cursor, field);
-        }
+        cursor.getRowMapper().readRow(cursor, values);
     }
 
     /**
@@ -276,6 +354,7 @@ public abstract class AbstractModel implements Cloneable {
     }
 
     private void prepareToReadProperties() {
+        checkNotFrozen();
         if (values == null) {
             values = newValuesStorage();
         }
@@ -283,9 +362,10 @@ public abstract class AbstractModel implements Cloneable {
         // clears user-set values
         setValues = null;
         transitoryData = null;
+        derivedValues = null;
     }
 
-    private void readFieldIntoModel(SquidCursor<?> cursor, com.yahoo.squidb.sql.Field<?> field) {
+    private void readFieldIntoModel(SquidCursor<?> cursor, Field<?> field) {
         try {
             if (field instanceof Property<?>) {
                 Property<?> property = (Property<?>) field;
@@ -335,6 +415,73 @@ public abstract class AbstractModel implements Cloneable {
         return null;
     }
 
+    /**
+     * Return the value of the specified {@link Property} as a primitive long, without boxing it if the model's
+     * {@link ValuesStorage} doesn't require it. Values are prioritized the same way as in
+     * {@link #get(Property, boolean)}.
+     *
+     * @param property the property to read
+     * @param valueIfNull the value to return if the value of the property is null
+     * @return the value of the specified property, or valueIfNull if it is null
+     * @throws UnsupportedOperationException if the value is not found in the model
+     */
+    public long getLong(Property<Long> property, long valueIfNull) {
+        return valuesContaining(property).getLong(property.getName(), valueIfNull);
+    }
+
+    /**
+     * Return the value of the specified {@link Property} as a primitive int. See {@link #getLong(Property, long)}.
+     *
+     * @param property the property to read
+     * @param valueIfNull the value to return if the value of the property is null
+     * @return the value of the specified property, or valueIfNull if it is null
+     * @throws UnsupportedOperationException if the value is not found in the model
+     */
+    public int getInt(Property<Integer> property, int valueIfNull) {
+        return valuesContaining(property).getInt(property.getName(), valueIfNull);
+    }
+
+    /**
+     * Return the value of the specified {@link Property} as a primitive double. See {@link #getLong(Property, long)}.
+     *
+     * @param property the property to read
+     * @param valueIfNull the value to return if the value of the property is null
+     * @return the value of the specified property, or valueIfNull if it is null
+     * @throws UnsupportedOperationException if the value is not found in the model
+     */
+    public double getDouble(Property<Double> property, double valueIfNull) {
+        return valuesContaining(property).getDouble(property.getName(), valueIfNull);
+    }
+
+    /**
+     * Return the value of the specified {@link Property} as a primitive boolean. See {@link #getLong(Property, long)}.
+     *
+     * @param property the property to read
+     * @param valueIfNull the value to return if the value of the property is null
+     * @return the value of the specified property, or valueIfNull if it is null
+     * @throws UnsupportedOperationException if the value is not found in the model
+     */
+    public boolean getBoolean(Property<Boolean> property, boolean valueIfNull) {
+        return valuesContaining(property).getBoolean(property.getName(), valueIfNull);
+    }
+
+    // Returns the values storage that get(property) would read the property's value from
+    private ValuesStorage valuesContaining(Property<?> property) {
+        String name = property.getName();
+        if (setValues != null && setValues.containsKey(name)) {
+            return setValues;
+        } else if (values != null && values.containsKey(name)) {
+            return values;
+        }
+        ValuesStorage defaultValues = getDefaultValues();
+        if (defaultValues.containsKey(name)) {
+            return defaultValues;
+        }
+        throw new UnsupportedOperationException(name
+                + " not found in model. Make sure the value was set explicitly, read from a cursor,"
+                + " or that the model has a default value for this property.");
+    }
+
     @SuppressWarnings("unchecked")
     private <TYPE> TYPE getFromValues(Property<TYPE> property, ValuesStorage values) {
         Object value = values.get(property.getName());
@@ -417,6 +564,7 @@ public abstract class AbstractModel implements Cloneable {
      * @param value the new value for the property
      */
     public <TYPE> void set(Property<TYPE> property, TYPE value) {
+        checkNotFrozen();
         if (setValues == null) {
             setValues = newValuesStorage();
         }
@@ -426,6 +574,7 @@ public abstract class AbstractModel implements Cloneable {
         }
 
         saver.save(property, setValues, value);
+        clearDerivedValue(property.getName());
     }
 
     /**
@@ -433,6 +582,7 @@ public abstract class AbstractModel implements Cloneable {
      * model as set values, i.e. marks the model as dirty with these values.
      */
     public void setPropertiesFromValuesStorage(ValuesStorage values, Property<?>... properties) {
+        checkNotFrozen();
         if (values != null) {
             if (setValues == null) {
                 setValues = newValuesStorage();
@@ -443,6 +593,7 @@ public abstract class AbstractModel implements Cloneable {
                     Object value = property.accept(valueCastingVisitor, values.get(key));
                     if (shouldSaveValue(key, value)) {
                         this.setValues.put(property.getName(), value, true);
+                        clearDerivedValue(key);
                     }
                 }
             }
@@ -455,6 +606,8 @@ public abstract class AbstractModel implements Cloneable {
      * @param property the property to clear
      */
     public void clearValue(Property<?> property) {
+        checkNotFrozen();
+        clearDerivedValue(property.getName());
         if (setValues != null && setValues.containsKey(property.getName())) {
             setValues.remove(property.getName());
         }
@@ -529,6 +682,45 @@ public abstract class AbstractModel implements Cloneable {
         return transitoryData.keySet();
     }
 
+    // --- caching objects derived from property values
+
+    /**
+     * Cache an object derived from the value of the given property, e.g. the result of parsing it. Unlike transitory
+     * values, the cached object is discarded automatically whenever the property's value is changed using this
+     * model's methods (e.g. by a setter, {@link #clearValue(Property)}, or reading values from a cursor), so callers
+     * don't need to check that it is still up to date. Changes made by writing to the storages returned by
+     * {@link #getSetValues()} or {@link #getDatabaseValues()} directly are not detected. Like transitory values,
+     * derived values can be cached on a {@link #freeze() frozen} model.
+     *
+     * @param property the property the object was derived from
+     * @param value the derived object
+     * @see #getDerivedValue(Property)
+     */
+    public void putDerivedValue(Property<?> property, Object value) {
+        if (derivedValues == null) {
+            derivedValues = new HashMap<>();
+        }
+        derivedValues.put(property.getName(), value);
+    }
+
+    /**
+     * @param property the property the object was derived from
+     * @return the object cached for the given property using {@link #putDerivedValue(Property, Object)}, or null if
+     * there is none or the property's value has changed since it was cached
+     */
+    public Object getDerivedValue(Property<?> property) {
+        if (derivedValues == null) {
+            return null;
+        }
+        return derivedValues.get(property.getName());
+    }
+
+    private void clearDerivedValue(String propertyName) {
+        if (derivedValues != null) {
+            derivedValues.remove(propertyName);
+        }
+    }
+
     // --- convenience wrappers for using transitory data as flags
 
     /**
@@ -616,52 +808,24 @@ public abstract class AbstractModel implements Cloneable {
         public Object visitInteger(Property<Integer> property, Object data) {
             if (data == null || data instanceof Integer) {
                 return data;
-            } else if (data instanceof Number) {
-                return ((Number) data).intValue();
-            } else if (data instanceof Boolean) {
-                return (Boolean) data ? 1 : 0;
-            } else if (data instanceof String) {
-                try {
-                    return Integer.valueOf((String) data);
-                } catch (NumberFormatException e) {
-                    // Suppress and throw the class cast
-                }
             }
-            throw new ClassCastException("Value " + data + " could not be cast to Integer");
+            return ValuesStorage.castToInt(data);
         }
 
         @Override
         public Object visitLong(Property<Long> property, Object data) {
             if (data == null || data instanceof Long) {
                 return data;
-            } else if (data instanceof Number) {
-                return ((Number) data).longValue();
-            } else if (data instanceof Boolean) {
-                return (Boolean) data ? 1L : 0L;
-            } else if (data instanceof String) {
-                try {
-                    return Long.valueOf((String) data);
-                } catch (NumberFormatException e) {
-                    // Suppress and throw the class cast
-                }
             }
-            throw new ClassCastException("Value " + data + " could not be cast to Long");
+            return ValuesStorage.castToLong(data);
         }
 
         @Override
         public Object visitDouble(Property<Double> property, Object data) {
             if (data == null || data instanceof Double) {
                 return data;
-            } else if (data instanceof Number) {
-                return ((Number) data).doubleValue();
-            } else if (data instanceof String) {
-                try {
-                    return Double.valueOf((String) data);
-                } catch (NumberFormatException e) {
-                    // Suppress and throw the class cast
-                }
             }
-            throw new ClassCastException("Value " + data + " could not be cast to Double");
+            return ValuesStorage.castToDouble(data);
         }
 
         @Override
@@ -677,10 +841,8 @@ public abstract class AbstractModel implements Cloneable {
         public Object visitBoolean(Property<Boolean> property, Object data) {
             if (data == null || data instanceof Boolean) {
                 return data;
-            } else if (data instanceof Number) {
-                return ((Number) data).intValue() != 0;
             }
-            throw new ClassCastException("Value " + data + " could not be cast to Boolean");
+            return ValuesStorage.castToBoolean(data);
         }
 
         @Override
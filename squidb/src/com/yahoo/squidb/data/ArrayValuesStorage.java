@@ -0,0 +1,878 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Property;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Implementation of {@link ValuesStorage} that stores values in arrays indexed by a fixed {@link Schema}, usually
+ * built from the properties of a table. Integral and boolean values are stored unboxed in a long array and floating
+ * point values in a double array; strings and blobs are stored in an object array. A bitset tracks which slots
+ * contain a value. Keys that aren't part of the schema (e.g. the names of aliased functions read from a cursor) are
+ * kept in an overflow map, so this class can be used anywhere a {@link MapValuesStorage} could.
+ * <p>
+ * Values read from this storage are boxed to the same type they were put as, so e.g. a value put as an Integer is
+ * returned as an Integer. The sets returned by {@link #valueSet()} and {@link #keySet()} are read-only views.
+ * <p>
+ * {@link #copyOnWrite()} makes a copy that shares this storage's arrays until either the copy or the original is
+ * written to, so copies that are only read from (e.g. the storages of a model snapshot) are cheap.
+ */
+public class ArrayValuesStorage extends ValuesStorage {
+
+    /**
+     * Maps keys to slot indexes for an {@link ArrayValuesStorage}. A Schema is immutable and should be shared by all
+     * storage instances for the same table, e.g. by declaring it in a static field of the model class.
+     */
+    public static final class Schema {
+
+        private final String[] keys;
+        private final Map<String, Integer> slots;
+
+        public Schema(Property<?>... properties) {
+            Map<String, Integer> slots = new HashMap<>();
+            String[] keys = new String[properties.length];
+            int count = 0;
+            for (Property<?> property : properties) {
+                String key = property.getName();
+                if (!slots.containsKey(key)) {
+                    slots.put(key, count);
+                    keys[count++] = key;
+                }
+            }
+            this.keys = count == keys.length ? keys : Arrays.copyOf(keys, count);
+            this.slots = slots;
+        }
+
+        /**
+         * @return the slot index for the given key, or -1 if the key is not part of this schema
+         */
+        int slotFor(String key) {
+            Integer slot = slots.get(key);
+            return slot == null ? -1 : slot;
+        }
+
+        String keyAt(int slot) {
+            return keys[slot];
+        }
+
+        /**
+         * @return the number of slots in this schema
+         */
+        public int size() {
+            return keys.length;
+        }
+    }
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_BOOLEAN = 1;
+    private static final byte TYPE_BYTE = 2;
+    private static final byte TYPE_SHORT = 3;
+    private static final byte TYPE_INTEGER = 4;
+    private static final byte TYPE_LONG = 5;
+    private static final byte TYPE_FLOAT = 6;
+    private static final byte TYPE_DOUBLE = 7;
+    private static final byte TYPE_STRING = 8;
+    private static final byte TYPE_BLOB = 9;
+
+    private final Schema schema;
+
+    /** Bitset of slots that contain a value */
+    private long[] present;
+    private int presentCount = 0;
+
+    /** Type of the value in each slot; only meaningful if the slot's bit is set in {@link #present} */
+    private byte[] types;
+
+    // Value lanes, lazily allocated
+    private long[] longValues;
+    private double[] doubleValues;
+    private Object[] objectValues;
+
+    /** Values for keys not in the schema, lazily allocated */
+    private Map<String, Object> overflow;
+
+    /** Incremented by every modification, see {@link #modificationCount()} */
+    private int modCount = 0;
+
+    /**
+     * True if the arrays and overflow map may be shared with a storage created by {@link #copyOnWrite()}, in which
+     * case they must be copied before the next write
+     */
+    private boolean shared = false;
+
+    public ArrayValuesStorage(Schema schema) {
+        if (schema == null) {
+            throw new IllegalArgumentException("Can't create an ArrayValuesStorage with a null Schema");
+        }
+        this.schema = schema;
+        this.present = new long[(schema.size() + 63) >>> 6];
+        this.types = new byte[schema.size()];
+    }
+
+    private ArrayValuesStorage(ArrayValuesStorage source) {
+        this.schema = source.schema;
+        this.present = source.present;
+        this.presentCount = source.presentCount;
+        this.types = source.types;
+        this.longValues = source.longValues;
+        this.doubleValues = source.doubleValues;
+        this.objectValues = source.objectValues;
+        this.overflow = source.overflow;
+        this.shared = true;
+    }
+
+    /**
+     * @return a copy of this storage that shares its contents with this one until either of them is modified. The
+     * first write to either storage copies the shared contents, so changes to one are never visible in the other.
+     */
+    public ArrayValuesStorage copyOnWrite() {
+        shared = true;
+        return new ArrayValuesStorage(this);
+    }
+
+    private void ensureUnshared() {
+        if (shared) {
+            present = present.clone();
+            types = types.clone();
+            if (longValues != null) {
+                longValues = longValues.clone();
+            }
+            if (doubleValues != null) {
+                doubleValues = doubleValues.clone();
+            }
+            if (objectValues != null) {
+                objectValues = objectValues.clone();
+            }
+            if (overflow != null) {
+                overflow = new HashMap<>(overflow);
+            }
+            shared = false;
+        }
+    }
+
+    /**
+     * @return the {@link Schema} used by this storage
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    // --- bitset management
+
+    private boolean isPresent(int slot) {
+        return (present[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private void markPresent(int slot) {
+        long bit = 1L << slot;
+        int word = slot >>> 6;
+        if ((present[word] & bit) == 0) {
+            present[word] |= bit;
+            presentCount++;
+        }
+    }
+
+    private void clearPresent(int slot) {
+        long bit = 1L << slot;
+        int word = slot >>> 6;
+        if ((present[word] & bit) != 0) {
+            present[word] &= ~bit;
+            presentCount--;
+        }
+    }
+
+    /**
+     * @return the index of the first present slot at or after fromSlot, or -1 if there are none
+     */
+    private int nextPresentSlot(int fromSlot) {
+        int word = fromSlot >>> 6;
+        if (word >= present.length) {
+            return -1;
+        }
+        long bits = present[word] & (-1L << fromSlot);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word == present.length) {
+                return -1;
+            }
+            bits = present[word];
+        }
+    }
+
+    // --- slot access
+
+    private void putLong(int slot, byte type, long value) {
+        ensureUnshared();
+        if (longValues == null) {
+            longValues = new long[types.length];
+        }
+        longValues[slot] = value;
+        setSlotType(slot, type);
+    }
+
+    private void putDouble(int slot, byte type, double value) {
+        ensureUnshared();
+        if (doubleValues == null) {
+            doubleValues = new double[types.length];
+        }
+        doubleValues[slot] = value;
+        setSlotType(slot, type);
+    }
+
+    private void putObject(int slot, byte type, Object value) {
+        ensureUnshared();
+        if (objectValues == null) {
+            objectValues = new Object[types.length];
+        }
+        objectValues[slot] = value;
+        types[slot] = type;
+        markPresent(slot);
+        modCount++;
+    }
+
+    private void setSlotType(int slot, byte type) {
+        ensureUnshared();
+        if (objectValues != null) {
+            objectValues[slot] = null; // Release any previous string or blob for GC
+        }
+        types[slot] = type;
+        markPresent(slot);
+        modCount++;
+    }
+
+    private Object getSlot(int slot) {
+        switch (types[slot]) {
+            case TYPE_BOOLEAN:
+                return longValues[slot] != 0;
+            case TYPE_BYTE:
+                return (byte) longValues[slot];
+            case TYPE_SHORT:
+                return (short) longValues[slot];
+            case TYPE_INTEGER:
+                return (int) longValues[slot];
+            case TYPE_LONG:
+                return longValues[slot];
+            case TYPE_FLOAT:
+                return (float) doubleValues[slot];
+            case TYPE_DOUBLE:
+                return doubleValues[slot];
+            case TYPE_STRING:
+            case TYPE_BLOB:
+                return objectValues[slot];
+            default:
+                return null;
+        }
+    }
+
+    // --- unboxed slot writes, for callers that resolve slots once via Schema.slotFor (e.g. ModelRowMapper)
+
+    void putNullAt(int slot) {
+        setSlotType(slot, TYPE_NULL);
+    }
+
+    void putBooleanAt(int slot, boolean value) {
+        putLong(slot, TYPE_BOOLEAN, value ? 1 : 0);
+    }
+
+    void putIntegerAt(int slot, int value) {
+        putLong(slot, TYPE_INTEGER, value);
+    }
+
+    void putLongAt(int slot, long value) {
+        putLong(slot, TYPE_LONG, value);
+    }
+
+    void putDoubleAt(int slot, double value) {
+        putDouble(slot, TYPE_DOUBLE, value);
+    }
+
+    void putStringAt(int slot, String value) {
+        if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putObject(slot, TYPE_STRING, value);
+        }
+    }
+
+    void putBlobAt(int slot, byte[] value) {
+        if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putObject(slot, TYPE_BLOB, value);
+        }
+    }
+
+    // Only called to write to the overflow map
+    private Map<String, Object> overflow() {
+        ensureUnshared();
+        modCount++;
+        if (overflow == null) {
+            overflow = new HashMap<>();
+        }
+        return overflow;
+    }
+
+    // --- ValuesStorage implementation
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(String key) {
+        int slot = schema.slotFor(key);
+        if (slot >= 0) {
+            return isPresent(slot);
+        }
+        return overflow != null && overflow.containsKey(key);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(String key) {
+        int slot = schema.slotFor(key);
+        if (slot >= 0) {
+            return isPresent(slot) ? getSlot(slot) : null;
+        }
+        return overflow == null ? null : overflow.get(key);
+    }
+
+    // --- unboxed reads. Values are converted the same way as the boxed values returned by getSlot() would be.
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLong(String key, long valueIfNull) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            return super.getLong(key, valueIfNull);
+        } else if (!isPresent(slot)) {
+            return valueIfNull;
+        }
+        switch (types[slot]) {
+            case TYPE_NULL:
+                return valueIfNull;
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                return (long) doubleValues[slot];
+            case TYPE_STRING:
+            case TYPE_BLOB:
+                return castToLong(objectValues[slot]);
+            default:
+                return longValues[slot];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getInt(String key, int valueIfNull) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            return super.getInt(key, valueIfNull);
+        } else if (!isPresent(slot)) {
+            return valueIfNull;
+        }
+        switch (types[slot]) {
+            case TYPE_NULL:
+                return valueIfNull;
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                return (int) doubleValues[slot];
+            case TYPE_STRING:
+            case TYPE_BLOB:
+                return castToInt(objectValues[slot]);
+            default:
+                return (int) longValues[slot];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double getDouble(String key, double valueIfNull) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            return super.getDouble(key, valueIfNull);
+        } else if (!isPresent(slot)) {
+            return valueIfNull;
+        }
+        switch (types[slot]) {
+            case TYPE_NULL:
+                return valueIfNull;
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                return doubleValues[slot];
+            case TYPE_BOOLEAN:
+            case TYPE_STRING:
+            case TYPE_BLOB:
+                return castToDouble(getSlot(slot)); // Booleans are not converted to doubles
+            default:
+                return longValues[slot];
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean getBoolean(String key, boolean valueIfNull) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            return super.getBoolean(key, valueIfNull);
+        } else if (!isPresent(slot)) {
+            return valueIfNull;
+        }
+        switch (types[slot]) {
+            case TYPE_NULL:
+                return valueIfNull;
+            case TYPE_FLOAT:
+            case TYPE_DOUBLE:
+                return (int) doubleValues[slot] != 0;
+            case TYPE_STRING:
+            case TYPE_BLOB:
+                return castToBoolean(objectValues[slot]);
+            default:
+                return (int) longValues[slot] != 0;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void remove(String key) {
+        ensureUnshared();
+        modCount++;
+        int slot = schema.slotFor(key);
+        if (slot >= 0) {
+            clearPresent(slot);
+            if (objectValues != null) {
+                objectValues[slot] = null;
+            }
+        } else if (overflow != null) {
+            overflow.remove(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return presentCount + (overflow == null ? 0 : overflow.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putNull(String key) {
+        int slot = schema.slotFor(key);
+        if (slot >= 0) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            overflow().put(key, null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Boolean value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putLong(slot, TYPE_BOOLEAN, value ? 1 : 0);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Byte value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putLong(slot, TYPE_BYTE, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Double value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putDouble(slot, TYPE_DOUBLE, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Float value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putDouble(slot, TYPE_FLOAT, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Integer value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putLong(slot, TYPE_INTEGER, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Long value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putLong(slot, TYPE_LONG, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, Short value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putLong(slot, TYPE_SHORT, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, String value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putObject(slot, TYPE_STRING, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, byte[] value) {
+        int slot = schema.slotFor(key);
+        if (slot < 0) {
+            overflow().put(key, value);
+        } else if (value == null) {
+            setSlotType(slot, TYPE_NULL);
+        } else {
+            putObject(slot, TYPE_BLOB, value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void putAll(ValuesStorage other) {
+        if (other instanceof ArrayValuesStorage && ((ArrayValuesStorage) other).schema == schema) {
+            putAllFromSameSchema((ArrayValuesStorage) other);
+        } else {
+            Set<Map.Entry<String, Object>> valuesSet = other.valueSet();
+            for (Map.Entry<String, Object> entry : valuesSet) {
+                put(entry.getKey(), entry.getValue(), false);
+            }
+        }
+    }
+
+    private void putAllFromSameSchema(ArrayValuesStorage other) {
+        for (int slot = other.nextPresentSlot(0); slot >= 0; slot = other.nextPresentSlot(slot + 1)) {
+            byte type = other.types[slot];
+            switch (type) {
+                case TYPE_BOOLEAN:
+                case TYPE_BYTE:
+                case TYPE_SHORT:
+                case TYPE_INTEGER:
+                case TYPE_LONG:
+                    putLong(slot, type, other.longValues[slot]);
+                    break;
+                case TYPE_FLOAT:
+                case TYPE_DOUBLE:
+                    putDouble(slot, type, other.doubleValues[slot]);
+                    break;
+                case TYPE_STRING:
+                case TYPE_BLOB:
+                    putObject(slot, type, other.objectValues[slot]);
+                    break;
+                default:
+                    setSlotType(slot, TYPE_NULL);
+            }
+        }
+        if (other.overflow != null && !other.overflow.isEmpty()) {
+            overflow().putAll(other.overflow);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Map.Entry<String, Object>> valueSet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new StorageIterator<Map.Entry<String, Object>>() {
+                    @Override
+                    Map.Entry<String, Object> slotElement(int slot) {
+                        return new AbstractMap.SimpleImmutableEntry<>(schema.keyAt(slot), getSlot(slot));
+                    }
+
+                    @Override
+                    Map.Entry<String, Object> overflowElement(Map.Entry<String, Object> entry) {
+                        return new AbstractMap.SimpleImmutableEntry<>(entry);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return ArrayValuesStorage.this.size();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new StorageIterator<String>() {
+                    @Override
+                    String slotElement(int slot) {
+                        return schema.keyAt(slot);
+                    }
+
+                    @Override
+                    String overflowElement(Map.Entry<String, Object> entry) {
+                        return entry.getKey();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && containsKey((String) o);
+            }
+
+            @Override
+            public int size() {
+                return ArrayValuesStorage.this.size();
+            }
+        };
+    }
+
+    /**
+     * Read-only iterator over the present slots followed by the overflow entries
+     */
+    private abstract class StorageIterator<E> implements Iterator<E> {
+
+        private int nextSlot = nextPresentSlot(0);
+        private final Iterator<Map.Entry<String, Object>> overflowIterator =
+                overflow == null ? null : overflow.entrySet().iterator();
+
+        abstract E slotElement(int slot);
+
+        abstract E overflowElement(Map.Entry<String, Object> entry);
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot >= 0 || (overflowIterator != null && overflowIterator.hasNext());
+        }
+
+        @Override
+        public E next() {
+            if (nextSlot >= 0) {
+                int slot = nextSlot;
+                nextSlot = nextPresentSlot(slot + 1);
+                return slotElement(slot);
+            } else if (overflowIterator != null) {
+                return overflowElement(overflowIterator.next());
+            }
+            throw new NoSuchElementException();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("ArrayValuesStorage views are read-only");
+        }
+    }
+
+    @Override
+    int modificationCount() {
+        return modCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof ValuesStorage)) {
+            return false;
+        }
+        ValuesStorage other = (ValuesStorage) o;
+        if (other.size() != size()) {
+            return false;
+        }
+        if (other instanceof ArrayValuesStorage && ((ArrayValuesStorage) other).schema == schema) {
+            return equalsSameSchema((ArrayValuesStorage) other);
+        }
+        // Same semantics as Map.equals, so that equal contents compare equal to a MapValuesStorage
+        for (Map.Entry<String, Object> entry : valueSet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null) {
+                if (other.get(key) != null || !other.containsKey(key)) {
+                    return false;
+                }
+            } else if (!value.equals(other.get(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equalsSameSchema(ArrayValuesStorage other) {
+        if (!Arrays.equals(present, other.present)) {
+            return false;
+        }
+        for (int slot = nextPresentSlot(0); slot >= 0; slot = nextPresentSlot(slot + 1)) {
+            byte type = types[slot];
+            if (type != other.types[slot]) {
+                return false;
+            }
+            switch (type) {
+                case TYPE_BOOLEAN:
+                case TYPE_BYTE:
+                case TYPE_SHORT:
+                case TYPE_INTEGER:
+                case TYPE_LONG:
+                    if (longValues[slot] != other.longValues[slot]) {
+                        return false;
+                    }
+                    break;
+                case TYPE_FLOAT:
+                case TYPE_DOUBLE:
+                    if (Double.doubleToLongBits(doubleValues[slot])
+                            != Double.doubleToLongBits(other.doubleValues[slot])) {
+                        return false;
+                    }
+                    break;
+                case TYPE_STRING:
+                case TYPE_BLOB:
+                    if (!objectValues[slot].equals(other.objectValues[slot])) {
+                        return false;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        boolean overflowEmpty = overflow == null || overflow.isEmpty();
+        boolean otherOverflowEmpty = other.overflow == null || other.overflow.isEmpty();
+        if (overflowEmpty || otherOverflowEmpty) {
+            return overflowEmpty == otherOverflowEmpty;
+        }
+        return overflow.equals(other.overflow);
+    }
+
+    @Override
+    public int hashCode() {
+        // Same hash code as an equivalent Map, for consistency with equals
+        int hashCode = 0;
+        for (int slot = nextPresentSlot(0); slot >= 0; slot = nextPresentSlot(slot + 1)) {
+            Object value = getSlot(slot);
+            hashCode += schema.keyAt(slot).hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+        if (overflow != null) {
+            hashCode += overflow.hashCode();
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : valueSet()) {
+            if (!first) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+            first = false;
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,526 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Criterion;
+import com.yahoo.squidb.sql.Query;
+import com.yahoo.squidb.utility.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AsyncSquidDatabase runs operations on a {@link SquidDatabase} asynchronously. Reads are dispatched to an
+ * {@link Executor}, and writes are funneled through a single writer thread so that writers never contend with each
+ * other for SQLite's write lock. Writes that are queued while the writer thread is busy are coalesced, up to a limit,
+ * and run together in a single transaction, which amortizes the cost of committing each one.
+ * <p>
+ * Every operation returns a {@link Future}, and can optionally be given a {@link Callback}. The future of a write is
+ * only completed once the transaction it ran in has been committed. Each write in a coalesced transaction runs in its
+ * own savepoint, so a write that throws is rolled back without failing the others. If the coalesced transaction as a
+ * whole fails to commit (e.g. because a write ended a nested transaction without marking it successful), the writes
+ * that didn't throw are run again, each in a transaction of its own. Write operations should therefore avoid side
+ * effects outside of the database, and should not wait for other AsyncSquidDatabase operations to complete.
+ * <p>
+ * Reads run outside of any transaction, so they see the last committed state of the database. Enabling the reader
+ * connection pool (see {@link SquidDatabase#setReaderConnectionPoolEnabled(boolean, int, long)}) or write-ahead
+ * logging lets them run concurrently with the writer thread.
+ * <p>
+ * Callbacks are run on the thread that ran the operation, so they should not block.
+ */
+public class AsyncSquidDatabase {
+
+    /**
+     * An operation to run on the database
+     */
+    public interface Operation<T> {
+
+        T run(SquidDatabase database);
+    }
+
+    /**
+     * Receives the result of an asynchronous operation
+     */
+    public interface Callback<T> {
+
+        void onSuccess(T result);
+
+        void onFailure(Throwable error);
+    }
+
+    /** Maximum number of queued writes coalesced into a single transaction by default */
+    public static final int DEFAULT_MAX_WRITES_PER_TRANSACTION = 64;
+
+    private static final int DEFAULT_READ_THREADS = 4;
+    private static final String WRITE_SAVEPOINT = "squidb_async_write";
+
+    private final SquidDatabase database;
+    private final Executor readExecutor;
+    private final ExecutorService ownedReadExecutor;
+    private final int maxWritesPerTransaction;
+    private final BlockingQueue<WriteTask<?>> writeQueue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean shutdown = false;
+
+    /**
+     * Create an AsyncSquidDatabase that runs reads on a fixed pool of threads owned by this instance
+     */
+    public AsyncSquidDatabase(SquidDatabase database) {
+        this(database, null, DEFAULT_MAX_WRITES_PER_TRANSACTION);
+    }
+
+    /**
+     * @param database the database to run operations on
+     * @param readExecutor the executor to run reads on, or null to use a fixed pool of threads owned by this instance
+     * @param maxWritesPerTransaction the maximum number of queued writes to run in a single transaction. Pass 1 to run
+     * each write in its own transaction
+     */
+    public AsyncSquidDatabase(SquidDatabase database, Executor readExecutor, int maxWritesPerTransaction) {
+        if (database == null) {
+            throw new NullPointerException("Can't create an AsyncSquidDatabase with a null SquidDatabase");
+        }
+        if (maxWritesPerTransaction < 1) {
+            throw new IllegalArgumentException("maxWritesPerTransaction must be >= 1, was " + maxWritesPerTransaction);
+        }
+        this.database = database;
+        this.maxWritesPerTransaction = maxWritesPerTransaction;
+        if (readExecutor == null) {
+            ownedReadExecutor = Executors.newFixedThreadPool(DEFAULT_READ_THREADS,
+                    new NamedThreadFactory("squidb-reader-" + database.getName()));
+            this.readExecutor = ownedReadExecutor;
+        } else {
+            ownedReadExecutor = null;
+            this.readExecutor = readExecutor;
+        }
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWriter();
+            }
+        }, "squidb-writer-" + database.getName());
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * @return the wrapped {@link SquidDatabase}
+     */
+    public SquidDatabase getDatabase() {
+        return database;
+    }
+
+    // --- reads
+
+    /**
+     * Run a read-only operation on the read executor
+     */
+    public <T> Future<T> read(Operation<T> operation) {
+        return read(operation, null);
+    }
+
+    /**
+     * Run a read-only operation on the read executor, passing its result to the given callback
+     */
+    public <T> Future<T> read(final Operation<T> operation, final Callback<? super T> callback) {
+        final Result<T> result = new Result<>(callback);
+        checkNotShutdown();
+        readExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (result.isCancelled()) {
+                    return;
+                }
+                try {
+                    result.succeed(operation.run(database));
+                } catch (RuntimeException e) {
+                    result.fail(e);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Asynchronous version of {@link SquidDatabase#queryForList(Class, Query)}
+     */
+    public <TYPE extends AbstractModel> Future<List<TYPE>> queryForList(final Class<TYPE> modelClass,
+            final Query query, Callback<? super List<TYPE>> callback) {
+        return read(new Operation<List<TYPE>>() {
+            @Override
+            public List<TYPE> run(SquidDatabase database) {
+                return database.queryForList(modelClass, query);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link SquidDatabase#count(Class, Criterion)}
+     */
+    public Future<Integer> count(final Class<? extends AbstractModel> modelClass, final Criterion criterion,
+            Callback<? super Integer> callback) {
+        return read(new Operation<Integer>() {
+            @Override
+            public Integer run(SquidDatabase database) {
+                return database.count(modelClass, criterion);
+            }
+        }, callback);
+    }
+
+    // --- writes
+
+    /**
+     * Queue an operation to run on the writer thread
+     */
+    public <T> Future<T> write(Operation<T> operation) {
+        return write(operation, null);
+    }
+
+    /**
+     * Queue an operation to run on the writer thread, passing its result to the given callback once the transaction
+     * it ran in has been committed
+     */
+    public <T> Future<T> write(Operation<T> operation, Callback<? super T> callback) {
+        WriteTask<T> task = new WriteTask<>(operation, new Result<>(callback));
+        synchronized (writeQueue) {
+            // Checked under the lock so that no write can be queued after the shutdown marker
+            checkNotShutdown();
+            writeQueue.add(task);
+        }
+        return task.result;
+    }
+
+    /**
+     * Asynchronous version of {@link SquidDatabase#persist(TableModel)}
+     */
+    public Future<Boolean> persist(final TableModel item, Callback<? super Boolean> callback) {
+        return write(new Operation<Boolean>() {
+            private AbstractModel stateBeforePersist;
+
+            @Override
+            public Boolean run(SquidDatabase database) {
+                // If the coalesced transaction this write ran in was rolled back, the write is run again. The model
+                // must be restored first, since the rolled back persist marked it as saved.
+                if (stateBeforePersist == null) {
+                    stateBeforePersist = item.clone();
+                } else {
+                    item.restoreValuesFrom(stateBeforePersist);
+                }
+                return database.persist(item);
+            }
+        }, callback);
+    }
+
+    /**
+     * Asynchronous version of {@link SquidDatabase#deleteWhere(Class, Criterion)}
+     */
+    public Future<Integer> deleteWhere(final Class<? extends TableModel> modelClass, final Criterion where,
+            Callback<? super Integer> callback) {
+        return write(new Operation<Integer>() {
+            @Override
+            public Integer run(SquidDatabase database) {
+                return database.deleteWhere(modelClass, where);
+            }
+        }, callback);
+    }
+
+    // --- lifecycle
+
+    /**
+     * Stop accepting new operations. Writes that have already been queued are still run, after which the writer thread
+     * exits. If this instance created its own read executor, it is shut down as well. This method does not close the
+     * wrapped database.
+     */
+    public void shutdown() {
+        synchronized (writeQueue) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            writeQueue.add(WriteTask.SHUTDOWN);
+        }
+        if (ownedReadExecutor != null) {
+            ownedReadExecutor.shutdown();
+        }
+    }
+
+    /**
+     * Wait for the writer thread to finish running queued writes after {@link #shutdown()} has been called
+     *
+     * @return true if the writer thread exited within the given time
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        unit.timedJoin(writerThread, timeout);
+        return !writerThread.isAlive();
+    }
+
+    private void checkNotShutdown() {
+        if (shutdown) {
+            throw new RejectedExecutionException("AsyncSquidDatabase for " + database.getName() + " has been shut "
+                    + "down");
+        }
+    }
+
+    private void runWriter() {
+        List<WriteTask<?>> batch = new ArrayList<>();
+        boolean exit = false;
+        while (!exit) {
+            try {
+                batch.add(writeQueue.take());
+            } catch (InterruptedException e) {
+                Logger.w(Logger.LOG_TAG, "AsyncSquidDatabase writer thread interrupted, ignoring", e);
+                continue;
+            }
+            writeQueue.drainTo(batch, maxWritesPerTransaction - 1);
+            // The shutdown marker is always the last task queued, so the writes before it are all in the batch
+            exit = batch.remove(WriteTask.SHUTDOWN);
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                if (batch.get(i).result.isCancelled()) {
+                    batch.remove(i);
+                }
+            }
+            if (!batch.isEmpty()) {
+                runBatch(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    private void runBatch(List<WriteTask<?>> batch) {
+        if (batch.size() > 1 && runInTransaction(batch)) {
+            return;
+        }
+        // The coalesced transaction failed to commit or was rolled back, so none of its writes took effect. Run the
+        // ones that didn't fail on their own, each in its own transaction.
+        for (WriteTask<?> task : batch) {
+            if (task.pendingError != null || !runInTransaction(task)) {
+                task.failWithPendingError();
+            }
+        }
+    }
+
+    // Runs the given writes in a single transaction, each in a savepoint so that a write that throws is rolled back
+    // without affecting the others. Completes their futures only if the transaction commits.
+    private boolean runInTransaction(List<WriteTask<?>> batch) {
+        try {
+            database.beginTransaction();
+            try {
+                ISQLiteDatabase db = database.getDatabase();
+                for (WriteTask<?> task : batch) {
+                    db.execSQL("SAVEPOINT " + WRITE_SAVEPOINT);
+                    if (!task.run(database)) {
+                        db.execSQL("ROLLBACK TO " + WRITE_SAVEPOINT);
+                    }
+                    db.execSQL("RELEASE " + WRITE_SAVEPOINT);
+                }
+                if (!database.isOuterTransactionSuccessful()) {
+                    // A write ended a nested transaction without marking it successful, so ending this transaction
+                    // silently rolls back every write in it, not just the one in that write's savepoint
+                    return false;
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            Logger.w(Logger.LOG_TAG, "AsyncSquidDatabase failed to commit a coalesced transaction", e);
+            return false;
+        }
+        for (WriteTask<?> task : batch) {
+            if (task.pendingError != null) {
+                task.failWithPendingError();
+            } else {
+                task.complete();
+            }
+        }
+        return true;
+    }
+
+    private boolean runInTransaction(WriteTask<?> task) {
+        try {
+            database.beginTransaction();
+            try {
+                if (!task.run(database)) {
+                    return false;
+                }
+                database.setTransactionSuccessful();
+            } finally {
+                database.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            task.pendingError = e;
+            return false;
+        }
+        task.complete();
+        return true;
+    }
+
+    private static final class WriteTask<T> {
+
+        static final WriteTask<Void> SHUTDOWN = new WriteTask<>(null, null);
+
+        final Operation<T> operation;
+        final Result<T> result;
+        T pendingResult;
+        Throwable pendingError;
+
+        WriteTask(Operation<T> operation, Result<T> result) {
+            this.operation = operation;
+            this.result = result;
+        }
+
+        // Runs the operation, holding on to its result until the transaction it ran in commits
+        boolean run(SquidDatabase database) {
+            pendingResult = null;
+            pendingError = null;
+            try {
+                pendingResult = operation.run(database);
+                return true;
+            } catch (RuntimeException e) {
+                pendingError = e;
+                return false;
+            }
+        }
+
+        void complete() {
+            result.succeed(pendingResult);
+            pendingResult = null;
+        }
+
+        void failWithPendingError() {
+            result.fail(pendingError);
+            pendingError = null;
+        }
+    }
+
+    // The future returned for each operation. It's completed by the thread that runs the operation, so unlike a
+    // FutureTask it has no run() method of its own.
+    private static final class Result<T> implements Future<T> {
+
+        private static final int PENDING = 0;
+        private static final int SUCCEEDED = 1;
+        private static final int FAILED = 2;
+        private static final int CANCELLED = 3;
+
+        private final Callback<? super T> callback;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        // Written once, while holding this object's monitor, before done is counted down
+        private volatile int state = PENDING;
+        private T value;
+        private Throwable error;
+
+        Result(Callback<? super T> callback) {
+            this.callback = callback;
+        }
+
+        void succeed(T value) {
+            if (complete(SUCCEEDED, value, null) && callback != null) {
+                try {
+                    callback.onSuccess(value);
+                } catch (RuntimeException e) {
+                    Logger.e(Logger.LOG_TAG, "AsyncSquidDatabase callback threw an exception", e);
+                }
+            }
+        }
+
+        void fail(Throwable error) {
+            if (complete(FAILED, null, error) && callback != null) {
+                try {
+                    callback.onFailure(error);
+                } catch (RuntimeException e) {
+                    Logger.e(Logger.LOG_TAG, "AsyncSquidDatabase callback threw an exception", e);
+                }
+            }
+        }
+
+        // Returns false if the result was already completed or cancelled
+        private synchronized boolean complete(int newState, T newValue, Throwable newError) {
+            if (state != PENDING) {
+                return false;
+            }
+            value = newValue;
+            error = newError;
+            state = newState;
+            done.countDown();
+            return true;
+        }
+
+        /**
+         * Cancel the operation if it hasn't completed yet. An operation that is already running is not interrupted,
+         * but its result is discarded.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return complete(CANCELLED, null, null);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            return state != PENDING;
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+
+        private T report() throws ExecutionException {
+            switch (state) {
+                case SUCCEEDED:
+                    return value;
+                case FAILED:
+                    throw new ExecutionException(error);
+                default:
+                    throw new CancellationException();
+            }
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
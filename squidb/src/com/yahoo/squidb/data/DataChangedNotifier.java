@@ -23,7 +23,7 @@ import java.util.Set;
  * database operations regardless of table, use the no-argument constructor.
  * <p>
  * When an instance of DataChangedNotifier is registered with a SquidDatabase, the db will call {@link
- * #onDataChanged(SqlTable, SquidDatabase, DBOperation, AbstractModel, long)} on the notifier whenever one of the
+ * #onDataChanged(Set, SqlTable, SquidDatabase, DBOperation, AbstractModel, long)} on the notifier whenever one of the
  * notifier's relevant tables was modified.
  * <p>
  * Subclasses must override two abstract methods: {@link #accumulateNotificationObjects(Set, SqlTable, SquidDatabase,
@@ -55,14 +55,6 @@ public abstract class DataChangedNotifier<T> {
     private final Set<SqlTable<?>> tables = new HashSet<>();
     private boolean enabled = true;
 
-    // Using a ThreadLocal makes it easy to have one accumulator set per transaction, since
-    // transactions are also associated with the thread they run on
-    private ThreadLocal<Set<T>> notifyObjectAccumulator = new ThreadLocal<Set<T>>() {
-        protected Set<T> initialValue() {
-            return new HashSet<>();
-        }
-    };
-
     /**
      * Construct a DataChangedNotifier that will be notified of changes to all tables
      */
@@ -100,11 +92,11 @@ public abstract class DataChangedNotifier<T> {
         this.enabled = enabled;
     }
 
-    // Called by SquidDatabase for each data change
-    final boolean onDataChanged(SqlTable<?> table, SquidDatabase database, DBOperation operation,
-            AbstractModel modelValues, long rowId) {
-        return enabled && accumulateNotificationObjects(notifyObjectAccumulator.get(), table, database, operation,
-                modelValues, rowId);
+    // Called by SquidDatabase for each data change, with the accumulator for the current transaction
+    final boolean onDataChanged(Set<T> accumulatorSet, SqlTable<?> table, SquidDatabase database,
+            DBOperation operation, AbstractModel modelValues, long rowId) {
+        return enabled && accumulateNotificationObjects(accumulatorSet, table, database, operation, modelValues,
+                rowId);
     }
 
     /**
@@ -129,8 +121,8 @@ public abstract class DataChangedNotifier<T> {
 
     // Called by SquidDatabase when a transaction or statement has finished and any accumulated notifications should be
     // flushed/sent
-    final void flushAccumulatedNotifications(SquidDatabase database, boolean shouldSendNotifications) {
-        Set<T> accumulatedNotifications = notifyObjectAccumulator.get();
+    final void flushAccumulatedNotifications(SquidDatabase database, Set<T> accumulatedNotifications,
+            boolean shouldSendNotifications) {
         if (enabled && shouldSendNotifications) {
             sendNotificationsToAll(database, accumulatedNotifications);
         }
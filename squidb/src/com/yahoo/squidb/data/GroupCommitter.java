@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Merges writes made outside of explicit transactions into shared transactions. The first thread to write while no
+// group is open becomes the leader: it begins a transaction, runs its own write, and then runs the writes of any other
+// threads that arrive within the window (or until the group is full) on their behalf, each in its own savepoint. Once
+// the transaction has committed, the other threads are woken up with their results. Since every write runs on the
+// leader's thread inside its transaction, data changed notifications for the whole group are accumulated and flushed
+// once on commit, just as they are for an explicit transaction. If a write ends a nested transaction without marking it
+// successful, the shared transaction is rolled back and the other writes are run again, each in its own transaction,
+// so writes may run more than once. This class is threadsafe.
+class GroupCommitter {
+
+    static final long DEFAULT_WINDOW_MILLIS = 5;
+    static final int DEFAULT_MAX_WRITES_PER_TRANSACTION = 64;
+
+    private static final String WRITE_SAVEPOINT = "squidb_group_commit_write";
+
+    interface Write<T> {
+
+        T run();
+    }
+
+    private static final class PendingWrite<T> {
+
+        final Write<T> write;
+        T result;
+        RuntimeException error;
+        boolean done;
+
+        PendingWrite(Write<T> write) {
+            this.write = write;
+        }
+    }
+
+    private static final class Group {
+
+        final List<PendingWrite<?>> writes = new ArrayList<>();
+        boolean closed = false;
+    }
+
+    private final SquidDatabase database;
+    private final long windowNanos;
+    private final int maxWritesPerTransaction;
+    private final AtomicLong transactions;
+    private final AtomicLong writes;
+
+    // Guarded by this
+    private Group openGroup = null;
+
+    GroupCommitter(SquidDatabase database, long windowMillis, int maxWritesPerTransaction, AtomicLong transactions,
+            AtomicLong writes) {
+        this.database = database;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxWritesPerTransaction = maxWritesPerTransaction;
+        this.transactions = transactions;
+        this.writes = writes;
+    }
+
+    /**
+     * Run the given write in a shared transaction, returning its result once the transaction has committed. Must not
+     * be called from a thread that is in a transaction.
+     */
+    <T> T run(Write<T> write) {
+        PendingWrite<T> pending = new PendingWrite<>(write);
+        Group group;
+        synchronized (this) {
+            group = openGroup;
+            if (group != null && !group.closed && group.writes.size() < maxWritesPerTransaction) {
+                group.writes.add(pending);
+                notifyAll(); // Wake up the leader
+                boolean interrupted = false;
+                while (!pending.done) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // The write has already been handed off, so we have to wait for its result
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                return result(pending);
+            }
+            group = new Group();
+            group.writes.add(pending);
+            openGroup = group;
+        }
+        lead(group);
+        return result(pending);
+    }
+
+    private static <T> T result(PendingWrite<T> pending) {
+        if (pending.error != null) {
+            throw pending.error;
+        }
+        return pending.result;
+    }
+
+    private void lead(Group group) {
+        RuntimeException commitError = null;
+        boolean committed = false;
+        int executed = 0;
+        try {
+            database.beginTransaction();
+            try {
+                ISQLiteDatabase db = database.getDatabase();
+                long deadline = System.nanoTime() + windowNanos;
+                PendingWrite<?> next;
+                while ((next = nextWrite(group, executed, deadline)) != null) {
+                    db.execSQL("SAVEPOINT " + WRITE_SAVEPOINT);
+                    if (!runWrite(next)) {
+                        db.execSQL("ROLLBACK TO " + WRITE_SAVEPOINT);
+                    }
+                    db.execSQL("RELEASE " + WRITE_SAVEPOINT);
+                    executed++;
+                }
+                // A write that ended a nested transaction without marking it successful dooms this transaction, so
+                // ending it silently rolls back every write in it, not just the one in that write's savepoint
+                committed = database.isOuterTransactionSuccessful();
+                if (committed) {
+                    database.setTransactionSuccessful();
+                }
+            } finally {
+                database.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            commitError = e;
+        } finally {
+            synchronized (this) {
+                closeGroupLocked(group);
+            }
+            transactions.incrementAndGet();
+            if (commitError != null) {
+                // None of the writes took effect
+                for (PendingWrite<?> pending : group.writes) {
+                    pending.result = null;
+                    pending.error = commitError;
+                }
+            } else if (committed) {
+                writes.addAndGet(executed);
+            } else {
+                // The transaction was rolled back, so run the writes that didn't fail again, each on its own
+                for (PendingWrite<?> pending : group.writes) {
+                    if (pending.error == null) {
+                        runInOwnTransaction(pending);
+                    }
+                }
+            }
+            synchronized (this) {
+                for (PendingWrite<?> pending : group.writes) {
+                    pending.done = true;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void runInOwnTransaction(PendingWrite<?> pending) {
+        pending.result = null;
+        try {
+            database.beginTransaction();
+            try {
+                if (runWrite(pending) && database.isOuterTransactionSuccessful()) {
+                    database.setTransactionSuccessful();
+                }
+            } finally {
+                database.endTransaction();
+            }
+        } catch (RuntimeException e) {
+            pending.result = null;
+            pending.error = e;
+        }
+        transactions.incrementAndGet();
+        writes.incrementAndGet();
+    }
+
+    // Waits for the next write of the group to arrive, returning null and closing the group once the window has
+    // elapsed or the group is full
+    private synchronized PendingWrite<?> nextWrite(Group group, int executed, long deadline) {
+        while (executed >= group.writes.size()) {
+            long remaining = deadline - System.nanoTime();
+            if (group.writes.size() >= maxWritesPerTransaction || remaining <= 0) {
+                closeGroupLocked(group);
+                return null;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closeGroupLocked(group);
+                return null;
+            }
+        }
+        return group.writes.get(executed);
+    }
+
+    private void closeGroupLocked(Group group) {
+        group.closed = true;
+        if (openGroup == group) {
+            openGroup = null;
+        }
+    }
+
+    private static <T> boolean runWrite(PendingWrite<T> pending) {
+        try {
+            pending.result = pending.write.run();
+            return true;
+        } catch (RuntimeException e) {
+            pending.error = e;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+/**
+ * An optional extension of {@link ISQLiteOpenHelper} for implementations that can open additional read-only
+ * connections to the same database file. When the database uses write-ahead logging, {@link SquidDatabase} can keep a
+ * pool of these connections so that reads can run concurrently with each other and with writes; see
+ * {@link SquidDatabase#setReaderConnectionPoolEnabled(boolean, int, long)}.
+ * <p>
+ * Implementations should call {@link SquidDatabase.OpenHelperDelegate#onConfigureReaderConnection(ISQLiteDatabase)}
+ * on each new connection, and should not run any migrations on it.
+ */
+public interface ISQLiteReaderOpenHelper extends ISQLiteOpenHelper {
+
+    /**
+     * Open a new read-only connection to the database. Only called after {@link #openForWriting()} has opened the
+     * database, so the schema is already up to date.
+     */
+    ISQLiteDatabase openReaderConnection();
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.CompiledStatement;
+
+/**
+ * An optional extension of {@link ISQLiteDatabase} for implementations that can bind arguments using bind types that
+ * were computed ahead of time. {@link SquidDatabase} passes the {@link CompiledStatement#sqlArgTypes} of the
+ * statements it compiles to these methods, so that each argument can be bound directly as a long, double, string or
+ * blob without inspecting its type again on every execution.
+ * <p>
+ * Each element of bindArgTypes is one of the CompiledStatement.ARG_TYPE constants and describes the element of
+ * bindArgs at the same index. bindArgTypes may be null if bindArgs is null.
+ */
+public interface ITypedBindingSQLiteDatabase extends ISQLiteDatabase {
+
+    ICursor rawQuery(String sql, Object[] bindArgs, int[] bindArgTypes);
+
+    String simpleQueryForString(String sql, Object[] bindArgs, int[] bindArgTypes);
+
+    long simpleQueryForLong(String sql, Object[] bindArgs, int[] bindArgTypes);
+
+    long executeInsert(String sql, Object[] bindArgs, int[] bindArgTypes);
+
+    int executeUpdateDelete(String sql, Object[] bindArgs, int[] bindArgTypes);
+}
@@ -172,6 +172,9 @@ public class MapValuesStorage extends ValuesStorage {
 
     @Override
     public boolean equals(Object o) {
+        if (o instanceof ArrayValuesStorage || o instanceof MergedValuesStorage) {
+            return o.equals(this);
+        }
         return (o instanceof MapValuesStorage) &&
                 values.equals(((MapValuesStorage) o).values);
     }
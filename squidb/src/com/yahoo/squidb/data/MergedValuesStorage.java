@@ -0,0 +1,387 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only view of a model's values merged across its data sources, without copying them. Values are looked up in
+ * the model's set values, then its database values, then its default values, matching the priority used by
+ * {@link AbstractModel#get(com.yahoo.squidb.sql.Property)}. The view is live: it always reflects the model's current
+ * values, even if the model's storages are replaced (e.g. by {@link AbstractModel#markSaved()}).
+ * <p>
+ * Equality and hash codes follow the semantics of {@link Map}. If all of the model's storages track modifications,
+ * the hash code is cached until one of them changes.
+ */
+class MergedValuesStorage extends ValuesStorage {
+
+    private static final int LAYERS = 3;
+
+    private final AbstractModel model;
+
+    // A hash code along with the storages and modification counts it was computed from. Immutable, so that it can be
+    // published through a single volatile field and threads reading the same (e.g. frozen) model concurrently always
+    // see a consistent snapshot of it.
+    private static final class CachedHashCode {
+
+        private final int hashCode;
+        private final ValuesStorage[] layers;
+        private final int[] modificationCounts;
+
+        private CachedHashCode(int hashCode, ValuesStorage[] layers, int[] modificationCounts) {
+            this.hashCode = hashCode;
+            this.layers = layers;
+            this.modificationCounts = modificationCounts;
+        }
+    }
+
+    private volatile CachedHashCode cachedHashCode = null;
+
+    MergedValuesStorage(AbstractModel model) {
+        this.model = model;
+    }
+
+    // Layers in order of priority; any of them may be null
+    private ValuesStorage layer(int index) {
+        switch (index) {
+            case 0:
+                return model.setValues;
+            case 1:
+                return model.values;
+            default:
+                return model.getDefaultValues();
+        }
+    }
+
+    // True if a higher priority layer than the given one contains the key
+    private boolean isShadowed(String key, int layerIndex) {
+        for (int i = 0; i < layerIndex; i++) {
+            ValuesStorage layer = layer(i);
+            if (layer != null && layer.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean containsKey(String key) {
+        for (int i = 0; i < LAYERS; i++) {
+            ValuesStorage layer = layer(i);
+            if (layer != null && layer.containsKey(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(String key) {
+        for (int i = 0; i < LAYERS; i++) {
+            ValuesStorage layer = layer(i);
+            if (layer != null && layer.containsKey(key)) {
+                return layer.get(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < LAYERS; i++) {
+            ValuesStorage layer = layer(i);
+            if (layer != null) {
+                if (i == 0) {
+                    size += layer.size();
+                } else {
+                    for (String key : layer.keySet()) {
+                        if (!isShadowed(key, i)) {
+                            size++;
+                        }
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Map.Entry<String, Object>> valueSet() {
+        return new AbstractSet<Map.Entry<String, Object>>() {
+            @Override
+            public Iterator<Map.Entry<String, Object>> iterator() {
+                return new MergedIterator<Map.Entry<String, Object>>() {
+                    @Override
+                    Map.Entry<String, Object> element(Map.Entry<String, Object> entry) {
+                        return new AbstractMap.SimpleImmutableEntry<>(entry);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return MergedValuesStorage.this.size();
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new MergedIterator<String>() {
+                    @Override
+                    String element(Map.Entry<String, Object> entry) {
+                        return entry.getKey();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof String && containsKey((String) o);
+            }
+
+            @Override
+            public int size() {
+                return MergedValuesStorage.this.size();
+            }
+        };
+    }
+
+    /**
+     * Read-only iterator over the entries of each layer, skipping entries shadowed by a higher priority layer
+     */
+    private abstract class MergedIterator<E> implements Iterator<E> {
+
+        private int layerIndex = -1;
+        private Iterator<Map.Entry<String, Object>> layerIterator = null;
+        private Map.Entry<String, Object> next = null;
+
+        abstract E element(Map.Entry<String, Object> entry);
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (layerIterator != null && layerIterator.hasNext()) {
+                    Map.Entry<String, Object> entry = layerIterator.next();
+                    if (!isShadowed(entry.getKey(), layerIndex)) {
+                        next = entry;
+                    }
+                } else if (++layerIndex < LAYERS) {
+                    ValuesStorage layer = layer(layerIndex);
+                    layerIterator = layer == null ? null : layer.valueSet().iterator();
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            E result = element(next);
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Merged values are read-only");
+        }
+    }
+
+    // --- unsupported mutators
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Merged values are read-only; modify the model instead");
+    }
+
+    @Override
+    public void remove(String key) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putNull(String key) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, Boolean value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, Byte value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, Double value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, Float value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, Integer value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, Long value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, Short value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void put(String key, byte[] value) {
+        throw readOnly();
+    }
+
+    @Override
+    public void putAll(ValuesStorage other) {
+        throw readOnly();
+    }
+
+    // --- equality
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof ValuesStorage)) {
+            return false;
+        }
+        ValuesStorage other = (ValuesStorage) o;
+        if (other instanceof MergedValuesStorage) {
+            CachedHashCode cached = validCachedHashCode();
+            CachedHashCode otherCached = ((MergedValuesStorage) other).validCachedHashCode();
+            if (cached != null && otherCached != null && cached.hashCode != otherCached.hashCode) {
+                return false;
+            }
+        }
+        if (other.size() != size()) {
+            return false;
+        }
+        // Same semantics as Map.equals
+        for (Map.Entry<String, Object> entry : valueSet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value == null) {
+                if (other.get(key) != null || !other.containsKey(key)) {
+                    return false;
+                }
+            } else if (!value.equals(other.get(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        CachedHashCode cached = validCachedHashCode();
+        if (cached != null) {
+            return cached.hashCode;
+        }
+        // The modification counts are read before hashing, so that a concurrent modification made while hashing
+        // invalidates the result rather than being cached with it
+        ValuesStorage[] layers = new ValuesStorage[LAYERS];
+        int[] modificationCounts = new int[LAYERS];
+        boolean cacheable = true;
+        for (int i = 0; i < LAYERS; i++) {
+            ValuesStorage layer = layer(i);
+            int modificationCount = layer == null ? 0 : layer.modificationCount();
+            if (modificationCount < 0) {
+                cacheable = false;
+            }
+            layers[i] = layer;
+            modificationCounts[i] = modificationCount;
+        }
+
+        // Same hash code as an equivalent Map, for consistency with equals
+        int hashCode = 0;
+        for (Map.Entry<String, Object> entry : valueSet()) {
+            Object value = entry.getValue();
+            hashCode += entry.getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        if (cacheable) {
+            cachedHashCode = new CachedHashCode(hashCode, layers, modificationCounts);
+        }
+        return hashCode;
+    }
+
+    // Returns the cached hash code if none of the storages it was computed from have changed since, or null
+    private CachedHashCode validCachedHashCode() {
+        CachedHashCode cached = cachedHashCode;
+        if (cached == null) {
+            return null;
+        }
+        for (int i = 0; i < LAYERS; i++) {
+            ValuesStorage layer = layer(i);
+            if (layer != cached.layers[i]
+                    || (layer != null && layer.modificationCount() != cached.modificationCounts[i])) {
+                return null;
+            }
+        }
+        return cached;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, Object> entry : valueSet()) {
+            if (!first) {
+                builder.append(", ");
+            }
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+            first = false;
+        }
+        return builder.append('}').toString();
+    }
+}
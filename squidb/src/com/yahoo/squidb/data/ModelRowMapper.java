@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Field;
+import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Property.PropertyVisitor;
+
+import java.util.List;
+
+/**
+ * Reads rows from a {@link SquidCursor} into a {@link ValuesStorage}. The column index and value type of each of the
+ * cursor's properties are resolved once when the mapper is created, so reading a row is a loop of typed column reads
+ * rather than a property visitor dispatch and column name lookup per cell. When the destination is an
+ * {@link ArrayValuesStorage}, the storage slot for each property is also resolved once and values are written
+ * without boxing.
+ * <p>
+ * Each SquidCursor lazily creates one of these for {@link AbstractModel#readPropertiesFromCursor(SquidCursor)}.
+ */
+final class ModelRowMapper {
+
+    private static final int TYPE_INTEGER = 0;
+    private static final int TYPE_LONG = 1;
+    private static final int TYPE_DOUBLE = 2;
+    private static final int TYPE_STRING = 3;
+    private static final int TYPE_BOOLEAN = 4;
+    private static final int TYPE_BLOB = 5;
+
+    private static final TypeResolvingVisitor typeResolver = new TypeResolvingVisitor();
+
+    private final int count;
+    private final String[] keys;
+    private final int[] columns;
+    private final int[] types;
+
+    // Storage slots for the most recently seen ArrayValuesStorage schema
+    private ArrayValuesStorage.Schema slotsSchema;
+    private int[] slots;
+
+    ModelRowMapper(SquidCursor<?> cursor) {
+        List<? extends Field<?>> fields = cursor.getFields();
+        int size = fields == null ? 0 : fields.size();
+        String[] keys = new String[size];
+        int[] columns = new int[size];
+        int[] types = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            Field<?> field = fields.get(i);
+            if (field instanceof Property<?>) {
+                Property<?> property = (Property<?>) field;
+                int column;
+                try {
+                    column = cursor.getColumnIndexForField(property);
+                } catch (IllegalArgumentException e) {
+                    // Column not in the cursor, skip it as readPropertiesFromCursor always has
+                    continue;
+                }
+                keys[count] = property.getName();
+                columns[count] = column;
+                types[count] = property.accept(typeResolver, null);
+                count++;
+            }
+        }
+        this.count = count;
+        this.keys = keys;
+        this.columns = columns;
+        this.types = types;
+    }
+
+    /**
+     * Read the cursor's current row into the given storage
+     */
+    void readRow(ICursor cursor, ValuesStorage dst) {
+        if (dst instanceof ArrayValuesStorage) {
+            readRowIntoSlots(cursor, (ArrayValuesStorage) dst);
+        } else {
+            for (int i = 0; i < count; i++) {
+                readValue(cursor, dst, i);
+            }
+        }
+    }
+
+    private void readRowIntoSlots(ICursor cursor, ArrayValuesStorage dst) {
+        int[] slots = slotsFor(dst);
+        for (int i = 0; i < count; i++) {
+            int slot = slots[i];
+            int column = columns[i];
+            if (slot < 0) {
+                // Not a column of the model's table, e.g. an aliased function
+                readValue(cursor, dst, i);
+            } else if (cursor.isNull(column)) {
+                dst.putNullAt(slot);
+            } else {
+                switch (types[i]) {
+                    case TYPE_INTEGER:
+                        dst.putIntegerAt(slot, cursor.getInt(column));
+                        break;
+                    case TYPE_LONG:
+                        dst.putLongAt(slot, cursor.getLong(column));
+                        break;
+                    case TYPE_DOUBLE:
+                        dst.putDoubleAt(slot, cursor.getDouble(column));
+                        break;
+                    case TYPE_STRING:
+                        dst.putStringAt(slot, cursor.getString(column));
+                        break;
+                    case TYPE_BOOLEAN:
+                        dst.putBooleanAt(slot, cursor.getInt(column) != 0);
+                        break;
+                    case TYPE_BLOB:
+                        dst.putBlobAt(slot, cursor.getBlob(column));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    private void readValue(ICursor cursor, ValuesStorage dst, int index) {
+        String key = keys[index];
+        int column = columns[index];
+        if (cursor.isNull(column)) {
+            dst.putNull(key);
+            return;
+        }
+        switch (types[index]) {
+            case TYPE_INTEGER:
+                dst.put(key, cursor.getInt(column));
+                break;
+            case TYPE_LONG:
+                dst.put(key, cursor.getLong(column));
+                break;
+            case TYPE_DOUBLE:
+                dst.put(key, cursor.getDouble(column));
+                break;
+            case TYPE_STRING:
+                dst.put(key, cursor.getString(column));
+                break;
+            case TYPE_BOOLEAN:
+                dst.put(key, cursor.getInt(column) != 0);
+                break;
+            case TYPE_BLOB:
+                dst.put(key, cursor.getBlob(column));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private int[] slotsFor(ArrayValuesStorage dst) {
+        ArrayValuesStorage.Schema schema = dst.getSchema();
+        if (schema != slotsSchema) {
+            int[] newSlots = new int[count];
+            for (int i = 0; i < count; i++) {
+                newSlots[i] = schema.slotFor(keys[i]);
+            }
+            slots = newSlots;
+            slotsSchema = schema;
+        }
+        return slots;
+    }
+
+    private static class TypeResolvingVisitor implements PropertyVisitor<Integer, Void> {
+
+        @Override
+        public Integer visitInteger(Property<Integer> property, Void data) {
+            return TYPE_INTEGER;
+        }
+
+        @Override
+        public Integer visitLong(Property<Long> property, Void data) {
+            return TYPE_LONG;
+        }
+
+        @Override
+        public Integer visitDouble(Property<Double> property, Void data) {
+            return TYPE_DOUBLE;
+        }
+
+        @Override
+        public Integer visitString(Property<String> property, Void data) {
+            return TYPE_STRING;
+        }
+
+        @Override
+        public Integer visitBoolean(Property<Boolean> property, Void data) {
+            return TYPE_BOOLEAN;
+        }
+
+        @Override
+        public Integer visitBlob(Property<byte[]> property, Void data) {
+            return TYPE_BLOB;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.CompiledStatement;
+import com.yahoo.squidb.sql.Delete;
+import com.yahoo.squidb.sql.Field;
+import com.yahoo.squidb.sql.Insert;
+import com.yahoo.squidb.sql.Property;
+import com.yahoo.squidb.sql.Query;
+import com.yahoo.squidb.sql.Table;
+import com.yahoo.squidb.sql.TableStatement;
+import com.yahoo.squidb.sql.Update;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// This class is not threadsafe. We currently keep a threadlocal instance of it in SquidDatabase that is invalidated
+// when the DB is closed.
+class PreparedStatementCache {
+
+    // Each distinct set of dirty columns needs its own update statement, so the number of update statements (and
+    // fetch statements, one per distinct property list) cached for each table is bounded
+    private static final int MAX_STATEMENTS_PER_TABLE = 16;
+
+    // Cache of prepared statements keyed by table model class
+    private final Map<Class<? extends TableModel>, TableStatements> statementCache = new HashMap<>();
+
+    // Tracks all open prepared statements across the DB so that they can be closed safely when the DB is closed
+    private final Set<ISQLitePreparedStatement> dbStatementTracking;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    PreparedStatementCache(Set<ISQLitePreparedStatement> dbStatementTracking, AtomicLong hits, AtomicLong misses) {
+        this.dbStatementTracking = dbStatementTracking;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * A prepared UPDATE ... WHERE rowid = ? statement for a particular set of columns
+     */
+    static final class PreparedUpdate {
+
+        final ISQLitePreparedStatement statement;
+        final Property<?>[] columns;
+        final int[] bindIndexes;
+        final int rowIdBindIndex;
+
+        private PreparedUpdate(ISQLitePreparedStatement statement, Property<?>[] columns, int[] bindIndexes,
+                int rowIdBindIndex) {
+            this.statement = statement;
+            this.columns = columns;
+            this.bindIndexes = bindIndexes;
+            this.rowIdBindIndex = rowIdBindIndex;
+        }
+    }
+
+    /**
+     * The compiled SQL for a SELECT ... WHERE rowid = ? LIMIT 1 query. Queries must return a cursor, which an
+     * {@link ISQLitePreparedStatement} can't do, so fetches cache the compiled SQL rather than a prepared statement.
+     */
+    static final class PreparedFetch {
+
+        final String sql;
+        final List<Field<?>> fields;
+        private final Object[] sqlArgs;
+        private final int rowIdArgIndex;
+
+        private PreparedFetch(String sql, List<Field<?>> fields, Object[] sqlArgs, int rowIdArgIndex) {
+            this.sql = sql;
+            this.fields = fields;
+            this.sqlArgs = sqlArgs;
+            this.rowIdArgIndex = rowIdArgIndex;
+        }
+
+        Object[] argsForRowId(long rowId) {
+            Object[] args = sqlArgs.clone();
+            args[rowIdArgIndex] = rowId;
+            return args;
+        }
+    }
+
+    private final class TableStatements {
+
+        final ISQLitePreparedStatement[] inserts =
+                new ISQLitePreparedStatement[TableStatement.ConflictAlgorithm.values().length];
+
+        final Map<ColumnSet, PreparedUpdate> updates =
+                new LinkedHashMap<ColumnSet, PreparedUpdate>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<ColumnSet, PreparedUpdate> eldest) {
+                        if (size() > MAX_STATEMENTS_PER_TABLE) {
+                            ISQLitePreparedStatement statement = eldest.getValue().statement;
+                            dbStatementTracking.remove(statement);
+                            statement.close();
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+
+        // Multi-row inserts keyed by number of rows and conflict algorithm
+        final Map<Integer, ISQLitePreparedStatement> multiRowInserts =
+                new LinkedHashMap<Integer, ISQLitePreparedStatement>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Integer, ISQLitePreparedStatement> eldest) {
+                        if (size() > MAX_STATEMENTS_PER_TABLE) {
+                            dbStatementTracking.remove(eldest.getValue());
+                            eldest.getValue().close();
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+
+        ISQLitePreparedStatement deleteById;
+
+        final Map<PropertyList, PreparedFetch> fetches =
+                new LinkedHashMap<PropertyList, PreparedFetch>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<PropertyList, PreparedFetch> eldest) {
+                        return size() > MAX_STATEMENTS_PER_TABLE;
+                    }
+                };
+    }
+
+    private TableStatements statementsFor(Table table) {
+        Class<? extends TableModel> modelClass = table.getModelClass();
+        TableStatements statements = statementCache.get(modelClass);
+        if (statements == null) {
+            statements = new TableStatements();
+            statementCache.put(modelClass, statements);
+        }
+        return statements;
+    }
+
+    private void recordLookup(boolean hit) {
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    ISQLitePreparedStatement getPreparedInsert(SquidDatabase db, Table table,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+
+        ISQLitePreparedStatement[] preparedStatements = statementsFor(table).inserts;
+
+        if (conflictAlgorithm == null) {
+            conflictAlgorithm = TableStatement.ConflictAlgorithm.NONE;
+        }
+
+        ISQLitePreparedStatement toReturn = preparedStatements[conflictAlgorithm.ordinal()];
+        recordLookup(toReturn != null);
+        if (toReturn == null) {
+            toReturn = prepareInsert(db, table, conflictAlgorithm);
+            preparedStatements[conflictAlgorithm.ordinal()] = toReturn;
+        }
+        return toReturn;
+    }
+
+    /**
+     * @return a prepared statement inserting the given number of rows into all columns of the table. Values for each
+     * row are bound consecutively, so the first column of row i is at bind index 1 + i * table.getProperties().length
+     */
+    ISQLitePreparedStatement getPreparedMultiRowInsert(SquidDatabase db, Table table,
+            TableStatement.ConflictAlgorithm conflictAlgorithm, int rows) {
+        if (rows == 1) {
+            return getPreparedInsert(db, table, conflictAlgorithm);
+        }
+        if (conflictAlgorithm == null) {
+            conflictAlgorithm = TableStatement.ConflictAlgorithm.NONE;
+        }
+        Map<Integer, ISQLitePreparedStatement> multiRowInserts = statementsFor(table).multiRowInserts;
+        Integer key = rows * TableStatement.ConflictAlgorithm.values().length + conflictAlgorithm.ordinal();
+        ISQLitePreparedStatement toReturn = multiRowInserts.get(key);
+        recordLookup(toReturn != null);
+        if (toReturn == null) {
+            toReturn = prepareMultiRowInsert(db, table, conflictAlgorithm, rows);
+            multiRowInserts.put(key, toReturn);
+        }
+        return toReturn;
+    }
+
+    /**
+     * @return a prepared update of the given item's set values by rowid, or null if the update can't be cached (e.g.
+     * if the item has set values that don't correspond to columns of the table)
+     */
+    PreparedUpdate getPreparedUpdate(SquidDatabase db, Table table, TableModel item,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        if (conflictAlgorithm == null) {
+            conflictAlgorithm = TableStatement.ConflictAlgorithm.NONE;
+        }
+        ColumnSet columnSet = ColumnSet.forSetValues(table, item.getSetValues(), conflictAlgorithm);
+        if (columnSet == null) {
+            recordLookup(false);
+            return null;
+        }
+
+        Map<ColumnSet, PreparedUpdate> updates = statementsFor(table).updates;
+        PreparedUpdate toReturn = updates.get(columnSet);
+        recordLookup(toReturn != null);
+        if (toReturn == null) {
+            toReturn = prepareUpdate(db, table, columnSet, conflictAlgorithm);
+            if (toReturn == null) {
+                return null;
+            }
+            updates.put(columnSet, toReturn);
+        }
+        return toReturn;
+    }
+
+    ISQLitePreparedStatement getPreparedDeleteById(SquidDatabase db, Table table) {
+        TableStatements statements = statementsFor(table);
+        ISQLitePreparedStatement toReturn = statements.deleteById;
+        recordLookup(toReturn != null);
+        if (toReturn == null) {
+            Delete delete = Delete.from(table).where(table.getRowIdProperty().eq(new Object()));
+            toReturn = prepareStatement(db, delete.compile(db.getCompileContext()));
+            statements.deleteById = toReturn;
+        }
+        return toReturn;
+    }
+
+    /**
+     * @return the compiled query for fetching the given properties of a single row by rowid, or null if the query
+     * can't be cached
+     */
+    PreparedFetch getPreparedFetchById(SquidDatabase db, Table table, Property<?>[] properties) {
+        Map<PropertyList, PreparedFetch> fetches = statementsFor(table).fetches;
+        PropertyList key = new PropertyList(properties);
+        PreparedFetch toReturn = fetches.get(key);
+        recordLookup(toReturn != null);
+        if (toReturn == null) {
+            toReturn = prepareFetch(db, table, properties);
+            if (toReturn == null) {
+                return null;
+            }
+            fetches.put(new PropertyList(properties.clone()), toReturn);
+        }
+        return toReturn;
+    }
+
+    private ISQLitePreparedStatement prepareInsert(SquidDatabase db, Table table,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        Object[] placeholders = new Object[table.getProperties().length];
+        Arrays.fill(placeholders, new Object());
+
+        Insert insert = Insert.into(table).columns(table.getProperties())
+                .values(placeholders).onConflict(conflictAlgorithm);
+        return prepareStatement(db, insert.compile(db.getCompileContext()));
+    }
+
+    private ISQLitePreparedStatement prepareMultiRowInsert(SquidDatabase db, Table table,
+            TableStatement.ConflictAlgorithm conflictAlgorithm, int rows) {
+        Object[] placeholders = new Object[table.getProperties().length];
+        Arrays.fill(placeholders, new Object());
+
+        Insert insert = Insert.into(table).columns(table.getProperties()).onConflict(conflictAlgorithm);
+        for (int i = 0; i < rows; i++) {
+            insert.values(placeholders);
+        }
+        return prepareStatement(db, insert.compile(db.getCompileContext()));
+    }
+
+    /**
+     * Close all the statements in this cache. Only needed for instances that are not tracked by the database, since
+     * tracked statements are closed when the database is closed.
+     */
+    void close() {
+        for (TableStatements statements : statementCache.values()) {
+            for (ISQLitePreparedStatement statement : statements.inserts) {
+                closeStatement(statement);
+            }
+            for (ISQLitePreparedStatement statement : statements.multiRowInserts.values()) {
+                closeStatement(statement);
+            }
+            for (PreparedUpdate update : statements.updates.values()) {
+                closeStatement(update.statement);
+            }
+            closeStatement(statements.deleteById);
+        }
+        statementCache.clear();
+    }
+
+    private void closeStatement(ISQLitePreparedStatement statement) {
+        if (statement != null) {
+            dbStatementTracking.remove(statement);
+            statement.close();
+        }
+    }
+
+    private PreparedUpdate prepareUpdate(SquidDatabase db, Table table, ColumnSet columnSet,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        Property<?>[] columns = columnSet.columns(table);
+        Object[] placeholders = new Object[columns.length];
+        for (int i = 0; i < placeholders.length; i++) {
+            placeholders[i] = new Object();
+        }
+        Object rowIdPlaceholder = new Object();
+
+        Update update = Update.table(table).set(columns, placeholders)
+                .where(table.getRowIdProperty().eq(rowIdPlaceholder)).onConflict(conflictAlgorithm);
+        CompiledStatement compiled = update.compile(db.getCompileContext());
+
+        // Update doesn't guarantee the order of the SET clause, so find where each placeholder ended up
+        int[] bindIndexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            bindIndexes[i] = bindIndexOf(compiled.sqlArgs, placeholders[i]);
+            if (bindIndexes[i] < 0) {
+                return null;
+            }
+        }
+        int rowIdBindIndex = bindIndexOf(compiled.sqlArgs, rowIdPlaceholder);
+        if (rowIdBindIndex < 0) {
+            return null;
+        }
+        return new PreparedUpdate(prepareStatement(db, compiled), columns, bindIndexes, rowIdBindIndex);
+    }
+
+    private PreparedFetch prepareFetch(SquidDatabase db, Table table, Property<?>[] properties) {
+        Object rowIdPlaceholder = new Object();
+        Query query = Query.select(properties).from(table)
+                .where(table.getRowIdProperty().eq(rowIdPlaceholder)).limit(1);
+        CompiledStatement compiled = query.compile(db.getCompileContext());
+        int rowIdBindIndex = bindIndexOf(compiled.sqlArgs, rowIdPlaceholder);
+        if (compiled.needsValidation || rowIdBindIndex < 0) {
+            return null;
+        }
+        return new PreparedFetch(compiled.sql, query.getFields(), compiled.sqlArgs, rowIdBindIndex - 1);
+    }
+
+    private ISQLitePreparedStatement prepareStatement(SquidDatabase db, CompiledStatement compiled) {
+        ISQLitePreparedStatement statement = db.prepareStatement(compiled.sql);
+        dbStatementTracking.add(statement);
+        return statement;
+    }
+
+    // Returns the 1-based bind index of the given placeholder object, or -1 if it was not found
+    private static int bindIndexOf(Object[] sqlArgs, Object placeholder) {
+        for (int i = 0; i < sqlArgs.length; i++) {
+            if (sqlArgs[i] == placeholder) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cache key for an update statement: the set of a table's columns being updated plus the conflict algorithm
+     */
+    private static final class ColumnSet {
+
+        private final long[] columnBits;
+        private final int conflictAlgorithm;
+
+        private ColumnSet(long[] columnBits, int conflictAlgorithm) {
+            this.columnBits = columnBits;
+            this.conflictAlgorithm = conflictAlgorithm;
+        }
+
+        static ColumnSet forSetValues(Table table, ValuesStorage setValues,
+                TableStatement.ConflictAlgorithm conflictAlgorithm) {
+            Property<?>[] properties = table.getProperties();
+            long[] columnBits = new long[(properties.length + 63) >>> 6];
+            int matched = 0;
+            for (int i = 0; i < properties.length; i++) {
+                if (setValues.containsKey(properties[i].getName())) {
+                    columnBits[i >>> 6] |= 1L << i;
+                    matched++;
+                }
+            }
+            if (matched == 0 || matched != setValues.size()) {
+                return null;
+            }
+            return new ColumnSet(columnBits, conflictAlgorithm.ordinal());
+        }
+
+        Property<?>[] columns(Table table) {
+            Property<?>[] properties = table.getProperties();
+            int count = 0;
+            for (long bits : columnBits) {
+                count += Long.bitCount(bits);
+            }
+            Property<?>[] columns = new Property<?>[count];
+            int index = 0;
+            for (int i = 0; i < properties.length; i++) {
+                if ((columnBits[i >>> 6] & (1L << i)) != 0) {
+                    columns[index++] = properties[i];
+                }
+            }
+            return columns;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ColumnSet)) {
+                return false;
+            }
+            ColumnSet other = (ColumnSet) o;
+            return conflictAlgorithm == other.conflictAlgorithm && Arrays.equals(columnBits, other.columnBits);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(columnBits) + conflictAlgorithm;
+        }
+    }
+
+    /**
+     * Cache key for a fetch statement. Properties are compared by identity, which is cheap and matches the common
+     * case of fetching the same static property instances every time.
+     */
+    private static final class PropertyList {
+
+        private final Property<?>[] properties;
+
+        PropertyList(Property<?>[] properties) {
+            this.properties = properties;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PropertyList)) {
+                return false;
+            }
+            Property<?>[] otherProperties = ((PropertyList) o).properties;
+            if (properties.length != otherProperties.length) {
+                return false;
+            }
+            for (int i = 0; i < properties.length; i++) {
+                if (properties[i] != otherProperties[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 1;
+            for (Property<?> property : properties) {
+                result = 31 * result + System.identityHashCode(property);
+            }
+            return result;
+        }
+    }
+}
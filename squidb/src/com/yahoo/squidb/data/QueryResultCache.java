@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import com.yahoo.squidb.sql.Query;
+import com.yahoo.squidb.sql.SqlTable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cache of materialized query results, bounded by a total number of rows and an estimated number of bytes. Each table
+// has a generation counter that is incremented whenever the table is modified. A result is only stored if none of the
+// tables its query reads from changed while the query was running, so a read that races with a write can never
+// populate the cache with stale results. This class is threadsafe.
+class QueryResultCache {
+
+    static final int DEFAULT_MAX_ROWS = 1000;
+    static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    // Rough per-object overhead used when estimating the size of cached results
+    private static final int OBJECT_OVERHEAD_BYTES = 16;
+
+    private final int maxRows;
+    private final long maxBytes;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> tableGenerations = new HashMap<>();
+    private long globalGeneration = 0;
+    private int cachedRows = 0;
+    private long cachedBytes = 0;
+
+    // Tables modified by a transaction are invalidated again when the transaction ends, since other threads may have
+    // cached results read from the last committed state while the transaction was in progress. The modified tables are
+    // tracked in the TransactionContext of the transaction.
+
+    QueryResultCache(int maxRows, long maxBytes, AtomicLong hits, AtomicLong misses) {
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    /**
+     * Identifies a cached result by the query, its bound arguments, and the type of result read from it
+     */
+    static final class Key {
+
+        private final Object resultType;
+        private final Query query;
+        private final List<Object> sqlArgs;
+        private final int hashCode;
+
+        Key(Object resultType, Query query, Object[] sqlArgs) {
+            this.resultType = resultType;
+            this.query = query;
+            this.sqlArgs = Arrays.asList(sqlArgs);
+            this.hashCode = 31 * (31 * resultType.hashCode() + query.hashCode()) + this.sqlArgs.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode && resultType.equals(other.resultType) && query.equals(other.query)
+                    && sqlArgs.equals(other.sqlArgs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * The generations of a set of tables at the time a query began reading from them
+     */
+    static final class Generations {
+
+        private final long globalGeneration;
+        private final String[] tables;
+        private final long[] generations;
+
+        private Generations(long globalGeneration, String[] tables, long[] generations) {
+            this.globalGeneration = globalGeneration;
+            this.tables = tables;
+            this.generations = generations;
+        }
+    }
+
+    static final class Entry {
+
+        final Object result;
+        private final Generations generations;
+        private final int rows;
+        private final long bytes;
+
+        private Entry(Object result, Generations generations, int rows, long bytes) {
+            this.result = result;
+            this.generations = generations;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * @return the cached entry for the given key, or null if there is none
+     */
+    synchronized Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Capture the current generations of the given tables. This should be called before running the query whose
+     * result will be passed to {@link #put(Key, Generations, Object, int, long) put}.
+     */
+    synchronized Generations getGenerations(Collection<SqlTable<?>> tables) {
+        String[] names = new String[tables.size()];
+        long[] generations = new long[names.length];
+        int i = 0;
+        for (SqlTable<?> table : tables) {
+            names[i] = table.getName();
+            generations[i] = getGeneration(names[i]);
+            i++;
+        }
+        return new Generations(globalGeneration, names, generations);
+    }
+
+    /**
+     * Cache a query result, unless any of the tables it was read from has been modified since the given generations
+     * were captured or the result is too large to cache
+     */
+    synchronized void put(Key key, Generations generations, Object result, int rows, long bytes) {
+        if (!isCurrent(generations) || rows > maxRows || bytes > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(result, generations, rows, bytes));
+        if (previous != null) {
+            cachedRows -= previous.rows;
+            cachedBytes -= previous.bytes;
+        }
+        cachedRows += rows;
+        cachedBytes += bytes;
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while ((cachedRows > maxRows || cachedBytes > maxBytes) && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            cachedRows -= eldest.rows;
+            cachedBytes -= eldest.bytes;
+        }
+    }
+
+    /**
+     * Called when a table is modified. If the modification happened inside a transaction, the table is invalidated
+     * again when the transaction ends.
+     */
+    void onTableChanged(SqlTable<?> table, TransactionContext context) {
+        String name = table.getName();
+        if (context.inTransaction()) {
+            context.tablesModifiedInTransaction.add(name);
+        }
+        invalidateTable(name);
+    }
+
+    /**
+     * Called when a raw SQL statement is executed. Since there is no way to know which tables it modified, all cached
+     * results are invalidated.
+     */
+    void onRawStatementExecuted(TransactionContext context) {
+        if (context.inTransaction()) {
+            context.rawStatementInTransaction = true;
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Called when the outermost transaction of the given context ends, whether or not it succeeded
+     */
+    void onTransactionEnded(TransactionContext context) {
+        if (context.rawStatementInTransaction) {
+            context.rawStatementInTransaction = false;
+            context.tablesModifiedInTransaction.clear();
+            invalidateAll();
+            return;
+        }
+        Set<String> modifiedTables = context.tablesModifiedInTransaction;
+        if (!modifiedTables.isEmpty()) {
+            synchronized (this) {
+                for (String table : modifiedTables) {
+                    invalidateTable(table);
+                }
+            }
+            modifiedTables.clear();
+        }
+    }
+
+    synchronized void invalidateAll() {
+        globalGeneration++;
+        entries.clear();
+        cachedRows = 0;
+        cachedBytes = 0;
+    }
+
+    private synchronized void invalidateTable(String table) {
+        tableGenerations.put(table, getGeneration(table) + 1);
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            for (String entryTable : entry.generations.tables) {
+                if (entryTable.equals(table)) {
+                    iterator.remove();
+                    cachedRows -= entry.rows;
+                    cachedBytes -= entry.bytes;
+                    break;
+                }
+            }
+        }
+    }
+
+    private long getGeneration(String table) {
+        Long generation = tableGenerations.get(table);
+        return generation == null ? 0 : generation;
+    }
+
+    private boolean isCurrent(Generations generations) {
+        if (generations.globalGeneration != globalGeneration) {
+            return false;
+        }
+        for (int i = 0; i < generations.tables.length; i++) {
+            if (generations.generations[i] != getGeneration(generations.tables[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a rough estimate of the number of bytes used by the database values of the given models
+     */
+    static long estimateSize(List<? extends AbstractModel> models) {
+        long bytes = 0;
+        for (AbstractModel model : models) {
+            bytes += OBJECT_OVERHEAD_BYTES;
+            ValuesStorage values = model.getDatabaseValues();
+            if (values != null) {
+                for (Map.Entry<String, Object> value : values.valueSet()) {
+                    bytes += estimateSize(value.getValue());
+                }
+            }
+        }
+        return bytes;
+    }
+
+    static long estimateSize(Object value) {
+        if (value instanceof String) {
+            return OBJECT_OVERHEAD_BYTES + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return OBJECT_OVERHEAD_BYTES + ((byte[]) value).length;
+        }
+        return OBJECT_OVERHEAD_BYTES;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pool of read-only connections opened through an ISQLiteReaderOpenHelper. Connections are opened lazily, up to a
+// maximum number. A caller that finds every connection in use waits up to a maximum time for one to be released, and
+// is told to fall back to the main connection if none is. This class is threadsafe.
+class ReaderConnectionPool {
+
+    static final int DEFAULT_MAX_CONNECTIONS = 4;
+    static final long DEFAULT_MAX_WAIT_MILLIS = 50;
+
+    private final ISQLiteReaderOpenHelper helper;
+    private final int maxConnections;
+    private final long maxWaitNanos;
+    private final AtomicLong acquisitions;
+    private final AtomicLong waitNanos;
+    private final AtomicLong timeouts;
+
+    private final ArrayDeque<ISQLiteDatabase> idleConnections = new ArrayDeque<>();
+    private final Set<ISQLiteDatabase> ownedConnections =
+            Collections.newSetFromMap(new IdentityHashMap<ISQLiteDatabase, Boolean>());
+    private int openConnections = 0;
+    private int connectionsInUse = 0;
+    private boolean closed = false;
+
+    ReaderConnectionPool(ISQLiteReaderOpenHelper helper, int maxConnections, long maxWaitMillis,
+            AtomicLong acquisitions, AtomicLong waitNanos, AtomicLong timeouts) {
+        this.helper = helper;
+        this.maxConnections = maxConnections;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.acquisitions = acquisitions;
+        this.waitNanos = waitNanos;
+        this.timeouts = timeouts;
+    }
+
+    /**
+     * @return an idle or newly opened connection, or null if none became available within the maximum wait time or the
+     * pool has been closed. Connections returned by this method must be passed to {@link #release(ISQLiteDatabase)}.
+     */
+    ISQLiteDatabase acquire() {
+        long start = System.nanoTime();
+        boolean openNew = false;
+        try {
+            synchronized (this) {
+                long remaining = maxWaitNanos;
+                while (!closed) {
+                    if (!idleConnections.isEmpty()) {
+                        connectionsInUse++;
+                        acquisitions.incrementAndGet();
+                        return idleConnections.pop();
+                    }
+                    if (openConnections < maxConnections) {
+                        // Reserve the slot, but open the connection without holding the pool's monitor
+                        openConnections++;
+                        connectionsInUse++;
+                        openNew = true;
+                        break;
+                    }
+                    if (remaining <= 0) {
+                        timeouts.incrementAndGet();
+                        return null;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        timeouts.incrementAndGet();
+                        return null;
+                    }
+                    remaining = maxWaitNanos - (System.nanoTime() - start);
+                }
+                if (!openNew) {
+                    return null;
+                }
+            }
+        } finally {
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        ISQLiteDatabase connection = null;
+        try {
+            connection = helper.openReaderConnection();
+            synchronized (this) {
+                ownedConnections.add(connection);
+            }
+            acquisitions.incrementAndGet();
+            return connection;
+        } finally {
+            if (connection == null) {
+                synchronized (this) {
+                    openConnections--;
+                    connectionsInUse--;
+                    notify();
+                }
+            }
+        }
+    }
+
+    /**
+     * Return a connection obtained from {@link #acquire()} to the pool. The connection is closed instead if the pool
+     * has been closed in the meantime, or if it was obtained from a different pool that has since been replaced by
+     * this one.
+     */
+    void release(ISQLiteDatabase connection) {
+        boolean closeConnection;
+        synchronized (this) {
+            if (!ownedConnections.contains(connection)) {
+                closeConnection = true;
+            } else {
+                connectionsInUse--;
+                closeConnection = closed || !connection.isOpen();
+                if (closeConnection) {
+                    openConnections--;
+                    ownedConnections.remove(connection);
+                } else {
+                    idleConnections.push(connection);
+                }
+                notify();
+            }
+        }
+        if (closeConnection && connection.isOpen()) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Close all idle connections. Connections in use are closed when they are released.
+     */
+    void close() {
+        ISQLiteDatabase[] toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = idleConnections.toArray(new ISQLiteDatabase[idleConnections.size()]);
+            openConnections -= toClose.length;
+            idleConnections.clear();
+            for (ISQLiteDatabase connection : toClose) {
+                ownedConnections.remove(connection);
+            }
+            notifyAll();
+        }
+        for (ISQLiteDatabase connection : toClose) {
+            connection.close();
+        }
+    }
+
+    synchronized int getOpenConnections() {
+        return openConnections;
+    }
+
+    synchronized int getConnectionsInUse() {
+        return connectionsInUse;
+    }
+
+    int getMaxConnections() {
+        return maxConnections;
+    }
+}
@@ -10,7 +10,9 @@ import com.yahoo.squidb.sql.Property;
 import com.yahoo.squidb.sql.Property.PropertyVisitor;
 import com.yahoo.squidb.sql.Query;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A wrapper around a {@link ICursor} that allows clients to extract individual {@link Property properties} or read an
@@ -43,6 +45,15 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
     /** Wrapped cursor */
     private final ICursor cursor;
 
+    /** Column indexes of the fields read by this cursor, keyed by identity. Lazily initialized */
+    private Map<Field<?>, Integer> fieldColumnIndexes;
+
+    /** Reads rows of this cursor into models. Lazily initialized */
+    private ModelRowMapper rowMapper;
+
+    /** Run once after the wrapped cursor is closed, e.g. to clean up temporary state the query depended on */
+    Runnable closeAction;
+
     /**
      * Create a SquidCursor from the supplied {@link ICursor}
      *
@@ -74,6 +85,52 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
         return (PROPERTY_TYPE) property.accept(reader, this);
     }
 
+    /**
+     * Get the index of the column corresponding to the given {@link Field}. Column indexes for the fields in
+     * {@link #getFields()} are resolved the first time each one is looked up and then cached, so looking up one of
+     * those field instances again does not require a column name lookup. Other fields are resolved by name using
+     * {@link #getColumnIndexOrThrow(String)}.
+     *
+     * @param field the field corresponding to the desired column
+     * @return the index of the column
+     * @throws IllegalArgumentException if the column does not exist
+     */
+    public int getColumnIndexForField(Field<?> field) {
+        if (fieldColumnIndexes == null) {
+            fieldColumnIndexes = initFieldColumnIndexes();
+        }
+        Integer index = fieldColumnIndexes.get(field);
+        if (index == null) {
+            index = cursor.getColumnIndexOrThrow(field.getName());
+            if (fieldColumnIndexes.containsKey(field)) {
+                fieldColumnIndexes.put(field, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return a {@link ModelRowMapper} for reading the properties in {@link #getFields()} from this cursor
+     */
+    ModelRowMapper getRowMapper() {
+        if (rowMapper == null) {
+            rowMapper = new ModelRowMapper(this);
+        }
+        return rowMapper;
+    }
+
+    // Maps each of the cursor's fields to a null index, to be resolved on first lookup. Fields aren't resolved up front
+    // since some (e.g. functions without an alias) have no name, and can only be read by position.
+    private Map<Field<?>, Integer> initFieldColumnIndexes() {
+        Map<Field<?>, Integer> result = new IdentityHashMap<>();
+        if (fields != null) {
+            for (Field<?> field : fields) {
+                result.put(field, null);
+            }
+        }
+        return result;
+    }
+
     /**
      * @return the {@link ICursor} backing this SquidCursor. If you are on Android and you need to pass this object
      * across process boundaries, and if this SquidCursor was obtained from a SquidDatabase, you can safely cast
@@ -232,6 +289,11 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
     @Override
     public void close() {
         cursor.close();
+        Runnable action = closeAction;
+        if (action != null) {
+            closeAction = null;
+            action.run();
+        }
     }
 
     @Override
@@ -300,7 +362,7 @@ public class SquidCursor<TYPE extends AbstractModel> implements ICursor {
         }
 
         private int columnIndex(Property<?> property, SquidCursor<?> cursor) {
-            return cursor.getColumnIndexOrThrow(property.getName());
+            return cursor.getColumnIndexForField(property);
         }
 
     }
@@ -36,11 +36,14 @@ import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
@@ -280,12 +283,48 @@ public abstract class SquidDatabase {
 
     private static final int STRING_BUILDER_INITIAL_CAPACITY = 128;
 
-    private Set<ISQLitePreparedStatement> trackedPreparedInserts = Collections.newSetFromMap(
+    private Set<ISQLitePreparedStatement> trackedPreparedStatements = Collections.newSetFromMap(
             new ConcurrentHashMap<ISQLitePreparedStatement, Boolean>());
-    private ThreadLocal<PreparedInsertCache> preparedInsertCache = newPreparedInsertCache(trackedPreparedInserts);
-    private boolean preparedInsertCacheEnabled = false;
+    private final AtomicLong preparedStatementCacheHits = new AtomicLong();
+    private final AtomicLong preparedStatementCacheMisses = new AtomicLong();
+    // Incremented when the prepared statement cache is cleared, so that each thread discards its cache on next use
+    private volatile int preparedStatementCacheGeneration = 0;
+    private boolean preparedStatementCacheEnabled = false;
+
+    private final AtomicLong queryResultCacheHits = new AtomicLong();
+    private final AtomicLong queryResultCacheMisses = new AtomicLong();
+    private volatile QueryResultCache queryResultCache = null;
+
+    // Validation SQL of queries that requested validation (see Query#requestValidation()) and are already known to
+    // compile, so identical queries can skip compiling it again. Cleared whenever a raw statement that may have changed
+    // the schema is executed or the database is opened.
+    private static final int VALIDATED_SQL_CACHE_SIZE = 64;
+    @SuppressWarnings("serial")
+    private final Map<String, Boolean> validatedSql = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > VALIDATED_SQL_CACHE_SIZE;
+        }
+    };
+    // Incremented when validatedSql is cleared, so a validation racing with a schema change isn't cached
+    private int validatedSqlGeneration = 0;
+
+    private final AtomicLong readerConnectionAcquisitions = new AtomicLong();
+    private final AtomicLong readerConnectionWaitNanos = new AtomicLong();
+    private final AtomicLong readerConnectionTimeouts = new AtomicLong();
+    private int readerConnectionPoolMaxConnections = 0;
+    private long readerConnectionPoolMaxWaitMillis = ReaderConnectionPool.DEFAULT_MAX_WAIT_MILLIS;
+    // Created lazily after the database is opened, and closed along with it. Guarded by databaseInstanceLock
+    private ReaderConnectionPool readerConnectionPool = null;
+    private boolean readerConnectionPoolUnavailable = false;
+
+    private final AtomicLong groupCommitTransactions = new AtomicLong();
+    private final AtomicLong groupCommitWrites = new AtomicLong();
+    private volatile GroupCommitter groupCommitter = null;
 
     private SquidDatabase attachedTo = null;
+    // Number of databases attached to this one. Attached databases are only visible to the main connection
+    private volatile int attachedDatabaseCount = 0;
     private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final Object databaseInstanceLock = new Object();
 
@@ -305,6 +344,12 @@ public abstract class SquidDatabase {
      */
     private VersionCode sqliteVersion = null;
 
+    /**
+     * CompileContext shared by all statements compiled by this database. Rebuilt whenever the database is opened or
+     * {@link #invalidateCompileContext()} is called
+     */
+    private volatile CompileContext compileContext = null;
+
     /**
      * Map of class objects to corresponding tables
      */
@@ -475,27 +520,300 @@ public abstract class SquidDatabase {
     }
 
     /**
-     * Enables or disables the prepared insert cache. Generally speaking, enabling this cache will result in a
-     * performance improvement when inserting rows, especially in large transactions. Under ideal conditions,
-     * performance may be improved up to 70%, and a 25-50% gain is a reasonable expectation for most cases. However,
-     * the gains may not be noticeable on some older devices or in low-memory environments. The feature is experimental
-     * and is disabled by default.
+     * Enables or disables the prepared statement cache. When enabled, inserting rows, updating rows by ID (e.g. when
+     * persisting a modified model), deleting rows by ID, and fetching single rows by ID will reuse previously compiled
+     * statements rather than building and compiling new SQL each time. Generally speaking, enabling this cache will
+     * result in a performance improvement for these operations, especially in large transactions. Under ideal
+     * conditions, insert performance may be improved up to 70%, and a 25-50% gain is a reasonable expectation for
+     * most cases. However, the gains may not be noticeable on some older devices or in low-memory environments. The
+     * feature is experimental and is disabled by default.
+     * <p>
+     * Prepared statements are cached per thread and per table. Updates need a separate statement for each distinct
+     * set of modified columns, so only a bounded number of them are cached for each table.
      *
-     * @param enabled true to enable the prepared insert cache, false to disable it
+     * @param enabled true to enable the prepared statement cache, false to disable it
+     * @see #getPreparedStatementCacheHits()
+     * @see #getPreparedStatementCacheMisses()
+     */
+    @Beta
+    protected void setPreparedStatementCacheEnabled(boolean enabled) {
+        preparedStatementCacheEnabled = enabled;
+    }
+
+    /**
+     * Deprecated in favor of {@link #setPreparedStatementCacheEnabled(boolean)}, which this method now calls
      */
     @Beta
+    @Deprecated
     protected void setPreparedInsertCacheEnabled(boolean enabled) {
-        preparedInsertCacheEnabled = enabled;
+        setPreparedStatementCacheEnabled(enabled);
     }
 
-    private ThreadLocal<PreparedInsertCache> newPreparedInsertCache(
-            final Set<ISQLitePreparedStatement> openStatementTracking) {
-        return new ThreadLocal<PreparedInsertCache>() {
-            @Override
-            protected PreparedInsertCache initialValue() {
-                return new PreparedInsertCache(openStatementTracking);
-            }
-        };
+    /**
+     * @return the number of times a statement was found in the prepared statement cache since this SquidDatabase
+     * was created
+     * @see #setPreparedStatementCacheEnabled(boolean)
+     */
+    public long getPreparedStatementCacheHits() {
+        return preparedStatementCacheHits.get();
+    }
+
+    /**
+     * @return the number of times a statement was not found in the prepared statement cache since this SquidDatabase
+     * was created. A miss means a new statement was compiled or, for statements that can't be cached, that the
+     * statement was executed without using the cache.
+     * @see #setPreparedStatementCacheEnabled(boolean)
+     */
+    public long getPreparedStatementCacheMisses() {
+        return preparedStatementCacheMisses.get();
+    }
+
+    /**
+     * Enable or disable the query result cache, using a default limit on the size of the cache. See
+     * {@link #setQueryResultCacheEnabled(boolean, int, long)}.
+     *
+     * @param enabled true to enable the query result cache, false to disable it
+     */
+    @Beta
+    protected void setQueryResultCacheEnabled(boolean enabled) {
+        setQueryResultCacheEnabled(enabled, QueryResultCache.DEFAULT_MAX_ROWS, QueryResultCache.DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Enable or disable the query result cache. When enabled, the results of {@link Query#freeze() frozen} queries
+     * run with {@link #queryForList(Class, Query)}, {@link #simpleQueryForLong(Query)}, or
+     * {@link #simpleQueryForString(Query)} are cached, so running the same query with the same arguments again does
+     * not need to touch the database. Cached results are invalidated whenever one of the tables the query reads from
+     * is modified through this SquidDatabase, regardless of whether data changed notifications are enabled. Executing
+     * raw SQL statements invalidates the entire cache.
+     * <p>
+     * Only enable this cache if the database is not modified by other means (e.g. another process, or triggers that
+     * modify other tables), and only use it with queries whose results depend only on the contents of the tables they
+     * read from (e.g. not queries using functions like random() or datetime('now')). Queries run on a thread that has
+     * an open transaction never use the cache.
+     *
+     * @param enabled true to enable the query result cache, false to disable it
+     * @param maxRows the maximum total number of rows to cache. Each result from a simple query counts as one row.
+     * @param maxBytes the maximum total size of the cache, in bytes. The size of cached results is estimated.
+     * @see #getQueryResultCacheHits()
+     * @see #getQueryResultCacheMisses()
+     */
+    @Beta
+    protected void setQueryResultCacheEnabled(boolean enabled, int maxRows, long maxBytes) {
+        queryResultCache = enabled
+                ? new QueryResultCache(maxRows, maxBytes, queryResultCacheHits, queryResultCacheMisses)
+                : null;
+    }
+
+    /**
+     * @return the number of times a result was found in the query result cache since this SquidDatabase was created
+     * @see #setQueryResultCacheEnabled(boolean, int, long)
+     */
+    public long getQueryResultCacheHits() {
+        return queryResultCacheHits.get();
+    }
+
+    /**
+     * @return the number of times a result that could have been cached was not found in the query result cache since
+     * this SquidDatabase was created
+     * @see #setQueryResultCacheEnabled(boolean, int, long)
+     */
+    public long getQueryResultCacheMisses() {
+        return queryResultCacheMisses.get();
+    }
+
+    /**
+     * Enable or disable the reader connection pool, using default limits. See
+     * {@link #setReaderConnectionPoolEnabled(boolean, int, long)}.
+     *
+     * @param enabled true to enable the reader connection pool, false to disable it
+     */
+    @Beta
+    protected void setReaderConnectionPoolEnabled(boolean enabled) {
+        setReaderConnectionPoolEnabled(enabled, ReaderConnectionPool.DEFAULT_MAX_CONNECTIONS,
+                ReaderConnectionPool.DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    /**
+     * Enable or disable the reader connection pool. When enabled, queries run with {@link #query(Class, Query)},
+     * {@link #count(Class, Criterion)}, {@link #simpleQueryForLong(Query)}, {@link #simpleQueryForString(Query)}, and
+     * {@link #rawQuery(String, Object[])} on a thread that is not in a transaction use one of a pool of read-only
+     * connections, so they can run concurrently with each other and with writes on the main connection. Reads in a
+     * transaction always use the main connection so that they see the transaction's changes.
+     * <p>
+     * The pool is only used if the {@link ISQLiteOpenHelper} returned by
+     * {@link #createOpenHelper(String, OpenHelperDelegate, int)} implements {@link ISQLiteReaderOpenHelper} and the
+     * database uses write-ahead logging (e.g. by calling {@link ISQLiteDatabase#enableWriteAheadLogging()} in
+     * {@link #onConfigure(ISQLiteDatabase)}, which is also called for each reader connection). It is not used while
+     * other databases are attached to this one. Android's SQLiteDatabase already pools connections when write-ahead
+     * logging is enabled, so this pool is mainly useful on other platforms.
+     * <p>
+     * Each reader connection has its own view of TEMP objects, so queries that read from TEMP tables or views created
+     * with raw SQL should be run in a transaction.
+     *
+     * @param enabled true to enable the reader connection pool, false to disable it
+     * @param maxConnections the maximum number of reader connections to open
+     * @param maxWaitMillis the maximum time to wait for a reader connection when all of them are in use, after which
+     * the query runs on the main connection instead
+     * @see #getReaderConnectionPoolSize()
+     * @see #getReaderConnectionPoolUtilization()
+     * @see #getReaderConnectionWaitTimeMillis()
+     */
+    @Beta
+    protected void setReaderConnectionPoolEnabled(boolean enabled, int maxConnections, long maxWaitMillis) {
+        if (enabled && maxConnections < 1) {
+            throw new IllegalArgumentException("maxConnections must be >= 1, was " + maxConnections);
+        }
+        synchronized (databaseInstanceLock) {
+            readerConnectionPoolMaxConnections = enabled ? maxConnections : 0;
+            readerConnectionPoolMaxWaitMillis = Math.max(0, maxWaitMillis);
+            closeReaderConnectionPoolLocked();
+        }
+    }
+
+    /**
+     * @return the number of reader connections currently open
+     * @see #setReaderConnectionPoolEnabled(boolean, int, long)
+     */
+    public int getReaderConnectionPoolSize() {
+        synchronized (databaseInstanceLock) {
+            return readerConnectionPool == null ? 0 : readerConnectionPool.getOpenConnections();
+        }
+    }
+
+    /**
+     * @return the fraction of the maximum number of reader connections that are currently running a query, between 0
+     * and 1
+     * @see #setReaderConnectionPoolEnabled(boolean, int, long)
+     */
+    public double getReaderConnectionPoolUtilization() {
+        synchronized (databaseInstanceLock) {
+            ReaderConnectionPool pool = readerConnectionPool;
+            return pool == null ? 0 : (double) pool.getConnectionsInUse() / pool.getMaxConnections();
+        }
+    }
+
+    /**
+     * @return the number of times a query ran on a reader connection since this SquidDatabase was created
+     * @see #setReaderConnectionPoolEnabled(boolean, int, long)
+     */
+    public long getReaderConnectionAcquisitions() {
+        return readerConnectionAcquisitions.get();
+    }
+
+    /**
+     * @return the number of times no reader connection became available in time and a query ran on the main connection
+     * instead, since this SquidDatabase was created
+     * @see #setReaderConnectionPoolEnabled(boolean, int, long)
+     */
+    public long getReaderConnectionTimeouts() {
+        return readerConnectionTimeouts.get();
+    }
+
+    /**
+     * @return the total time spent waiting for reader connections since this SquidDatabase was created, in
+     * milliseconds
+     * @see #setReaderConnectionPoolEnabled(boolean, int, long)
+     */
+    public long getReaderConnectionWaitTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readerConnectionWaitNanos.get());
+    }
+
+    /**
+     * Enable or disable group commit, using default limits. See {@link #setGroupCommitEnabled(boolean, long, int)}.
+     *
+     * @param enabled true to enable group commit, false to disable it
+     */
+    @Beta
+    protected void setGroupCommitEnabled(boolean enabled) {
+        setGroupCommitEnabled(enabled, GroupCommitter.DEFAULT_WINDOW_MILLIS,
+                GroupCommitter.DEFAULT_MAX_WRITES_PER_TRANSACTION);
+    }
+
+    /**
+     * Enable or disable group commit. Normally, each write made outside of a transaction is committed in a transaction
+     * of its own. When group commit is enabled, writes made with {@link #persist(TableModel)},
+     * {@link #update(Criterion, TableModel)}, {@link #delete(Class, long)}, {@link #deleteWhere(Class, Criterion)}, or
+     * the {@link Insert}, {@link Update}, and {@link Delete} statement methods outside of a transaction are instead
+     * merged with writes arriving from other threads into a single transaction, which saves a commit (and its fsync)
+     * for each of them.
+     * <p>
+     * The first thread to write becomes the leader of a group: it begins a transaction, runs its write, and then runs
+     * the writes of other threads that arrive within the given window on their behalf, until the window elapses or the
+     * group reaches the maximum number of writes. Each write still returns only after the transaction it ran in has
+     * committed, so a write may take up to the window longer to return. Each write runs in its own savepoint, so a
+     * write that throws is rolled back and rethrown on its own thread without affecting the others. Data changed
+     * notifications for a group are sent once, when it commits.
+     * <p>
+     * Writes run on the leader's thread, so they must not depend on thread-local state of the calling thread. Writes
+     * made in an explicit transaction are not affected by this setting.
+     *
+     * @param enabled true to enable group commit, false to disable it
+     * @param windowMillis how long the leader of a group waits for other writes to arrive. 0 only groups writes that
+     * arrive while the leader is busy running earlier ones.
+     * @param maxWritesPerTransaction the maximum number of writes in a group
+     * @see #getGroupCommitTransactions()
+     * @see #getGroupCommitWrites()
+     */
+    @Beta
+    protected void setGroupCommitEnabled(boolean enabled, long windowMillis, int maxWritesPerTransaction) {
+        if (enabled && maxWritesPerTransaction < 1) {
+            throw new IllegalArgumentException("maxWritesPerTransaction must be >= 1, was " + maxWritesPerTransaction);
+        }
+        groupCommitter = enabled ? new GroupCommitter(this, Math.max(0, windowMillis), maxWritesPerTransaction,
+                groupCommitTransactions, groupCommitWrites) : null;
+    }
+
+    /**
+     * @return the number of transactions committed by group commit since this SquidDatabase was created
+     * @see #setGroupCommitEnabled(boolean, long, int)
+     */
+    public long getGroupCommitTransactions() {
+        return groupCommitTransactions.get();
+    }
+
+    /**
+     * @return the number of writes run by group commit since this SquidDatabase was created. Dividing this by
+     * {@link #getGroupCommitTransactions()} gives the average number of writes per transaction.
+     * @see #setGroupCommitEnabled(boolean, long, int)
+     */
+    public long getGroupCommitWrites() {
+        return groupCommitWrites.get();
+    }
+
+    // Returns the group committer to run a write with, or null if the write should run on the calling thread
+    private GroupCommitter getGroupCommitterForWrite() {
+        GroupCommitter committer = groupCommitter;
+        return committer == null || inTransaction() ? null : committer;
+    }
+
+    // Returns the query result cache if the results of the given query can be cached on the current thread
+    private QueryResultCache getQueryResultCache(Query query) {
+        QueryResultCache cache = queryResultCache;
+        if (cache == null || !query.isImmutable() || inTransaction()) {
+            return null;
+        }
+        return cache;
+    }
+
+    // A raw statement may have changed the schema or any table, so forget which SQL is known to compile and which
+    // cached query results are still valid
+    private void onRawStatementExecuted() {
+        clearValidatedSql();
+        QueryResultCache cache = queryResultCache;
+        if (cache != null) {
+            cache.onRawStatementExecuted(transactionContext.get());
+        }
+    }
+
+    private PreparedStatementCache getPreparedStatementCache(TransactionContext context) {
+        int generation = preparedStatementCacheGeneration;
+        if (context.preparedStatementCacheGeneration != generation) {
+            context.preparedStatementCache = new PreparedStatementCache(trackedPreparedStatements,
+                    preparedStatementCacheHits, preparedStatementCacheMisses);
+            context.preparedStatementCacheGeneration = generation;
+        }
+        return context.preparedStatementCache;
     }
 
     /**
@@ -570,6 +888,7 @@ public abstract class SquidDatabase {
             return null;
         } else {
             attachedTo = attachTo;
+            attachTo.attachedDatabaseCount++;
             return attachedAs;
         }
     }
@@ -577,6 +896,7 @@ public abstract class SquidDatabase {
     private boolean detachFrom(SquidDatabase detachFrom) {
         if (detachFrom.tryExecSql("DETACH '" + getAttachedName() + "'")) {
             attachedTo = null;
+            detachFrom.attachedDatabaseCount--;
             releaseExclusiveLock();
             return true;
         }
@@ -689,6 +1009,7 @@ public abstract class SquidDatabase {
 
     private void closeAndDeleteInternal(boolean deleteAfterClose) {
         clearPreparedStatementCache();
+        closeReaderConnectionPoolLocked();
         if (isOpen()) {
             onClose(database);
             database.close();
@@ -701,11 +1022,11 @@ public abstract class SquidDatabase {
     }
 
     private void clearPreparedStatementCache() {
-        for (ISQLitePreparedStatement statement : trackedPreparedInserts) {
+        for (ISQLitePreparedStatement statement : trackedPreparedStatements) {
             statement.close();
         }
-        trackedPreparedInserts.clear();
-        preparedInsertCache = newPreparedInsertCache(trackedPreparedInserts);
+        trackedPreparedStatements.clear();
+        preparedStatementCacheGeneration++;
     }
 
     /**
@@ -739,6 +1060,14 @@ public abstract class SquidDatabase {
     public ICursor rawQuery(String sql, Object[] sqlArgs) {
         acquireNonExclusiveLock();
         try {
+            ISQLiteDatabase reader = acquireReaderConnection();
+            if (reader != null) {
+                try {
+                    return fillCursor(reader.rawQuery(sql, sqlArgs));
+                } finally {
+                    releaseReaderConnection(reader);
+                }
+            }
             return getDatabase().rawQuery(sql, sqlArgs);
         } finally {
             releaseNonExclusiveLock();
@@ -794,7 +1123,22 @@ public abstract class SquidDatabase {
      */
     public String simpleQueryForString(Query query) {
         CompiledStatement compiled = query.compile(getCompileContext());
-        return simpleQueryForString(compiled.sql, compiled.sqlArgs);
+        QueryResultCache cache = getQueryResultCache(query);
+        if (cache == null) {
+            return simpleQueryForString(compiled);
+        }
+        QueryResultCache.Key key = new QueryResultCache.Key(String.class, query, compiled.sqlArgs);
+        QueryResultCache.Entry cached = cache.get(key);
+        if (cached != null) {
+            return (String) cached.result;
+        }
+        Set<SqlTable<?>> tables = query.getReferencedTables();
+        QueryResultCache.Generations generations = cache.getGenerations(tables);
+        String result = simpleQueryForString(compiled);
+        if (!tables.isEmpty()) {
+            cache.put(key, generations, result, 1, QueryResultCache.estimateSize(result));
+        }
+        return result;
     }
 
     /**
@@ -808,7 +1152,22 @@ public abstract class SquidDatabase {
      */
     public long simpleQueryForLong(Query query) {
         CompiledStatement compiled = query.compile(getCompileContext());
-        return simpleQueryForLong(compiled.sql, compiled.sqlArgs);
+        QueryResultCache cache = getQueryResultCache(query);
+        if (cache == null) {
+            return simpleQueryForLong(compiled);
+        }
+        QueryResultCache.Key key = new QueryResultCache.Key(Long.class, query, compiled.sqlArgs);
+        QueryResultCache.Entry cached = cache.get(key);
+        if (cached != null) {
+            return (Long) cached.result;
+        }
+        Set<SqlTable<?>> tables = query.getReferencedTables();
+        QueryResultCache.Generations generations = cache.getGenerations(tables);
+        long result = simpleQueryForLong(compiled);
+        if (!tables.isEmpty()) {
+            cache.put(key, generations, result, 1, QueryResultCache.estimateSize(result));
+        }
+        return result;
     }
 
     /**
@@ -818,11 +1177,20 @@ public abstract class SquidDatabase {
      */
     private long insertInternal(Insert insert) {
         CompiledStatement compiled = insert.compile(getCompileContext());
+        boolean hasInListValues = beginInListValues(compiled);
         acquireNonExclusiveLock();
         try {
-            return getDatabase().executeInsert(compiled.sql, compiled.sqlArgs);
+            ISQLiteDatabase db = getDatabase();
+            if (db instanceof ITypedBindingSQLiteDatabase) {
+                return ((ITypedBindingSQLiteDatabase) db).executeInsert(compiled.sql, compiled.sqlArgs,
+                        compiled.sqlArgTypes);
+            }
+            return db.executeInsert(compiled.sql, compiled.sqlArgs);
         } finally {
             releaseNonExclusiveLock();
+            if (hasInListValues) {
+                endInListValues(compiled, true);
+            }
         }
     }
 
@@ -832,13 +1200,7 @@ public abstract class SquidDatabase {
      * @return the number of rows deleted on success, -1 on failure
      */
     private int deleteInternal(Delete delete) {
-        CompiledStatement compiled = delete.compile(getCompileContext());
-        acquireNonExclusiveLock();
-        try {
-            return getDatabase().executeUpdateDelete(compiled.sql, compiled.sqlArgs);
-        } finally {
-            releaseNonExclusiveLock();
-        }
+        return executeUpdateDelete(delete.compile(getCompileContext()));
     }
 
     /**
@@ -847,12 +1209,305 @@ public abstract class SquidDatabase {
      * @return the number of rows updated on success, -1 on failure
      */
     private int updateInternal(Update update) {
-        CompiledStatement compiled = update.compile(getCompileContext());
+        return executeUpdateDelete(update.compile(getCompileContext()));
+    }
+
+    // --- execution of compiled statements, binding arguments by type if the underlying database supports it
+
+    private ICursor rawQuery(CompiledStatement compiled) {
+        acquireNonExclusiveLock();
+        try {
+            ISQLiteDatabase reader = acquireReaderConnection();
+            if (reader != null) {
+                try {
+                    return fillCursor(rawQuery(reader, compiled));
+                } finally {
+                    releaseReaderConnection(reader);
+                }
+            }
+            return rawQuery(getDatabase(), compiled);
+        } finally {
+            releaseNonExclusiveLock();
+        }
+    }
+
+    private static ICursor rawQuery(ISQLiteDatabase db, CompiledStatement compiled) {
+        if (db instanceof ITypedBindingSQLiteDatabase) {
+            return ((ITypedBindingSQLiteDatabase) db).rawQuery(compiled.sql, compiled.sqlArgs, compiled.sqlArgTypes);
+        }
+        return db.rawQuery(compiled.sql, compiled.sqlArgs);
+    }
+
+    private String simpleQueryForString(CompiledStatement compiled) {
+        boolean hasInListValues = beginInListValues(compiled);
         acquireNonExclusiveLock();
         try {
-            return getDatabase().executeUpdateDelete(compiled.sql, compiled.sqlArgs);
+            ISQLiteDatabase reader = acquireReaderConnection();
+            if (reader != null) {
+                try {
+                    return simpleQueryForString(reader, compiled);
+                } finally {
+                    releaseReaderConnection(reader);
+                }
+            }
+            return simpleQueryForString(getDatabase(), compiled);
         } finally {
             releaseNonExclusiveLock();
+            if (hasInListValues) {
+                endInListValues(compiled, true);
+            }
+        }
+    }
+
+    private static String simpleQueryForString(ISQLiteDatabase db, CompiledStatement compiled) {
+        if (db instanceof ITypedBindingSQLiteDatabase) {
+            return ((ITypedBindingSQLiteDatabase) db).simpleQueryForString(compiled.sql, compiled.sqlArgs,
+                    compiled.sqlArgTypes);
+        }
+        return db.simpleQueryForString(compiled.sql, compiled.sqlArgs);
+    }
+
+    private long simpleQueryForLong(CompiledStatement compiled) {
+        boolean hasInListValues = beginInListValues(compiled);
+        acquireNonExclusiveLock();
+        try {
+            ISQLiteDatabase reader = acquireReaderConnection();
+            if (reader != null) {
+                try {
+                    return simpleQueryForLong(reader, compiled);
+                } finally {
+                    releaseReaderConnection(reader);
+                }
+            }
+            return simpleQueryForLong(getDatabase(), compiled);
+        } finally {
+            releaseNonExclusiveLock();
+            if (hasInListValues) {
+                endInListValues(compiled, true);
+            }
+        }
+    }
+
+    private static long simpleQueryForLong(ISQLiteDatabase db, CompiledStatement compiled) {
+        if (db instanceof ITypedBindingSQLiteDatabase) {
+            return ((ITypedBindingSQLiteDatabase) db).simpleQueryForLong(compiled.sql, compiled.sqlArgs,
+                    compiled.sqlArgTypes);
+        }
+        return db.simpleQueryForLong(compiled.sql, compiled.sqlArgs);
+    }
+
+    private int executeUpdateDelete(CompiledStatement compiled) {
+        boolean hasInListValues = beginInListValues(compiled);
+        acquireNonExclusiveLock();
+        try {
+            ISQLiteDatabase db = getDatabase();
+            if (db instanceof ITypedBindingSQLiteDatabase) {
+                return ((ITypedBindingSQLiteDatabase) db).executeUpdateDelete(compiled.sql, compiled.sqlArgs,
+                        compiled.sqlArgTypes);
+            }
+            return db.executeUpdateDelete(compiled.sql, compiled.sqlArgs);
+        } finally {
+            releaseNonExclusiveLock();
+            if (hasInListValues) {
+                endInListValues(compiled, true);
+            }
+        }
+    }
+
+    // --- reader connection pool; see setReaderConnectionPoolEnabled(boolean, int, long)
+
+    /**
+     * @return a reader connection to run a read-only statement on, or null if the statement should run on the main
+     * connection. Must be called while holding the non-exclusive lock, and the connection must be released with
+     * {@link #releaseReaderConnection(ISQLiteDatabase)}.
+     */
+    private ISQLiteDatabase acquireReaderConnection() {
+        if (readerConnectionPoolMaxConnections <= 0 || attachedDatabaseCount > 0 || inTransaction()) {
+            return null;
+        }
+        ISQLiteDatabase mainConnection = getDatabase();
+        ReaderConnectionPool pool;
+        synchronized (databaseInstanceLock) {
+            pool = readerConnectionPool;
+            if (pool == null && !readerConnectionPoolUnavailable && readerConnectionPoolMaxConnections > 0) {
+                pool = createReaderConnectionPoolLocked(mainConnection);
+                readerConnectionPool = pool;
+                readerConnectionPoolUnavailable = pool == null;
+            }
+        }
+        return pool == null ? null : pool.acquire();
+    }
+
+    private ReaderConnectionPool createReaderConnectionPoolLocked(ISQLiteDatabase mainConnection) {
+        ISQLiteOpenHelper openHelper = getOpenHelper();
+        if (!(openHelper instanceof ISQLiteReaderOpenHelper)) {
+            Logger.w(Logger.LOG_TAG, "Reader connection pool not supported by " + openHelper.getClass().getName());
+            return null;
+        }
+        // Without write-ahead logging, readers would block and be blocked by writers just as they do now
+        if (!"wal".equalsIgnoreCase(mainConnection.simpleQueryForString("PRAGMA journal_mode", null))) {
+            Logger.w(Logger.LOG_TAG, "Reader connection pool requires write-ahead logging, not using it for database "
+                    + getName());
+            return null;
+        }
+        return new ReaderConnectionPool((ISQLiteReaderOpenHelper) openHelper, readerConnectionPoolMaxConnections,
+                readerConnectionPoolMaxWaitMillis, readerConnectionAcquisitions, readerConnectionWaitNanos,
+                readerConnectionTimeouts);
+    }
+
+    private void releaseReaderConnection(ISQLiteDatabase reader) {
+        ReaderConnectionPool pool;
+        synchronized (databaseInstanceLock) {
+            pool = readerConnectionPool;
+        }
+        if (pool != null) {
+            pool.release(reader); // Closes the connection if it came from a pool that has since been replaced
+        } else {
+            reader.close(); // The pool was closed or disabled while the connection was in use
+        }
+    }
+
+    private void closeReaderConnectionPoolLocked() {
+        if (readerConnectionPool != null) {
+            readerConnectionPool.close();
+        }
+        readerConnectionPool = null;
+        readerConnectionPoolUnavailable = false;
+    }
+
+    // Cursors from reader connections are filled before the connection is returned to the pool. Platforms whose
+    // cursors read rows lazily re-run the query as needed, which is safe since each connection serializes its own use
+    private static ICursor fillCursor(ICursor cursor) {
+        try {
+            cursor.getCount();
+            return cursor;
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    // --- IN lists loaded into a TEMP table; see CompileContext.Builder#setUseTempTableForLargeInLists(boolean)
+
+    private static final String CREATE_IN_LIST_VALUES_TABLE = "CREATE TEMP TABLE IF NOT EXISTS "
+            + SqlStatement.IN_LIST_VALUES_TABLE + " (" + SqlStatement.IN_LIST_ID_COLUMN + " INTEGER NOT NULL, "
+            + SqlStatement.IN_LIST_VALUE_COLUMN + ")";
+    private static final String CREATE_IN_LIST_VALUES_INDEX = "CREATE INDEX IF NOT EXISTS temp."
+            + SqlStatement.IN_LIST_VALUES_TABLE + "_" + SqlStatement.IN_LIST_ID_COLUMN + " ON "
+            + SqlStatement.IN_LIST_VALUES_TABLE + " (" + SqlStatement.IN_LIST_ID_COLUMN + ")";
+    private static final String INSERT_IN_LIST_VALUE = "INSERT INTO temp." + SqlStatement.IN_LIST_VALUES_TABLE
+            + " (" + SqlStatement.IN_LIST_ID_COLUMN + ", " + SqlStatement.IN_LIST_VALUE_COLUMN + ") VALUES (?, ?)";
+    private static final String DELETE_IN_LIST_VALUES = "DELETE FROM temp." + SqlStatement.IN_LIST_VALUES_TABLE
+            + " WHERE " + SqlStatement.IN_LIST_ID_COLUMN + " = ?";
+
+    /**
+     * If the compiled statement has IN list values, begins a transaction and loads the values into the TEMP table.
+     * The transaction ensures that the statement runs on the same connection the values were loaded on, rather than
+     * on an Android secondary connection or a pooled reader connection. Neither the Android nor the iOS database APIs
+     * offer deferred transactions, so this is a non-exclusive (BEGIN IMMEDIATE) transaction that holds the write lock
+     * on the database even when the statement is a read; see
+     * {@link com.yahoo.squidb.sql.CompileContext.Builder#setUseTempTableForLargeInLists(boolean)}. Callers must call
+     * {@link #endInListValues(CompiledStatement, boolean)} if this method returns true.
+     *
+     * @return true if IN list values were loaded
+     */
+    private boolean beginInListValues(CompiledStatement compiled) {
+        if (compiled.inListValues == null) {
+            return false;
+        }
+        beginTransactionNonExclusive();
+        boolean loaded = false;
+        try {
+            ISQLiteDatabase db = getDatabase();
+            db.execSQL(CREATE_IN_LIST_VALUES_TABLE);
+            db.execSQL(CREATE_IN_LIST_VALUES_INDEX);
+            ISQLitePreparedStatement insert = db.prepareStatement(INSERT_IN_LIST_VALUE);
+            try {
+                for (CompiledStatement.InListValues list : compiled.inListValues) {
+                    for (int i = 0; i < list.values.length; i++) {
+                        insert.bindLong(1, list.listId);
+                        bindTypedValue(insert, 2, list.values[i], list.valueTypes[i]);
+                        insert.executeInsert();
+                    }
+                }
+            } finally {
+                insert.close();
+            }
+            loaded = true;
+        } finally {
+            if (!loaded) {
+                endInListValues(compiled, true);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ends the transaction begun by {@link #beginInListValues(CompiledStatement)}, optionally deleting the values. The
+     * transaction is always marked successful; a failure of the statement itself shouldn't roll back a transaction the
+     * caller may be in.
+     */
+    private void endInListValues(CompiledStatement compiled, boolean deleteValues) {
+        try {
+            if (deleteValues) {
+                deleteInListValues(getDatabase(), compiled);
+            }
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+    }
+
+    private static void deleteInListValues(ISQLiteDatabase db, CompiledStatement compiled) {
+        for (CompiledStatement.InListValues list : compiled.inListValues) {
+            db.execSQL(DELETE_IN_LIST_VALUES, new Object[]{list.listId});
+        }
+    }
+
+    // Deletes the IN list values of a query when its cursor is closed, unless the database has been closed or
+    // reopened since (which drops the TEMP table anyway)
+    private Runnable deleteInListValuesAction(final CompiledStatement compiled) {
+        final ISQLiteDatabase loadedDatabase = getDatabase();
+        return new Runnable() {
+            @Override
+            public void run() {
+                acquireNonExclusiveLock();
+                try {
+                    synchronized (databaseInstanceLock) {
+                        if (database != loadedDatabase || !loadedDatabase.isOpen()) {
+                            return;
+                        }
+                    }
+                    deleteInListValues(loadedDatabase, compiled);
+                } catch (RuntimeException e) {
+                    onError("Failed to delete IN list values for query: " + compiled.sql, e);
+                } finally {
+                    releaseNonExclusiveLock();
+                }
+            }
+        };
+    }
+
+    private static void bindTypedValue(ISQLitePreparedStatement statement, int index, Object value, int type) {
+        switch (type) {
+            case CompiledStatement.ARG_TYPE_NULL:
+                statement.bindNull(index);
+                break;
+            case CompiledStatement.ARG_TYPE_LONG:
+                statement.bindLong(index, ((Number) value).longValue());
+                break;
+            case CompiledStatement.ARG_TYPE_DOUBLE:
+                statement.bindDouble(index, ((Number) value).doubleValue());
+                break;
+            case CompiledStatement.ARG_TYPE_BOOLEAN:
+                statement.bindLong(index, (Boolean) value ? 1 : 0);
+                break;
+            case CompiledStatement.ARG_TYPE_BLOB:
+                statement.bindBlob(index, (byte[]) value);
+                break;
+            default:
+                statement.bindString(index, value.toString());
+                break;
         }
     }
 
@@ -888,7 +1543,7 @@ public abstract class SquidDatabase {
         acquireNonExclusiveLock();
         try {
             getDatabase().beginTransaction();
-            transactionSuccessState.get().beginTransaction();
+            transactionContext.get().beginTransaction();
         } catch (RuntimeException e) {
             // Only release lock if begin xact was not successful
             releaseNonExclusiveLock();
@@ -928,7 +1583,7 @@ public abstract class SquidDatabase {
         acquireNonExclusiveLock();
         try {
             getDatabase().beginTransactionNonExclusive();
-            transactionSuccessState.get().beginTransaction();
+            transactionContext.get().beginTransaction();
         } catch (RuntimeException e) {
             // Only release lock if begin xact was not successful
             releaseNonExclusiveLock();
@@ -967,7 +1622,7 @@ public abstract class SquidDatabase {
         acquireNonExclusiveLock();
         try {
             getDatabase().beginTransactionWithListener(listener);
-            transactionSuccessState.get().beginTransaction();
+            transactionContext.get().beginTransaction();
         } catch (RuntimeException e) {
             // Only release lock if begin xact was not successful
             releaseNonExclusiveLock();
@@ -1008,7 +1663,7 @@ public abstract class SquidDatabase {
         acquireNonExclusiveLock();
         try {
             getDatabase().beginTransactionWithListenerNonExclusive(listener);
-            transactionSuccessState.get().beginTransaction();
+            transactionContext.get().beginTransaction();
         } catch (RuntimeException e) {
             // Only release lock if begin xact was not successful
             releaseNonExclusiveLock();
@@ -1023,7 +1678,15 @@ public abstract class SquidDatabase {
      */
     public void setTransactionSuccessful() {
         getDatabase().setTransactionSuccessful();
-        transactionSuccessState.get().setTransactionSuccessful();
+        transactionContext.get().setTransactionSuccessful();
+    }
+
+    /**
+     * @return false if a nested transaction on the current thread has ended without being marked successful. When
+     * that happens, the outermost transaction is rolled back when it ends, even if it was marked successful.
+     */
+    boolean isOuterTransactionSuccessful() {
+        return transactionContext.get().isOuterTransactionSuccessful();
     }
 
     /**
@@ -1042,66 +1705,32 @@ public abstract class SquidDatabase {
      * @see ISQLiteDatabase#endTransaction()
      */
     public void endTransaction() {
-        TransactionSuccessState successState = transactionSuccessState.get();
+        TransactionContext context = transactionContext.get();
         try {
             getDatabase().endTransaction();
         } catch (RuntimeException e) {
-            successState.unsetTransactionSuccessful();
+            context.unsetTransactionSuccessful();
             throw e;
         } finally {
             releaseNonExclusiveLock();
 
-            successState.endTransaction();
-            if (!successState.inTransaction()) {
-                flushAccumulatedNotifications(successState.outerTransactionSuccess);
-                successState.reset();
-            }
-        }
-    }
-
-    // Tracks nested transaction success or failure state. If any
-    // nested transaction fails, the entire outer transaction
-    // is also considered to have failed.
-    private static class TransactionSuccessState {
-
-        Deque<Boolean> nestedSuccessStack = new LinkedList<>();
-        boolean outerTransactionSuccess = true;
-
-        private void beginTransaction() {
-            nestedSuccessStack.push(false);
-        }
-
-        private boolean inTransaction() {
-            return nestedSuccessStack.size() > 0;
-        }
-
-        private void setTransactionSuccessful() {
-            nestedSuccessStack.pop();
-            nestedSuccessStack.push(true);
-        }
-
-        // For when endTransaction throws
-        private void unsetTransactionSuccessful() {
-            nestedSuccessStack.pop();
-            nestedSuccessStack.push(false);
-        }
-
-        private void endTransaction() {
-            Boolean mostRecentTransactionSuccess = nestedSuccessStack.pop();
-            if (!mostRecentTransactionSuccess) {
-                outerTransactionSuccess = false;
+            context.endTransaction();
+            if (!context.inTransaction()) {
+                QueryResultCache cache = queryResultCache;
+                if (cache != null) {
+                    cache.onTransactionEnded(context);
+                }
+                flushAccumulatedNotifications(context, context.isOuterTransactionSuccessful());
+                context.resetTransaction();
             }
         }
-
-        private void reset() {
-            nestedSuccessStack.clear();
-            outerTransactionSuccess = true;
-        }
     }
 
-    private ThreadLocal<TransactionSuccessState> transactionSuccessState = new ThreadLocal<TransactionSuccessState>() {
-        protected TransactionSuccessState initialValue() {
-            return new TransactionSuccessState();
+    // Per-thread transaction state, along with the other state this database keeps for each thread. Looked up once per
+    // operation; see TransactionContext
+    private final ThreadLocal<TransactionContext> transactionContext = new ThreadLocal<TransactionContext>() {
+        protected TransactionContext initialValue() {
+            return new TransactionContext();
         }
     };
 
@@ -1277,6 +1906,13 @@ public abstract class SquidDatabase {
             SquidDatabase.this.onConfigure(db);
         }
 
+        /**
+         * Called to configure a connection opened by {@link ISQLiteReaderOpenHelper#openReaderConnection()}
+         */
+        public void onConfigureReaderConnection(ISQLiteDatabase db) {
+            SquidDatabase.this.onConfigure(db);
+        }
+
         public void onOpen(ISQLiteDatabase db) {
             setDatabase(db);
             SquidDatabase.this.onOpen(db);
@@ -1284,13 +1920,20 @@ public abstract class SquidDatabase {
     }
 
     private void setDatabase(ISQLiteDatabase db) {
+        // The schema may have been changed while opening the database, e.g. by onUpgrade
+        clearValidatedSql();
         synchronized (databaseInstanceLock) {
             // If we're already holding a reference to the same object, don't need to update or recalculate the version
             if (database != null && db != null && db.getWrappedObject() == database.getWrappedObject()) {
                 return;
             }
             sqliteVersion = db != null ? readSqliteVersionLocked(db) : null;
+            compileContext = null;
             database = db;
+            QueryResultCache cache = queryResultCache;
+            if (cache != null) {
+                cache.invalidateAll();
+            }
         }
     }
 
@@ -1445,7 +2088,20 @@ public abstract class SquidDatabase {
      */
     public boolean tryExecStatement(SqlStatement statement) {
         CompiledStatement compiled = statement.compile(getCompileContext());
-        return tryExecSql(compiled.sql, compiled.sqlArgs);
+        boolean hasInListValues;
+        try {
+            hasInListValues = beginInListValues(compiled);
+        } catch (RuntimeException e) {
+            onError("Failed to load IN list values for statement: " + compiled.sql, e);
+            return false;
+        }
+        try {
+            return tryExecSql(compiled.sql, compiled.sqlArgs);
+        } finally {
+            if (hasInListValues) {
+                endInListValues(compiled, true);
+            }
+        }
     }
 
     /**
@@ -1459,6 +2115,7 @@ public abstract class SquidDatabase {
         acquireNonExclusiveLock();
         try {
             getDatabase().execSQL(sql);
+            onRawStatementExecuted();
             return true;
         } catch (RuntimeException e) {
             onError("Failed to execute statement: " + sql, e);
@@ -1479,6 +2136,7 @@ public abstract class SquidDatabase {
         acquireNonExclusiveLock();
         try {
             getDatabase().execSQL(sql);
+            onRawStatementExecuted();
         } finally {
             releaseNonExclusiveLock();
         }
@@ -1497,6 +2155,7 @@ public abstract class SquidDatabase {
         acquireNonExclusiveLock();
         try {
             getDatabase().execSQL(sql, bindArgs);
+            onRawStatementExecuted();
             return true;
         } catch (RuntimeException e) {
             onError("Failed to execute statement: " + sql, e);
@@ -1518,6 +2177,7 @@ public abstract class SquidDatabase {
         acquireNonExclusiveLock();
         try {
             getDatabase().execSQL(sql, bindArgs);
+            onRawStatementExecuted();
         } finally {
             releaseNonExclusiveLock();
         }
@@ -1548,11 +2208,22 @@ public abstract class SquidDatabase {
      * {@link Insert}, {@link Update}, and {@link Delete}. If necessary, users can customize the returned
      * CompileContext object by overriding {@link #buildCompileContext(CompileContext.Builder)} to e.g. specify a
      * different implementation of {@link com.yahoo.squidb.sql.ArgumentResolver} to use.
+     * <p>
+     * The same CompileContext instance is returned until the database is closed or reopened, which allows statements
+     * to reuse their compiled SQL across calls. The returned object should therefore not be modified; use
+     * {@link #buildCompileContext(CompileContext.Builder)} to set extras instead.
      */
     public final CompileContext getCompileContext() {
-        CompileContext.Builder builder = new CompileContext.Builder(getSqliteVersion());
-        buildCompileContext(builder);
-        return builder.build();
+        VersionCode version = getSqliteVersion();
+        CompileContext toReturn = compileContext;
+        // Checking the version guards against publishing a context built for a database that has since been reopened
+        if (toReturn == null || toReturn.getVersionCode() != version) {
+            CompileContext.Builder builder = new CompileContext.Builder(version);
+            buildCompileContext(builder);
+            toReturn = builder.build();
+            compileContext = toReturn;
+        }
+        return toReturn;
     }
 
     /**
@@ -1562,11 +2233,21 @@ public abstract class SquidDatabase {
      *
      * @param builder a builder for a {@link CompileContext} object to be returned by {@link #getCompileContext()}
      * @see #getCompileContext()
+     * @see #invalidateCompileContext()
      */
     protected void buildCompileContext(CompileContext.Builder builder) {
         // Subclasses can override to change the basic parameters of the CompileContext
     }
 
+    /**
+     * Discard the CompileContext returned by {@link #getCompileContext()}, so that a new one is built the next time it
+     * is needed. Subclasses whose {@link #buildCompileContext(CompileContext.Builder)} depends on state that can change
+     * while the database is open should call this whenever that state changes.
+     */
+    protected final void invalidateCompileContext() {
+        compileContext = null;
+    }
+
     /**
      * Prepares a low-level SQLite statement, represented as an instance of {@link ISQLitePreparedStatement}. The
      * statement should either be a non-query (e.g. an INSERT or UPDATE) or a query that returns only a 1x1 result.
@@ -1695,12 +2376,138 @@ public abstract class SquidDatabase {
     public <TYPE extends AbstractModel> SquidCursor<TYPE> query(Class<TYPE> modelClass, Query query) {
         query = inferTableForQuery(modelClass, query);
         CompiledStatement compiled = query.compile(getCompileContext());
-        if (compiled.needsValidation) {
-            String validateSql = query.sqlForValidation(getCompileContext());
-            ensureSqlCompiles(validateSql); // throws if the statement fails to compile
+        boolean hasInListValues = beginInListValues(compiled);
+        boolean deleteInListValues = true;
+        try {
+            if (compiled.needsValidation) {
+                String validateSql = query.sqlForValidation(getCompileContext());
+                ensureSqlCompiles(validateSql); // throws if the statement fails to compile
+            }
+            ICursor cursor = rawQuery(compiled);
+            SquidCursor<TYPE> result = new SquidCursor<>(cursor, modelClass, query.getFields());
+            if (hasInListValues) {
+                try {
+                    cursor.getCount(); // Runs the query while the transaction pins the connection holding the values
+                } catch (RuntimeException e) {
+                    cursor.close();
+                    throw e;
+                }
+                // The cursor may read more rows later, so keep the values until it is closed
+                result.closeAction = deleteInListValuesAction(compiled);
+                deleteInListValues = false;
+            }
+            return result;
+        } finally {
+            if (hasInListValues) {
+                endInListValues(compiled, deleteInListValues);
+            }
+        }
+    }
+
+    /**
+     * Callback for consuming the models read by {@link #queryForEach(Class, Query, AbstractModel, ModelConsumer)}
+     */
+    public interface ModelConsumer<TYPE extends AbstractModel> {
+
+        /**
+         * Called once for each row in the query results
+         *
+         * @param model a model containing the values of the current row
+         */
+        void accept(TYPE model);
+    }
+
+    /**
+     * Query the database and read all the results into a list of models. This is equivalent to iterating over the
+     * cursor returned by {@link #query(Class, Query)} and reading each row into a new model, but the cursor's column
+     * indexes and property types are only resolved once for the whole query.
+     *
+     * @param modelClass the type of model to read the results into. If the query does not contain a FROM clause, the
+     * table or view corresponding to this model class will be used.
+     * @param query the query to execute
+     * @return a list of models containing the query results, one per row
+     * @see #setQueryResultCacheEnabled(boolean, int, long)
+     */
+    public <TYPE extends AbstractModel> List<TYPE> queryForList(Class<TYPE> modelClass, Query query) {
+        QueryResultCache cache = getQueryResultCache(query);
+        if (cache == null) {
+            return readList(modelClass, query);
+        }
+        query = inferTableForQuery(modelClass, query);
+        CompiledStatement compiled = query.compile(getCompileContext());
+        QueryResultCache.Key key = new QueryResultCache.Key(modelClass, query, compiled.sqlArgs);
+        QueryResultCache.Entry cached = cache.get(key);
+        if (cached != null) {
+            @SuppressWarnings("unchecked")
+            List<TYPE> cachedModels = (List<TYPE>) cached.result;
+            return cloneModels(cachedModels);
+        }
+        Set<SqlTable<?>> tables = query.getReferencedTables();
+        QueryResultCache.Generations generations = cache.getGenerations(tables);
+        List<TYPE> result = readList(modelClass, query);
+        if (!tables.isEmpty()) {
+            // Callers may modify the models they are given, so the cache keeps its own copies
+            cache.put(key, generations, cloneModels(result), result.size(), QueryResultCache.estimateSize(result));
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <TYPE extends AbstractModel> List<TYPE> cloneModels(List<TYPE> models) {
+        List<TYPE> result = new ArrayList<>(models.size());
+        for (TYPE model : models) {
+            result.add((TYPE) model.clone());
+        }
+        return result;
+    }
+
+    private <TYPE extends AbstractModel> List<TYPE> readList(Class<TYPE> modelClass, Query query) {
+        SquidCursor<TYPE> cursor = query(modelClass, query);
+        try {
+            List<TYPE> result = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                TYPE model = modelClass.newInstance();
+                model.readPropertiesFromCursor(cursor);
+                result.add(model);
+            }
+            return result;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Query the database and pass each row of the results to the given {@link ModelConsumer}. If reusableModel is not
+     * null, each row is read into that same model instance rather than a new one, so consumers that need to hold on
+     * to a model after {@link ModelConsumer#accept(AbstractModel) accept} returns should copy it with
+     * {@link AbstractModel#clone()}. Reusing a model avoids allocating a model and its values storage per row.
+     *
+     * @param modelClass the type of model to read the results into. If the query does not contain a FROM clause, the
+     * table or view corresponding to this model class will be used.
+     * @param query the query to execute
+     * @param reusableModel a model to read every row into, or null to read each row into a new model
+     * @param consumer the consumer to pass each model to
+     * @return the number of rows read
+     */
+    public <TYPE extends AbstractModel> int queryForEach(Class<TYPE> modelClass, Query query, TYPE reusableModel,
+            ModelConsumer<TYPE> consumer) {
+        SquidCursor<TYPE> cursor = query(modelClass, query);
+        try {
+            int count = 0;
+            while (cursor.moveToNext()) {
+                TYPE model = reusableModel != null ? reusableModel : modelClass.newInstance();
+                model.readPropertiesFromCursor(cursor);
+                consumer.accept(model);
+                count++;
+            }
+            return count;
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        } finally {
+            cursor.close();
         }
-        ICursor cursor = rawQuery(compiled.sql, compiled.sqlArgs);
-        return new SquidCursor<>(cursor, modelClass, query.getFields());
     }
 
     // If the query does not have a from clause, look up the table by model object and add it to the query. May
@@ -1719,12 +2526,31 @@ public abstract class SquidDatabase {
 
     // For use only when validating queries
     private void ensureSqlCompiles(String sql) {
+        int generation;
+        synchronized (validatedSql) {
+            if (validatedSql.containsKey(sql)) {
+                return;
+            }
+            generation = validatedSqlGeneration;
+        }
         acquireNonExclusiveLock();
         try {
             getDatabase().ensureSqlCompiles(sql);
         } finally {
             releaseNonExclusiveLock();
         }
+        synchronized (validatedSql) {
+            if (generation == validatedSqlGeneration) {
+                validatedSql.put(sql, Boolean.TRUE);
+            }
+        }
+    }
+
+    private void clearValidatedSql() {
+        synchronized (validatedSql) {
+            validatedSqlGeneration++;
+            validatedSql.clear();
+        }
     }
 
     /**
@@ -1790,9 +2616,31 @@ public abstract class SquidDatabase {
      * @param id the row ID of the record
      * @return true if delete was successful
      */
-    public boolean delete(Class<? extends TableModel> modelClass, long id) {
+    public boolean delete(final Class<? extends TableModel> modelClass, final long id) {
+        GroupCommitter groupCommitter = getGroupCommitterForWrite();
+        if (groupCommitter != null) {
+            return groupCommitter.run(new GroupCommitter.Write<Boolean>() {
+                @Override
+                public Boolean run() {
+                    return delete(modelClass, id);
+                }
+            });
+        }
         Table table = getTable(modelClass);
-        int rowsUpdated = deleteInternal(Delete.from(table).where(table.getRowIdProperty().eq(id)));
+        int rowsUpdated;
+        if (preparedStatementCacheEnabled) {
+            acquireNonExclusiveLock();
+            try {
+                ISQLitePreparedStatement preparedDelete =
+                        getPreparedStatementCache(transactionContext.get()).getPreparedDeleteById(this, table);
+                preparedDelete.bindLong(1, id);
+                rowsUpdated = preparedDelete.executeUpdateDelete();
+            } finally {
+                releaseNonExclusiveLock();
+            }
+        } else {
+            rowsUpdated = deleteInternal(Delete.from(table).where(table.getRowIdProperty().eq(id)));
+        }
         if (rowsUpdated > 0) {
             notifyForTable(DataChangedNotifier.DBOperation.DELETE, null, table, id);
         }
@@ -1806,7 +2654,16 @@ public abstract class SquidDatabase {
      * @param where the Criterion to match. Note: passing null will delete all rows!
      * @return the number of deleted rows
      */
-    public int deleteWhere(Class<? extends TableModel> modelClass, Criterion where) {
+    public int deleteWhere(final Class<? extends TableModel> modelClass, final Criterion where) {
+        GroupCommitter groupCommitter = getGroupCommitterForWrite();
+        if (groupCommitter != null) {
+            return groupCommitter.run(new GroupCommitter.Write<Integer>() {
+                @Override
+                public Integer run() {
+                    return deleteWhere(modelClass, where);
+                }
+            });
+        }
         Table table = getTable(modelClass);
         Delete delete = Delete.from(table);
         if (where != null) {
@@ -1839,7 +2696,16 @@ public abstract class SquidDatabase {
      * @param delete the statement to execute
      * @return the number of rows deleted on success, -1 on failure
      */
-    public int delete(Delete delete) {
+    public int delete(final Delete delete) {
+        GroupCommitter groupCommitter = getGroupCommitterForWrite();
+        if (groupCommitter != null) {
+            return groupCommitter.run(new GroupCommitter.Write<Integer>() {
+                @Override
+                public Integer run() {
+                    return delete(delete);
+                }
+            });
+        }
         int result = deleteInternal(delete);
         if (result > 0) {
             notifyForTable(DataChangedNotifier.DBOperation.DELETE, null, delete.getTable(), TableModel.NO_ID);
@@ -1888,8 +2754,17 @@ public abstract class SquidDatabase {
      * @return the number of updated rows
      * @see #update(Criterion, TableModel)
      */
-    public int updateWithOnConflict(Criterion where, TableModel template,
-            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+    public int updateWithOnConflict(final Criterion where, final TableModel template,
+            final TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        GroupCommitter groupCommitter = getGroupCommitterForWrite();
+        if (groupCommitter != null) {
+            return groupCommitter.run(new GroupCommitter.Write<Integer>() {
+                @Override
+                public Integer run() {
+                    return updateWithOnConflict(where, template, conflictAlgorithm);
+                }
+            });
+        }
         Class<? extends TableModel> modelClass = template.getClass();
         Table table = getTable(modelClass);
         Update update = Update.table(table).fromTemplate(template);
@@ -1930,7 +2805,16 @@ public abstract class SquidDatabase {
      * @param update statement to execute
      * @return the number of rows updated on success, -1 on failure
      */
-    public int update(Update update) {
+    public int update(final Update update) {
+        GroupCommitter groupCommitter = getGroupCommitterForWrite();
+        if (groupCommitter != null) {
+            return groupCommitter.run(new GroupCommitter.Write<Integer>() {
+                @Override
+                public Integer run() {
+                    return update(update);
+                }
+            });
+        }
         int result = updateInternal(update);
         if (result > 0) {
             notifyForTable(DataChangedNotifier.DBOperation.UPDATE, null, update.getTable(), TableModel.NO_ID);
@@ -1960,7 +2844,26 @@ public abstract class SquidDatabase {
      * @return true if current the model data is stored in the database
      * @see #persist(TableModel)
      */
-    public boolean persistWithOnConflict(TableModel item, TableStatement.ConflictAlgorithm conflictAlgorithm) {
+    public boolean persistWithOnConflict(final TableModel item,
+            final TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        GroupCommitter groupCommitter = getGroupCommitterForWrite();
+        if (groupCommitter != null) {
+            return groupCommitter.run(new GroupCommitter.Write<Boolean>() {
+                private AbstractModel stateBeforePersist;
+
+                @Override
+                public Boolean run() {
+                    // If the shared transaction this write ran in was rolled back, the write is run again. The model
+                    // must be restored first, since the rolled back persist marked it as saved.
+                    if (stateBeforePersist == null) {
+                        stateBeforePersist = item.clone();
+                    } else {
+                        item.restoreValuesFrom(stateBeforePersist);
+                    }
+                    return persistWithOnConflict(item, conflictAlgorithm);
+                }
+            });
+        }
         if (!item.isSaved()) {
             return insertRow(item, conflictAlgorithm);
         }
@@ -1970,6 +2873,184 @@ public abstract class SquidDatabase {
         return updateRow(item, conflictAlgorithm);
     }
 
+    /**
+     * Save a collection of models to the database in a single transaction. Each model is saved as if by
+     * {@link #persist(TableModel)}, but consecutive unsaved models of the same table are inserted together using
+     * multi-row INSERT statements, and data changed notifications for the whole collection are sent once, when the
+     * transaction completes.
+     * <p>
+     * Multi-row inserts assign row IDs to the new rows consecutively, which is SQLite's standard behavior for rows
+     * inserted without an explicit ID. If your tables use triggers that insert into the same table, use
+     * {@link #persist(TableModel)} instead.
+     *
+     * @param items the models to save
+     * @return true if all the models are stored in the database
+     * @see #persistAllWithOnConflict(Collection, TableStatement.ConflictAlgorithm)
+     */
+    public boolean persistAll(Collection<? extends TableModel> items) {
+        return persistAllWithOnConflict(items, null);
+    }
+
+    /**
+     * Same as {@link #persistAll(Collection)} with the ability to specify a ConflictAlgorithm for handling constraint
+     * violations. Multi-row inserts are only used with the default, ABORT, FAIL, or ROLLBACK conflict algorithms,
+     * since the others can leave rows of a multi-row insert without an assigned row ID.
+     *
+     * @param items the models to save
+     * @param conflictAlgorithm the conflict algorithm to use
+     * @return true if all the models are stored in the database
+     */
+    public boolean persistAllWithOnConflict(Collection<? extends TableModel> items,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        if (items.isEmpty()) {
+            return true;
+        }
+        boolean result = true;
+        PreparedStatementCache statementCache = preparedStatementCacheEnabled
+                ? getPreparedStatementCache(transactionContext.get())
+                : new PreparedStatementCache(new HashSet<ISQLitePreparedStatement>(), new AtomicLong(),
+                new AtomicLong());
+        beginTransaction();
+        try {
+            List<TableModel> pendingInserts = new ArrayList<>();
+            Table pendingTable = null;
+            int maxRowsPerInsert = 0;
+            for (TableModel item : items) {
+                if (item.isSaved()) {
+                    result &= insertBatch(statementCache, pendingTable, pendingInserts, conflictAlgorithm);
+                    result &= persistWithOnConflict(item, conflictAlgorithm);
+                    continue;
+                }
+                item.checkNotFrozen();
+                Table table = getTable(item.getClass());
+                if (table != pendingTable || pendingInserts.size() == maxRowsPerInsert) {
+                    result &= insertBatch(statementCache, pendingTable, pendingInserts, conflictAlgorithm);
+                    pendingTable = table;
+                    maxRowsPerInsert = maxRowsPerInsert(table, conflictAlgorithm);
+                }
+                pendingInserts.add(item);
+            }
+            result &= insertBatch(statementCache, pendingTable, pendingInserts, conflictAlgorithm);
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+            if (!preparedStatementCacheEnabled) {
+                statementCache.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Save a collection of models to the database as new rows in a single transaction. Like
+     * {@link #createNew(TableModel)}, this method always inserts new rows and sets the ID of each model to the
+     * corresponding row ID. See {@link #persistAll(Collection)} for details about how the rows are inserted.
+     *
+     * @param items the models to insert
+     * @return true if all the models were inserted
+     */
+    public boolean insertAll(Collection<? extends TableModel> items) {
+        for (TableModel item : items) {
+            item.setRowId(TableModel.NO_ID);
+        }
+        return persistAllWithOnConflict(items, null);
+    }
+
+    private int maxRowsPerInsert(Table table, TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        if (conflictAlgorithm != null && conflictAlgorithm != TableStatement.ConflictAlgorithm.NONE
+                && conflictAlgorithm != TableStatement.ConflictAlgorithm.ABORT
+                && conflictAlgorithm != TableStatement.ConflictAlgorithm.FAIL
+                && conflictAlgorithm != TableStatement.ConflictAlgorithm.ROLLBACK) {
+            return 1;
+        }
+        if (getSqliteVersion().isLessThan(Insert.SQLITE_VERSION_MULTI_ROW_INSERT) || declaresOnConflictIgnore(table)) {
+            return 1;
+        }
+        // Versions of SQLite before 3.8.8 also limit multi-row VALUES to SQLITE_MAX_COMPOUND_SELECT (500) rows
+        return Math.max(1, Math.min(SqlStatement.MAX_VARIABLE_NUMBER / table.getProperties().length, 500));
+    }
+
+    // Rows skipped by ON CONFLICT IGNORE clauses would make a multi-row insert fall back to single-row inserts every
+    // time (see insertBatch), so tables that declare them use single-row inserts to begin with
+    private static boolean declaresOnConflictIgnore(Table table) {
+        if (containsOnConflictIgnore(table.getTableConstraint())) {
+            return true;
+        }
+        for (Property<?> property : table.getProperties()) {
+            if (containsOnConflictIgnore(property.getColumnDefinition())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsOnConflictIgnore(String constraints) {
+        return constraints != null && constraints.toUpperCase().replaceAll("\\s+", " ").contains("ON CONFLICT IGNORE");
+    }
+
+    private static final String INSERT_BATCH_SAVEPOINT = "squidb_insert_batch";
+
+    // Inserts and clears the pending models, which must all be unsaved models of the given table
+    private boolean insertBatch(PreparedStatementCache statementCache, Table table, List<TableModel> items,
+            TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        int rows = items.size();
+        if (rows == 0) {
+            return true;
+        }
+        if (rows == 1) {
+            boolean result = insertRow(items.get(0), conflictAlgorithm);
+            items.clear();
+            return result;
+        }
+
+        long lastRowId;
+        boolean allRowsInserted;
+        acquireNonExclusiveLock();
+        try {
+            ISQLiteDatabase db = getDatabase();
+            ISQLitePreparedStatement preparedStatement =
+                    statementCache.getPreparedMultiRowInsert(this, table, conflictAlgorithm, rows);
+            int columns = table.getProperties().length;
+            for (int i = 0; i < rows; i++) {
+                items.get(i).bindValuesForInsert(table, preparedStatement, 1 + i * columns);
+            }
+            // The models are matched to the consecutive row IDs ending at the last inserted row ID, which is only
+            // correct if every row was inserted. Rows can still be skipped by e.g. triggers that RAISE(IGNORE), in
+            // which case the insert is rolled back and the rows are inserted one at a time instead.
+            db.execSQL("SAVEPOINT " + INSERT_BATCH_SAVEPOINT);
+            lastRowId = preparedStatement.executeInsert();
+            allRowsInserted = db.simpleQueryForLong("SELECT changes()", null) == rows;
+            if (!allRowsInserted) {
+                db.execSQL("ROLLBACK TO " + INSERT_BATCH_SAVEPOINT);
+            }
+            db.execSQL("RELEASE " + INSERT_BATCH_SAVEPOINT);
+        } finally {
+            releaseNonExclusiveLock();
+        }
+
+        if (!allRowsInserted) {
+            boolean result = true;
+            for (TableModel item : items) {
+                result &= insertRow(item, conflictAlgorithm);
+            }
+            items.clear();
+            return result;
+        }
+
+        boolean result = lastRowId > 0;
+        if (result) {
+            long rowId = lastRowId - rows + 1;
+            for (TableModel item : items) {
+                notifyForTable(DataChangedNotifier.DBOperation.INSERT, item, table, rowId);
+                item.setRowId(rowId);
+                item.markSaved();
+                rowId++;
+            }
+        }
+        items.clear();
+        return result;
+    }
+
     /**
      * Save a model to the database. This method always inserts a new row and sets the ID of the model to the
      * corresponding row ID.
@@ -2018,16 +3099,16 @@ public abstract class SquidDatabase {
      * @return true if success, false otherwise
      */
     protected final boolean insertRow(TableModel item, TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        item.checkNotFrozen();
         Class<? extends TableModel> modelClass = item.getClass();
         Table table = getTable(modelClass);
 
         long newRow;
-        if (preparedInsertCacheEnabled) {
+        if (preparedStatementCacheEnabled) {
             acquireNonExclusiveLock();
             try {
-                PreparedInsertCache insertCache = preparedInsertCache.get();
-                ISQLitePreparedStatement preparedStatement =
-                        insertCache.getPreparedInsert(this, table, conflictAlgorithm);
+                ISQLitePreparedStatement preparedStatement = getPreparedStatementCache(transactionContext.get())
+                        .getPreparedInsert(this, table, conflictAlgorithm);
                 item.bindValuesForInsert(table, preparedStatement);
                 newRow = preparedStatement.executeInsert();
             } finally {
@@ -2048,7 +3129,7 @@ public abstract class SquidDatabase {
 
     private long insertRowLegacy(TableModel item, Table table, TableStatement.ConflictAlgorithm conflictAlgorithm) {
         ValuesStorage mergedValues = item.getMergedValues();
-        if (mergedValues.size() == 0) {
+        if (!mergedValues.keySet().iterator().hasNext()) {
             return -1;
         }
         Insert insert = Insert.into(table).fromValues(mergedValues);
@@ -2084,14 +3165,23 @@ public abstract class SquidDatabase {
         if (!item.isSaved()) {
             return false;
         }
+        item.checkNotFrozen();
 
         Class<? extends TableModel> modelClass = item.getClass();
         Table table = getTable(modelClass);
-        Update update = Update.table(table).fromTemplate(item).where(table.getRowIdProperty().eq(item.getRowId()));
-        if (conflictAlgorithm != null) {
-            update.onConflict(conflictAlgorithm);
+        int rowsUpdated = -1;
+        if (preparedStatementCacheEnabled) {
+            rowsUpdated = updateRowPrepared(item, table, conflictAlgorithm);
+        }
+        if (rowsUpdated < 0) {
+            Update update = Update.table(table).fromTemplate(item)
+                    .where(table.getRowIdProperty().eq(item.getRowId()));
+            if (conflictAlgorithm != null) {
+                update.onConflict(conflictAlgorithm);
+            }
+            rowsUpdated = updateInternal(update);
         }
-        boolean result = updateInternal(update) > 0;
+        boolean result = rowsUpdated > 0;
         if (result) {
             notifyForTable(DataChangedNotifier.DBOperation.UPDATE, item, table, item.getRowId());
             item.markSaved();
@@ -2099,6 +3189,23 @@ public abstract class SquidDatabase {
         return result;
     }
 
+    // Returns -1 if the update could not be executed using a cached statement
+    private int updateRowPrepared(TableModel item, Table table, TableStatement.ConflictAlgorithm conflictAlgorithm) {
+        acquireNonExclusiveLock();
+        try {
+            PreparedStatementCache.PreparedUpdate preparedUpdate = getPreparedStatementCache(transactionContext.get())
+                    .getPreparedUpdate(this, table, item, conflictAlgorithm);
+            if (preparedUpdate == null) {
+                return -1;
+            }
+            item.bindValuesForUpdate(preparedUpdate.columns, preparedUpdate.bindIndexes,
+                    preparedUpdate.rowIdBindIndex, preparedUpdate.statement);
+            return preparedUpdate.statement.executeUpdateDelete();
+        } finally {
+            releaseNonExclusiveLock();
+        }
+    }
+
     /**
      * Executes an {@link Insert} statement.
      * <p>
@@ -2109,7 +3216,16 @@ public abstract class SquidDatabase {
      * @param insert the statement to execute
      * @return the row id of the last row inserted on success, 0 on failure
      */
-    public long insert(Insert insert) {
+    public long insert(final Insert insert) {
+        GroupCommitter groupCommitter = getGroupCommitterForWrite();
+        if (groupCommitter != null) {
+            return groupCommitter.run(new GroupCommitter.Write<Long>() {
+                @Override
+                public Long run() {
+                    return insert(insert);
+                }
+            });
+        }
         long result = insertInternal(insert);
         if (result > TableModel.NO_ID) {
             int numInserted = insert.getNumRows();
@@ -2124,6 +3240,16 @@ public abstract class SquidDatabase {
     protected <TYPE extends TableModel> SquidCursor<TYPE> fetchItemById(Class<TYPE> modelClass, long id,
             Property<?>... properties) {
         Table table = getTable(modelClass);
+        if (preparedStatementCacheEnabled) {
+            PreparedStatementCache.PreparedFetch preparedFetch =
+                    getPreparedStatementCache(transactionContext.get()).getPreparedFetchById(this, table, properties);
+            if (preparedFetch != null) {
+                ICursor cursor = rawQuery(preparedFetch.sql, preparedFetch.argsForRowId(id));
+                SquidCursor<TYPE> result = new SquidCursor<>(cursor, modelClass, preparedFetch.fields);
+                result.moveToFirst();
+                return result;
+            }
+        }
         return fetchFirstItem(modelClass, table.getRowIdProperty().eq(id), properties);
     }
 
@@ -2159,13 +3285,7 @@ public abstract class SquidDatabase {
             query.where(criterion);
         }
         query = inferTableForQuery(modelClass, query);
-        CompiledStatement compiled = query.compile(getCompileContext());
-        acquireNonExclusiveLock();
-        try {
-            return (int) getDatabase().simpleQueryForLong(compiled.sql, compiled.sqlArgs);
-        } finally {
-            releaseNonExclusiveLock();
-        }
+        return (int) simpleQueryForLong(query.compile(getCompileContext()));
     }
 
     /**
@@ -2180,19 +3300,18 @@ public abstract class SquidDatabase {
 
     // --- Data change notifications
 
+    private static final DataChangedNotifier<?>[] NO_NOTIFIERS = new DataChangedNotifier<?>[0];
+
+    // The registry is copy-on-write: registering or unregistering (guarded by notifiersLock) builds new arrays and
+    // publishes them through the volatile fields, so notifyForTable can read them on every write without locking.
+    // Tables with no notifiers have no entry in tableNotifiers.
     private final Object notifiersLock = new Object();
-    private boolean dataChangedNotificationsEnabled = true;
-    private List<DataChangedNotifier<?>> globalNotifiers = new ArrayList<>();
-    private Map<SqlTable<?>, List<DataChangedNotifier<?>>> tableNotifiers = new HashMap<>();
+    private volatile boolean dataChangedNotificationsEnabled = true;
+    private volatile DataChangedNotifier<?>[] globalNotifiers = NO_NOTIFIERS;
+    private volatile Map<SqlTable<?>, DataChangedNotifier<?>[]> tableNotifiers = Collections.emptyMap();
 
-    // Using a ThreadLocal makes it easy to have one accumulator set per transaction, since
-    // transactions are also associated with the thread they run on
-    private ThreadLocal<Set<DataChangedNotifier<?>>> notifierAccumulator
-            = new ThreadLocal<Set<DataChangedNotifier<?>>>() {
-        protected Set<DataChangedNotifier<?>> initialValue() {
-            return new HashSet<>();
-        }
-    };
+    private final AtomicLong dataChangedNotificationsAccumulated = new AtomicLong();
+    private final AtomicLong dataChangedNotificationsFlushed = new AtomicLong();
 
     /**
      * Register a {@link DataChangedNotifier} to listen for database changes. The DataChangedNotifier object will be
@@ -2208,16 +3327,15 @@ public abstract class SquidDatabase {
         synchronized (notifiersLock) {
             Collection<SqlTable<?>> tables = notifier.whichTables();
             if (tables == null || tables.isEmpty()) {
-                globalNotifiers.add(notifier);
+                globalNotifiers = withNotifier(globalNotifiers, notifier);
             } else {
+                Map<SqlTable<?>, DataChangedNotifier<?>[]> newTableNotifiers = new HashMap<>(tableNotifiers);
                 for (SqlTable<?> table : tables) {
-                    List<DataChangedNotifier<?>> notifiersForTable = tableNotifiers.get(table);
-                    if (notifiersForTable == null) {
-                        notifiersForTable = new ArrayList<>();
-                        tableNotifiers.put(table, notifiersForTable);
-                    }
-                    notifiersForTable.add(notifier);
+                    DataChangedNotifier<?>[] notifiersForTable = newTableNotifiers.get(table);
+                    newTableNotifiers.put(table,
+                            withNotifier(notifiersForTable == null ? NO_NOTIFIERS : notifiersForTable, notifier));
                 }
+                tableNotifiers = newTableNotifiers;
             }
         }
     }
@@ -2235,14 +3353,21 @@ public abstract class SquidDatabase {
         synchronized (notifiersLock) {
             Collection<SqlTable<?>> tables = notifier.whichTables();
             if (tables == null || tables.isEmpty()) {
-                globalNotifiers.remove(notifier);
+                globalNotifiers = withoutNotifier(globalNotifiers, notifier);
             } else {
+                Map<SqlTable<?>, DataChangedNotifier<?>[]> newTableNotifiers = new HashMap<>(tableNotifiers);
                 for (SqlTable<?> table : tables) {
-                    List<DataChangedNotifier<?>> notifiersForTable = tableNotifiers.get(table);
+                    DataChangedNotifier<?>[] notifiersForTable = newTableNotifiers.get(table);
                     if (notifiersForTable != null) {
-                        notifiersForTable.remove(notifier);
+                        notifiersForTable = withoutNotifier(notifiersForTable, notifier);
+                        if (notifiersForTable.length == 0) {
+                            newTableNotifiers.remove(table);
+                        } else {
+                            newTableNotifiers.put(table, notifiersForTable);
+                        }
                     }
                 }
+                tableNotifiers = newTableNotifiers;
             }
         }
     }
@@ -2253,9 +3378,34 @@ public abstract class SquidDatabase {
      */
     public void unregisterAllDataChangedNotifiers() {
         synchronized (notifiersLock) {
-            globalNotifiers.clear();
-            tableNotifiers.clear();
+            globalNotifiers = NO_NOTIFIERS;
+            tableNotifiers = Collections.emptyMap();
+        }
+    }
+
+    private static DataChangedNotifier<?>[] withNotifier(DataChangedNotifier<?>[] notifiers,
+            DataChangedNotifier<?> notifier) {
+        DataChangedNotifier<?>[] result = new DataChangedNotifier<?>[notifiers.length + 1];
+        System.arraycopy(notifiers, 0, result, 0, notifiers.length);
+        result[notifiers.length] = notifier;
+        return result;
+    }
+
+    // Removes the first occurrence of the notifier, or returns the array unchanged if it isn't present
+    private static DataChangedNotifier<?>[] withoutNotifier(DataChangedNotifier<?>[] notifiers,
+            DataChangedNotifier<?> notifier) {
+        for (int i = 0; i < notifiers.length; i++) {
+            if (notifiers[i].equals(notifier)) {
+                if (notifiers.length == 1) {
+                    return NO_NOTIFIERS;
+                }
+                DataChangedNotifier<?>[] result = new DataChangedNotifier<?>[notifiers.length - 1];
+                System.arraycopy(notifiers, 0, result, 0, i);
+                System.arraycopy(notifiers, i + 1, result, i, notifiers.length - i - 1);
+                return result;
+            }
         }
+        return notifiers;
     }
 
     /**
@@ -2273,38 +3423,74 @@ public abstract class SquidDatabase {
         return dataChangedNotificationsEnabled;
     }
 
+    /**
+     * @return the number of times a registered {@link DataChangedNotifier} accumulated a notification for a change
+     * since this SquidDatabase was created
+     */
+    public long getDataChangedNotificationsAccumulated() {
+        return dataChangedNotificationsAccumulated.get();
+    }
+
+    /**
+     * @return the number of times a {@link DataChangedNotifier} sent its accumulated notifications since this
+     * SquidDatabase was created. Changes made in a transaction are flushed once per notifier when it commits, so this
+     * is typically lower than {@link #getDataChangedNotificationsAccumulated()}.
+     */
+    public long getDataChangedNotificationsFlushed() {
+        return dataChangedNotificationsFlushed.get();
+    }
+
     private void notifyForTable(DataChangedNotifier.DBOperation op, AbstractModel modelValues, SqlTable<?> table,
             long rowId) {
+        TransactionContext context = transactionContext.get();
+        QueryResultCache cache = queryResultCache;
+        if (cache != null) {
+            cache.onTableChanged(table, context);
+        }
         if (!dataChangedNotificationsEnabled) {
             return;
         }
-        synchronized (notifiersLock) {
-            onDataChanged(globalNotifiers, op, modelValues, table, rowId);
-            onDataChanged(tableNotifiers.get(table), op, modelValues, table, rowId);
+        DataChangedNotifier<?>[] global = globalNotifiers;
+        DataChangedNotifier<?>[] forTable = tableNotifiers.get(table);
+        if (global.length == 0 && forTable == null) {
+            // Nothing can have been accumulated outside of a transaction, so there is nothing to flush either
+            return;
         }
-        if (!inTransaction()) {
-            flushAccumulatedNotifications(true);
+        int accumulated = onDataChanged(context, global, op, modelValues, table, rowId);
+        if (forTable != null) {
+            accumulated += onDataChanged(context, forTable, op, modelValues, table, rowId);
+        }
+        if (accumulated > 0) {
+            dataChangedNotificationsAccumulated.addAndGet(accumulated);
+        }
+        if (!context.inTransaction()) {
+            flushAccumulatedNotifications(context, true);
         }
     }
 
-    private void onDataChanged(List<DataChangedNotifier<?>> notifiers, DataChangedNotifier.DBOperation op,
-            AbstractModel modelValues, SqlTable<?> table, long rowId) {
-        if (notifiers != null) {
-            for (DataChangedNotifier<?> notifier : notifiers) {
-                if (notifier.onDataChanged(table, this, op, modelValues, rowId)) {
-                    notifierAccumulator.get().add(notifier);
-                }
+    // Returns the number of notifiers that accumulated a notification
+    private int onDataChanged(TransactionContext context, DataChangedNotifier<?>[] notifiers,
+            DataChangedNotifier.DBOperation op, AbstractModel modelValues, SqlTable<?> table, long rowId) {
+        int accumulated = 0;
+        for (DataChangedNotifier<?> notifier : notifiers) {
+            if (onDataChanged(context, notifier, op, modelValues, table, rowId)) {
+                context.addAccumulatedNotifier(notifier);
+                accumulated++;
             }
         }
+        return accumulated;
     }
 
-    private void flushAccumulatedNotifications(boolean transactionSuccess) {
-        Set<DataChangedNotifier<?>> accumulatedNotifiers = notifierAccumulator.get();
-        if (!accumulatedNotifiers.isEmpty()) {
-            for (DataChangedNotifier<?> notifier : accumulatedNotifiers) {
-                notifier.flushAccumulatedNotifications(this, transactionSuccess && dataChangedNotificationsEnabled);
-            }
-            accumulatedNotifiers.clear();
+    private <T> boolean onDataChanged(TransactionContext context, DataChangedNotifier<T> notifier,
+            DataChangedNotifier.DBOperation op, AbstractModel modelValues, SqlTable<?> table, long rowId) {
+        return notifier.onDataChanged(context.getNotificationObjects(notifier), table, this, op, modelValues, rowId);
+    }
+
+    private void flushAccumulatedNotifications(TransactionContext context, boolean transactionSuccess) {
+        boolean send = transactionSuccess && dataChangedNotificationsEnabled;
+        int flushed = context.flushAccumulatedNotifications(this, send);
+        if (send && flushed > 0) {
+            dataChangedNotificationsFlushed.addAndGet(flushed);
         }
     }
 
@@ -2317,12 +3503,19 @@ public abstract class SquidDatabase {
     public void explainQueryPlan(Class<? extends AbstractModel> modelClass, Query query) {
         query = inferTableForQuery(modelClass, query);
         CompiledStatement compiled = query.compile(getCompileContext());
-        ICursor cursor = rawQuery("EXPLAIN QUERY PLAN " + compiled.sql, compiled.sqlArgs);
+        boolean hasInListValues = beginInListValues(compiled);
         try {
-            Logger.d(Logger.LOG_TAG, "Query plan for: " + compiled.sql);
-            SquidUtilities.dumpCursor(cursor, -1);
+            ICursor cursor = rawQuery("EXPLAIN QUERY PLAN " + compiled.sql, compiled.sqlArgs);
+            try {
+                Logger.d(Logger.LOG_TAG, "Query plan for: " + compiled.sql);
+                SquidUtilities.dumpCursor(cursor, -1);
+            } finally {
+                cursor.close();
+            }
         } finally {
-            cursor.close();
+            if (hasInListValues) {
+                endInListValues(compiled, true);
+            }
         }
     }
 
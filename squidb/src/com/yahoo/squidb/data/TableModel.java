@@ -35,16 +35,11 @@ public abstract class TableModel extends AbstractModel {
      * @return {@value #NO_ID} if this model was not added to the database
      */
     public long getRowId() {
-        Long id = null;
         String idPropertyName = getRowIdProperty().getName();
         if (setValues != null && setValues.containsKey(idPropertyName)) {
-            id = (Long) setValues.get(idPropertyName);
+            return setValues.getLong(idPropertyName, NO_ID);
         } else if (values != null && values.containsKey(idPropertyName)) {
-            id = (Long) values.get(idPropertyName);
-        }
-
-        if (id != null) {
-            return id;
+            return values.getLong(idPropertyName, NO_ID);
         }
         return NO_ID;
     }
@@ -62,6 +57,7 @@ public abstract class TableModel extends AbstractModel {
      * @return this model instance, to allow chaining calls
      */
     public TableModel setRowId(long rowid) {
+        checkNotFrozen();
         if (rowid == NO_ID) {
             clearValue(getRowIdProperty());
         } else {
@@ -88,6 +84,28 @@ public abstract class TableModel extends AbstractModel {
         return getRowId() != NO_ID;
     }
 
+    /**
+     * Table models use an {@link ArrayValuesStorage} laid out by {@link #getValuesStorageSchema()} if a schema is
+     * available, and a {@link MapValuesStorage} otherwise.
+     */
+    @Override
+    protected ValuesStorage newValuesStorage() {
+        ArrayValuesStorage.Schema schema = getValuesStorageSchema();
+        if (schema == null) {
+            return super.newValuesStorage();
+        }
+        return new ArrayValuesStorage(schema);
+    }
+
+    /**
+     * @return the {@link ArrayValuesStorage.Schema} used to store this model's values, or null to use a
+     * {@link MapValuesStorage}. Generated models override this method to return a schema built from the table's
+     * properties.
+     */
+    protected ArrayValuesStorage.Schema getValuesStorageSchema() {
+        return null;
+    }
+
     /**
      * @return a {@link LongProperty representing the rowid of the table}
      */
@@ -102,10 +120,16 @@ public abstract class TableModel extends AbstractModel {
     }
 
     void bindValuesForInsert(Table table, ISQLitePreparedStatement preparedInsert) {
+        bindValuesForInsert(table, preparedInsert, 1);
+    }
+
+    // Binds the values for one row of a multi-row insert, starting at the given bind index
+    void bindValuesForInsert(Table table, ISQLitePreparedStatement preparedInsert, int startIndex) {
         LongProperty rowidProperty = getRowIdProperty();
         Property<?>[] allProperties = table.getProperties();
 
         ModelAndIndex modelAndIndex = new ModelAndIndex(this);
+        modelAndIndex.index = startIndex;
         for (Property<?> property : allProperties) {
             if (property == rowidProperty) {
                 long rowid = getRowId();
@@ -121,6 +145,16 @@ public abstract class TableModel extends AbstractModel {
         }
     }
 
+    void bindValuesForUpdate(Property<?>[] columns, int[] bindIndexes, int rowIdBindIndex,
+            ISQLitePreparedStatement preparedUpdate) {
+        ModelAndIndex modelAndIndex = new ModelAndIndex(this);
+        for (int i = 0; i < columns.length; i++) {
+            modelAndIndex.index = bindIndexes[i];
+            columns[i].accept(valueBindingVisitor, preparedUpdate, modelAndIndex);
+        }
+        preparedUpdate.bindLong(rowIdBindIndex, getRowId());
+    }
+
     private static final class ModelAndIndex {
 
         final TableModel model;
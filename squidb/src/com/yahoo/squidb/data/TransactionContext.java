@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015, Yahoo Inc.
+ * Copyrights licensed under the Apache 2.0 License.
+ * See the accompanying LICENSE file for terms.
+ */
+package com.yahoo.squidb.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// State that a SquidDatabase keeps for each thread: the nesting and success of the transactions the thread has begun,
+// the data changed notifications and table modifications accumulated while they are open, and the thread's prepared
+// statement cache. SquidDatabase looks up the context of the calling thread once per operation and passes it along,
+// rather than keeping a separate ThreadLocal for each of these. A context is only ever used by its own thread.
+final class TransactionContext {
+
+    // Success of each nested transaction, innermost last. If any nested transaction fails, the entire outer
+    // transaction is also considered to have failed.
+    private boolean[] nestedSuccess = new boolean[4];
+    private int depth = 0;
+    private boolean outerTransactionSuccess = true;
+
+    // Notifiers that accumulated notifications, and the objects each of them accumulated. Both are cleared when the
+    // notifications are flushed.
+    private final Set<DataChangedNotifier<?>> accumulatedNotifiers = new HashSet<>();
+    private final Map<DataChangedNotifier<?>, Set<?>> notificationObjects = new HashMap<>();
+
+    // Tables modified in the current transaction, for invalidating the query result cache when it ends
+    final Set<String> tablesModifiedInTransaction = new HashSet<>();
+    boolean rawStatementInTransaction = false;
+
+    PreparedStatementCache preparedStatementCache = null;
+    int preparedStatementCacheGeneration = -1;
+
+    boolean inTransaction() {
+        return depth > 0;
+    }
+
+    boolean isOuterTransactionSuccessful() {
+        return outerTransactionSuccess;
+    }
+
+    void beginTransaction() {
+        if (depth == nestedSuccess.length) {
+            nestedSuccess = Arrays.copyOf(nestedSuccess, depth * 2);
+        }
+        nestedSuccess[depth++] = false;
+    }
+
+    void setTransactionSuccessful() {
+        nestedSuccess[depth - 1] = true;
+    }
+
+    // For when endTransaction throws
+    void unsetTransactionSuccessful() {
+        nestedSuccess[depth - 1] = false;
+    }
+
+    void endTransaction() {
+        if (!nestedSuccess[--depth]) {
+            outerTransactionSuccess = false;
+        }
+    }
+
+    void resetTransaction() {
+        depth = 0;
+        outerTransactionSuccess = true;
+        tablesModifiedInTransaction.clear();
+        rawStatementInTransaction = false;
+    }
+
+    /**
+     * @return the set of objects the given notifier has accumulated on this thread, creating it if necessary
+     */
+    @SuppressWarnings("unchecked")
+    <T> Set<T> getNotificationObjects(DataChangedNotifier<T> notifier) {
+        Set<T> objects = (Set<T>) notificationObjects.get(notifier);
+        if (objects == null) {
+            objects = new HashSet<>();
+            notificationObjects.put(notifier, objects);
+        }
+        return objects;
+    }
+
+    void addAccumulatedNotifier(DataChangedNotifier<?> notifier) {
+        accumulatedNotifiers.add(notifier);
+    }
+
+    /**
+     * Flush the notifications accumulated by each notifier, sending them if shouldSendNotifications is true
+     *
+     * @return the number of notifiers flushed
+     */
+    int flushAccumulatedNotifications(SquidDatabase database, boolean shouldSendNotifications) {
+        int flushed = accumulatedNotifiers.size();
+        if (flushed > 0) {
+            for (DataChangedNotifier<?> notifier : accumulatedNotifiers) {
+                flush(notifier, database, shouldSendNotifications);
+            }
+            accumulatedNotifiers.clear();
+        }
+        // The sets are dropped rather than kept for reuse so that this context doesn't hold on to notifiers that have
+        // since been unregistered. This includes the empty sets of notifiers that didn't accumulate anything.
+        notificationObjects.clear();
+        return flushed;
+    }
+
+    private <T> void flush(DataChangedNotifier<T> notifier, SquidDatabase database, boolean shouldSendNotifications) {
+        notifier.flushAccumulatedNotifications(database, getNotificationObjects(notifier), shouldSendNotifications);
+    }
+}
@@ -166,6 +166,121 @@ public abstract class ValuesStorage {
         }
     }
 
+    /**
+     * Read the value for the given key as a long. Subclasses may override this method to avoid boxing the value. Values
+     * are converted the same way {@link AbstractModel#get(com.yahoo.squidb.sql.Property)} converts them for a
+     * {@link com.yahoo.squidb.sql.Property.LongProperty LongProperty}.
+     *
+     * @param key the name of the value to read
+     * @param valueIfNull the value to return if the value is null or does not exist
+     * @throws ClassCastException if the value could not be converted to a long
+     */
+    public long getLong(String key, long valueIfNull) {
+        Object value = get(key);
+        return value == null ? valueIfNull : castToLong(value);
+    }
+
+    /**
+     * Read the value for the given key as an int. Subclasses may override this method to avoid boxing the value.
+     *
+     * @param key the name of the value to read
+     * @param valueIfNull the value to return if the value is null or does not exist
+     * @throws ClassCastException if the value could not be converted to an int
+     * @see #getLong(String, long)
+     */
+    public int getInt(String key, int valueIfNull) {
+        Object value = get(key);
+        return value == null ? valueIfNull : castToInt(value);
+    }
+
+    /**
+     * Read the value for the given key as a double. Subclasses may override this method to avoid boxing the value.
+     *
+     * @param key the name of the value to read
+     * @param valueIfNull the value to return if the value is null or does not exist
+     * @throws ClassCastException if the value could not be converted to a double
+     * @see #getLong(String, long)
+     */
+    public double getDouble(String key, double valueIfNull) {
+        Object value = get(key);
+        return value == null ? valueIfNull : castToDouble(value);
+    }
+
+    /**
+     * Read the value for the given key as a boolean. Subclasses may override this method to avoid boxing the value.
+     *
+     * @param key the name of the value to read
+     * @param valueIfNull the value to return if the value is null or does not exist
+     * @throws ClassCastException if the value could not be converted to a boolean
+     * @see #getLong(String, long)
+     */
+    public boolean getBoolean(String key, boolean valueIfNull) {
+        Object value = get(key);
+        return value == null ? valueIfNull : castToBoolean(value);
+    }
+
+    // --- conversions shared with AbstractModel's value casting, for non-null values
+
+    static long castToLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
+        } else if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                // Suppress and throw the class cast
+            }
+        }
+        throw new ClassCastException("Value " + value + " could not be cast to Long");
+    }
+
+    static int castToInt(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof String) {
+            try {
+                return Integer.parseInt((String) value);
+            } catch (NumberFormatException e) {
+                // Suppress and throw the class cast
+            }
+        }
+        throw new ClassCastException("Value " + value + " could not be cast to Integer");
+    }
+
+    static double castToDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                return Double.parseDouble((String) value);
+            } catch (NumberFormatException e) {
+                // Suppress and throw the class cast
+            }
+        }
+        throw new ClassCastException("Value " + value + " could not be cast to Double");
+    }
+
+    static boolean castToBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        throw new ClassCastException("Value " + value + " could not be cast to Boolean");
+    }
+
+    /**
+     * @return a counter that changes whenever the contents of this storage are modified, or -1 if this storage does
+     * not track modifications. Used by {@link MergedValuesStorage} to know when a cached hash code is still valid.
+     */
+    int modificationCount() {
+        return -1;
+    }
+
     @Override
     public abstract boolean equals(Object o);
 
@@ -20,12 +20,14 @@ public class CompileContext {
 
     private final VersionCode versionCode;
     private final ArgumentResolver argumentResolver;
+    private final boolean useTempTableForLargeInLists;
     private final Map<String, Object> extras;
 
     public static class Builder {
 
         private VersionCode versionCode;
         private ArgumentResolver argumentResolver = new DefaultArgumentResolver();
+        private boolean useTempTableForLargeInLists = false;
         private Map<String, Object> extras = new HashMap<>();
 
         public Builder(VersionCode versionCode) {
@@ -44,6 +46,28 @@ public class CompileContext {
             return this;
         }
 
+        /**
+         * By default, the values of IN lists that would push a statement past {@link SqlStatement#MAX_VARIABLE_NUMBER}
+         * arguments are inlined into the SQL string, which produces a different (and possibly very long) SQL string
+         * for every list. If this option is enabled, such IN lists are instead compiled to a subquery on
+         * {@link SqlStatement#IN_LIST_VALUES_TABLE}, and the list values are carried in
+         * {@link CompiledStatement#inListValues} to be loaded into that TEMP table before the statement is executed.
+         * {@link com.yahoo.squidb.data.SquidDatabase SquidDatabase} does this automatically.
+         * <p>
+         * TEMP tables are only visible to the connection that created them, so SquidDatabase loads the values and runs
+         * the statement in a transaction to keep both on the same connection. This has a cost for reads: the
+         * transaction is a non-exclusive one (BEGIN IMMEDIATE), so it holds the database's write lock while the
+         * query runs. With write-ahead logging, other readers are not blocked, but writes from other threads or
+         * processes wait until the query (and for {@link com.yahoo.squidb.data.SquidDatabase#query(Class, Query)
+         * query()}, the filling of its cursor) completes. Such queries also don't use the reader connection pool.
+         * Consider leaving this option disabled for databases with frequent concurrent writes, or keeping such
+         * queries short.
+         */
+        public Builder setUseTempTableForLargeInLists(boolean useTempTableForLargeInLists) {
+            this.useTempTableForLargeInLists = useTempTableForLargeInLists;
+            return this;
+        }
+
         public Builder setExtra(String key, Object value) {
             this.extras.put(key, value);
             return this;
@@ -59,6 +83,7 @@ public class CompileContext {
     private CompileContext(Builder builder) {
         this.versionCode = builder.versionCode;
         this.argumentResolver = builder.argumentResolver;
+        this.useTempTableForLargeInLists = builder.useTempTableForLargeInLists;
         this.extras = new HashMap<>(builder.extras);
     }
 
@@ -80,6 +105,15 @@ public class CompileContext {
         return argumentResolver;
     }
 
+    /**
+     * @return true if IN lists too large to bind as arguments should be loaded into a TEMP table instead of being
+     * inlined into the SQL
+     * @see Builder#setUseTempTableForLargeInLists(boolean)
+     */
+    public boolean useTempTableForLargeInLists() {
+        return useTempTableForLargeInLists;
+    }
+
     /**
      * @return the extra value set for the given key, or null if one does not exist
      */
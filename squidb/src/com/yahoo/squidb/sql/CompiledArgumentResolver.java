@@ -8,17 +8,21 @@ package com.yahoo.squidb.sql;
 import com.yahoo.squidb.utility.Logger;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
 
 class CompiledArgumentResolver {
 
-    private static final Pattern REPLACEABLE_ARRAY_PARAM_PATTERN =
-            Pattern.compile(SqlStatement.REPLACEABLE_ARRAY_PARAMETER_REGEX);
+    private static final String IN_LIST_SUBQUERY = "SELECT " + SqlStatement.IN_LIST_VALUE_COLUMN
+            + " FROM temp." + SqlStatement.IN_LIST_VALUES_TABLE
+            + " WHERE " + SqlStatement.IN_LIST_ID_COLUMN + " = " + SqlStatement.REPLACEABLE_PARAMETER;
+
+    // Source of the list ids used by CompiledStatement.InListValues
+    private static final AtomicLong NEXT_IN_LIST_ID = new AtomicLong();
 
     private final String compiledSql;
     private final List<Object> sqlArgs;
@@ -26,12 +30,17 @@ class CompiledArgumentResolver {
     private final boolean needsValidation;
 
     private List<Collection<?>> collectionArgs;
+    // For each collection argument, true if it is the value list of an IN criterion and so can be padded
+    private boolean[] paddableCollectionArgs;
+    // The compiled SQL split around the collection argument placeholders; the i-th collection's values go between
+    // sqlSegments[i] and sqlSegments[i + 1]
+    private String[] sqlSegments;
 
     private static final int CACHE_SIZE = 5;
     private SimpleLruCache<String, String> compiledSqlCache;
-    private SimpleLruCache<String, Object[]> argArrayCache;
 
-    private Object[] compiledArgs = null;
+    // Returned by every call to resolveToCompiledStatement() if none of the arguments can change between compilations
+    private CompiledStatement stableCompiledStatement = null;
 
     public CompiledArgumentResolver(SqlBuilder builder) {
         this.compiledSql = builder.getSqlString();
@@ -40,9 +49,9 @@ class CompiledArgumentResolver {
         this.needsValidation = builder.needsValidation();
         if (compiledSql.contains(SqlStatement.REPLACEABLE_ARRAY_PARAMETER)) {
             collectionArgs = new ArrayList<>();
-            findCollectionArgs();
+            findCollectionArgs(builder);
+            sqlSegments = splitSqlAroundCollectionArgs();
             compiledSqlCache = new SimpleLruCache<>(CACHE_SIZE);
-            argArrayCache = new SimpleLruCache<>(CACHE_SIZE);
         }
     }
 
@@ -50,35 +59,132 @@ class CompiledArgumentResolver {
         return collectionArgs != null;
     }
 
-    private void findCollectionArgs() {
+    private void findCollectionArgs(SqlBuilder builder) {
         for (Object arg : sqlArgs) {
             if (arg instanceof Collection<?>) {
                 collectionArgs.add((Collection<?>) arg);
             }
         }
+        paddableCollectionArgs = new boolean[collectionArgs.size()];
+        for (int i = 0; i < paddableCollectionArgs.length; i++) {
+            paddableCollectionArgs[i] = builder.isInListArg(collectionArgs.get(i));
+        }
+    }
+
+    private String[] splitSqlAroundCollectionArgs() {
+        List<String> segments = new ArrayList<>();
+        int placeholderLength = SqlStatement.REPLACEABLE_ARRAY_PARAMETER.length();
+        int lastStringIndex = 0;
+        int index;
+        while ((index = compiledSql.indexOf(SqlStatement.REPLACEABLE_ARRAY_PARAMETER, lastStringIndex)) >= 0) {
+            segments.add(compiledSql.substring(lastStringIndex, index));
+            lastStringIndex = index + placeholderLength;
+        }
+        segments.add(compiledSql.substring(lastStringIndex));
+        return segments.toArray(new String[segments.size()]);
     }
 
     public CompiledStatement resolveToCompiledStatement() {
-        String cacheKey = hasCollectionArgs() ? getCacheKey() : null;
-        int totalArgSize = calculateArgsSizeWithCollectionArgs();
-        boolean largeArgMode = totalArgSize > SqlStatement.MAX_VARIABLE_NUMBER;
-        return new CompiledStatement(resolveSqlString(cacheKey, largeArgMode),
-                resolveSqlArguments(cacheKey, totalArgSize, largeArgMode), needsValidation);
+        CompiledStatement stable = stableCompiledStatement;
+        if (stable != null) {
+            return stable;
+        }
+        if (hasCollectionArgs()) {
+            // The caches used to resolve collection arguments are not threadsafe
+            synchronized (this) {
+                return resolveToCompiledStatementInternal();
+            }
+        }
+        return resolveToCompiledStatementInternal();
     }
 
-    private String getCacheKey() {
-        StringBuilder cacheKey = new StringBuilder();
+    private CompiledStatement resolveToCompiledStatementInternal() {
+        int[] placeholderCounts = hasCollectionArgs() ? calculatePlaceholderCounts() : null;
+        boolean largeArgMode = hasCollectionArgs() && placeholderCounts == null;
+        String sql = resolveSqlString(placeholderCounts, largeArgMode);
+
+        int argCount = sqlArgs.size();
         if (hasCollectionArgs()) {
-            for (Collection<?> collection : collectionArgs) {
-                cacheKey.append(collection.size()).append(":");
+            argCount -= collectionArgs.size();
+            if (!largeArgMode) {
+                for (int count : placeholderCounts) {
+                    argCount += count;
+                }
+            } else {
+                for (int i = 0; i < collectionArgs.size(); i++) {
+                    if (useTempTable(i)) {
+                        argCount++; // The list id
+                    }
+                }
             }
         }
-        return cacheKey.toString();
+        Object[] resolvedArgs = new Object[argCount];
+        int[] argTypes = new int[argCount];
+        List<CompiledStatement.InListValues> inListValues = null;
+        if (largeArgMode && compileContext.useTempTableForLargeInLists()) {
+            inListValues = new ArrayList<>();
+        }
+        boolean stable = resolveSqlArguments(placeholderCounts, largeArgMode, resolvedArgs, argTypes, inListValues);
+        if (inListValues != null && inListValues.isEmpty()) {
+            inListValues = null;
+        }
+        CompiledStatement result = new CompiledStatement(sql, resolvedArgs, argTypes, needsValidation, inListValues);
+        if (stable && !hasCollectionArgs()) {
+            stableCompiledStatement = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of '?' placeholders to emit for each collection argument. The value lists of IN criterions
+     * are padded to a bucketed size, so that lists of similar sizes share the same SQL (and therefore the same
+     * compiled statement in the database's statement cache). Returns null if even the unpadded arguments exceed
+     * {@link SqlStatement#MAX_VARIABLE_NUMBER}, in which case the collections must be inlined instead.
+     */
+    private int[] calculatePlaceholderCounts() {
+        int collectionCount = collectionArgs.size();
+        int fixedArgCount = sqlArgs.size() - collectionCount;
+        int[] counts = new int[collectionCount];
+        int exactTotal = fixedArgCount;
+        int paddedTotal = fixedArgCount;
+        for (int i = 0; i < collectionCount; i++) {
+            int size = collectionArgs.get(i).size();
+            counts[i] = paddableCollectionArgs[i] ? bucketedSize(size) : size;
+            exactTotal += size;
+            paddedTotal += counts[i];
+        }
+        if (paddedTotal <= SqlStatement.MAX_VARIABLE_NUMBER) {
+            return counts;
+        }
+        if (exactTotal <= SqlStatement.MAX_VARIABLE_NUMBER) {
+            for (int i = 0; i < collectionCount; i++) {
+                counts[i] = collectionArgs.get(i).size();
+            }
+            return counts;
+        }
+        return null;
     }
 
-    private String resolveSqlString(String cacheKey, boolean largeArgMode) {
+    // In large arg mode, true if the i-th collection argument should be loaded into a TEMP table instead of inlined
+    private boolean useTempTable(int collectionIndex) {
+        return paddableCollectionArgs[collectionIndex] && compileContext.useTempTableForLargeInLists();
+    }
+
+    /**
+     * @return the given IN list size rounded up to the next power of two
+     */
+    static int bucketedSize(int size) {
+        if (size <= 2) {
+            return size;
+        }
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private String resolveSqlString(int[] placeholderCounts, boolean largeArgMode) {
         if (hasCollectionArgs()) {
+            String cacheKey = null;
             if (!largeArgMode) {
+                cacheKey = getCacheKey(placeholderCounts);
                 String cachedResult = compiledSqlCache.get(cacheKey);
                 if (cachedResult != null) {
                     return cachedResult;
@@ -86,26 +192,25 @@ class CompiledArgumentResolver {
             }
 
             StringBuilder result = new StringBuilder(compiledSql.length());
-            Matcher m = REPLACEABLE_ARRAY_PARAM_PATTERN.matcher(compiledSql);
-            int index = 0;
-            int lastStringIndex = 0;
-            while (m.find()) {
-                result.append(compiledSql.substring(lastStringIndex, m.start()));
-                Collection<?> values = collectionArgs.get(index);
-                if (largeArgMode) {
-                    SqlUtils.addInlineCollectionToSqlString(result, compileContext.getArgumentResolver(), values);
+            boolean inlinedValues = false;
+            for (int i = 0; i < collectionArgs.size(); i++) {
+                result.append(sqlSegments[i]);
+                if (!largeArgMode) {
+                    appendCollectionVariableStringForSize(result, placeholderCounts[i]);
+                } else if (useTempTable(i)) {
+                    result.append(IN_LIST_SUBQUERY);
                 } else {
-                    appendCollectionVariableStringForSize(result, values.size());
+                    SqlUtils.addInlineCollectionToSqlString(result, compileContext.getArgumentResolver(),
+                            collectionArgs.get(i));
+                    inlinedValues = true;
                 }
-                lastStringIndex = m.end();
-                index++;
             }
-            result.append(compiledSql.substring(lastStringIndex, compiledSql.length()));
+            result.append(sqlSegments[collectionArgs.size()]);
 
             String resultSql = result.toString();
             if (!largeArgMode) {
                 compiledSqlCache.put(cacheKey, resultSql);
-            } else {
+            } else if (inlinedValues) {
                 Logger.w(Logger.LOG_TAG,
                         "The SQL statement \"" + resultSql.substring(0, Math.min(200, resultSql.length()))
                                 + " ...\" had too many arguments to bind, so arguments were inlined into the SQL "
@@ -117,6 +222,14 @@ class CompiledArgumentResolver {
         }
     }
 
+    private String getCacheKey(int[] placeholderCounts) {
+        StringBuilder cacheKey = new StringBuilder();
+        for (int count : placeholderCounts) {
+            cacheKey.append(count).append(":");
+        }
+        return cacheKey.toString();
+    }
+
     private void appendCollectionVariableStringForSize(StringBuilder builder, int size) {
         for (int i = 0; i < size; i++) {
             if (i > 0) {
@@ -126,65 +239,91 @@ class CompiledArgumentResolver {
         }
     }
 
-    private Object[] resolveSqlArguments(String cacheKey, int totalArgSize, boolean largeArgMode) {
-        if (hasCollectionArgs()) {
-            Object[] cachedResult = argArrayCache.get(cacheKey);
-            if (cachedResult == null) {
-                int size = largeArgMode ? calculateArgsSizeWithoutCollectionArgs() : totalArgSize;
-                if (compiledArgs == null || compiledArgs.length != size) {
-                    cachedResult = new Object[size];
+    /**
+     * Resolves the arguments directly into the result array and records the bind type of each one. A collection's
+     * values are expanded in place and padded up to its placeholder count by repeating the last value. In large arg
+     * mode, a collection is either inlined or, if it is loaded into a TEMP table, replaced by its list id. Returns
+     * true if the arguments are stable, i.e. each is an immutable value that the argument resolver returned
+     * unchanged, so the result can be reused for later compilations.
+     */
+    private boolean resolveSqlArguments(int[] placeholderCounts, boolean largeArgMode, Object[] result, int[] types,
+            List<CompiledStatement.InListValues> inListValues) {
+        ArgumentResolver resolver = compileContext.getArgumentResolver();
+        boolean stable = true;
+        int i = 0;
+        int collectionIndex = 0;
+        for (Object arg : sqlArgs) {
+            if (arg instanceof Collection<?>) {
+                if (largeArgMode) {
+                    if (useTempTable(collectionIndex)) {
+                        CompiledStatement.InListValues values = resolveInListValues((Collection<?>) arg);
+                        inListValues.add(values);
+                        result[i] = values.listId;
+                        types[i] = CompiledStatement.ARG_TYPE_LONG;
+                        i++;
+                    }
+                    collectionIndex++;
                 } else {
-                    cachedResult = compiledArgs;
+                    int start = i;
+                    int end = i + placeholderCounts[collectionIndex++];
+                    for (Object value : (Collection<?>) arg) {
+                        if (i == end) {
+                            break;
+                        }
+                        result[i] = resolver.resolveArgument(value);
+                        types[i] = CompiledStatement.argumentType(result[i]);
+                        i++;
+                    }
+                    // Duplicate values don't change the meaning of an IN list, so pad it by repeating the last value
+                    for (; i < end; i++) {
+                        if (i > start) {
+                            result[i] = result[i - 1];
+                            types[i] = types[i - 1];
+                        } else {
+                            result[i] = null;
+                            types[i] = CompiledStatement.ARG_TYPE_NULL;
+                        }
+                    }
                 }
-                argArrayCache.put(cacheKey, cachedResult);
-            }
-            compiledArgs = cachedResult;
-            populateCompiledArgs(largeArgMode);
-        } else {
-            if (compiledArgs == null) {
-                compiledArgs = sqlArgs.toArray(new Object[sqlArgs.size()]);
+            } else {
+                Object resolved = resolver.resolveArgument(arg);
+                result[i] = resolved;
+                types[i] = CompiledStatement.argumentType(resolved);
+                stable = stable && resolved == arg && isImmutableValue(arg);
+                i++;
             }
         }
-        return applyArgumentResolver(compiledArgs);
+        return stable;
     }
 
-    private Object[] applyArgumentResolver(Object[] args) {
+    private CompiledStatement.InListValues resolveInListValues(Collection<?> collection) {
         ArgumentResolver resolver = compileContext.getArgumentResolver();
-        Object[] result = new Object[args.length];
-        for (int i = 0; i < args.length; i++) {
-            result[i] = resolver.resolveArgument(args[i]);
-        }
-        return result;
-    }
-
-    private int calculateArgsSizeWithCollectionArgs() {
-        int startSize = sqlArgs.size();
-        if (hasCollectionArgs()) {
-            for (Collection<?> collection : collectionArgs) {
-                startSize += (collection.size() - 1);
+        Object[] values = new Object[collection.size()];
+        int[] valueTypes = new int[values.length];
+        int i = 0;
+        for (Object value : collection) {
+            if (i == values.length) {
+                break;
             }
+            values[i] = resolver.resolveArgument(value);
+            valueTypes[i] = CompiledStatement.argumentType(values[i]);
+            i++;
         }
-        return startSize;
-    }
-
-    private int calculateArgsSizeWithoutCollectionArgs() {
-        return sqlArgs.size() - (hasCollectionArgs() ? collectionArgs.size() : 0);
+        if (i < values.length) { // The collection shrank while it was being read
+            values = Arrays.copyOf(values, i);
+            valueTypes = Arrays.copyOf(valueTypes, i);
+        }
+        return new CompiledStatement.InListValues(NEXT_IN_LIST_ID.incrementAndGet(), values, valueTypes);
     }
 
-    private void populateCompiledArgs(boolean largeArgMode) {
-        int i = 0;
-        for (Object arg : sqlArgs) {
-            if (arg instanceof Collection<?>) {
-                if (!largeArgMode) {
-                    Collection<?> values = (Collection<?>) arg;
-                    for (Object obj : values) {
-                        compiledArgs[i++] = obj;
-                    }
-                }
-            } else {
-                compiledArgs[i++] = arg;
-            }
+    private static boolean isImmutableValue(Object arg) {
+        if (arg == null) {
+            return true;
         }
+        Class<?> type = arg.getClass();
+        return type == String.class || type == Long.class || type == Integer.class || type == Double.class
+                || type == Boolean.class || type == Float.class || type == Short.class || type == Byte.class
+                || type == byte[].class;
     }
 
     @SuppressWarnings("serial")
@@ -5,22 +5,106 @@
  */
 package com.yahoo.squidb.sql;
 
+import java.util.List;
+
 /**
  * A compiled SQLite statement
  */
 public class CompiledStatement {
 
+    /** Bind type for a null argument */
+    public static final int ARG_TYPE_NULL = 0;
+    /** Bind type for an integral {@link Number} argument, bound as a long */
+    public static final int ARG_TYPE_LONG = 1;
+    /** Bind type for a {@link Double} or {@link Float} argument, bound as a double */
+    public static final int ARG_TYPE_DOUBLE = 2;
+    /** Bind type for a {@link Boolean} argument, bound as the long 1 or 0 */
+    public static final int ARG_TYPE_BOOLEAN = 3;
+    /** Bind type for a byte[] argument, bound as a blob */
+    public static final int ARG_TYPE_BLOB = 4;
+    /** Bind type for any other argument, bound as the result of its toString() method */
+    public static final int ARG_TYPE_STRING = 5;
+
     /** The raw SQL of this statement. May contain '?' placeholders for SQL arguments. */
     public final String sql;
-    /** Arguments that will bind to replaceable characters in the statement. */
+    /** Arguments that will bind to replaceable characters in the statement. Must not be modified. */
     public final Object[] sqlArgs;
+    /** The bind type of each of the {@link #sqlArgs}, one of the ARG_TYPE constants. Must not be modified. */
+    public final int[] sqlArgTypes;
     /** Flag that will be set to true if the statement should be compiled again with additional parentheses to guard
      * against malicious SQL */
     public final boolean needsValidation;
+    /**
+     * The values of IN lists that were too large to bind as arguments and that must be loaded into
+     * {@link SqlStatement#IN_LIST_VALUES_TABLE} before the statement is executed, or null if there are none. See
+     * {@link CompileContext.Builder#setUseTempTableForLargeInLists(boolean)}.
+     */
+    public final List<InListValues> inListValues;
+
+    /**
+     * The values of one IN list to be loaded into {@link SqlStatement#IN_LIST_VALUES_TABLE}. The statement selects
+     * the values from the rows whose {@link SqlStatement#IN_LIST_ID_COLUMN} is {@link #listId}.
+     */
+    public static final class InListValues {
+
+        /** A list id unique to this compilation of the statement */
+        public final long listId;
+        /** The resolved values of the list. Must not be modified. */
+        public final Object[] values;
+        /** The bind type of each of the {@link #values}, one of the ARG_TYPE constants. Must not be modified. */
+        public final int[] valueTypes;
+
+        InListValues(long listId, Object[] values, int[] valueTypes) {
+            this.listId = listId;
+            this.values = values;
+            this.valueTypes = valueTypes;
+        }
+    }
 
     public CompiledStatement(String sql, Object[] args, boolean needsValidation) {
+        this(sql, args, argumentTypes(args), needsValidation, null);
+    }
+
+    CompiledStatement(String sql, Object[] args, int[] argTypes, boolean needsValidation,
+            List<InListValues> inListValues) {
         this.sql = sql;
         this.sqlArgs = args;
+        this.sqlArgTypes = argTypes;
         this.needsValidation = needsValidation;
+        this.inListValues = inListValues;
+    }
+
+    /**
+     * @return the bind type of the given argument, one of the ARG_TYPE constants. Arguments are classified using the
+     * same rules as android.database.DatabaseUtils.bindObjectToProgram
+     */
+    public static int argumentType(Object arg) {
+        if (arg == null) {
+            return ARG_TYPE_NULL;
+        } else if (arg instanceof Double || arg instanceof Float) {
+            return ARG_TYPE_DOUBLE;
+        } else if (arg instanceof Number) {
+            return ARG_TYPE_LONG;
+        } else if (arg instanceof Boolean) {
+            return ARG_TYPE_BOOLEAN;
+        } else if (arg instanceof byte[]) {
+            return ARG_TYPE_BLOB;
+        } else {
+            return ARG_TYPE_STRING;
+        }
+    }
+
+    /**
+     * @return the bind types of the given arguments, or null if the arguments are null
+     */
+    public static int[] argumentTypes(Object[] args) {
+        if (args == null) {
+            return null;
+        }
+        int[] types = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = argumentType(args[i]);
+        }
+        return types;
     }
 }
@@ -75,4 +75,22 @@ public final class CompoundSelect extends CompilableWithArguments {
         builder.sql.append(operator.toString()).append(" ");
         query.appendToSqlBuilder(builder, forSqlValidation);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        CompoundSelect that = (CompoundSelect) o;
+        return operator == that.operator && query.equals(that.query);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * operator.hashCode() + query.hashCode();
+    }
 }
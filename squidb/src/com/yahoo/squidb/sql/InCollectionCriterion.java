@@ -19,7 +19,7 @@ class InCollectionCriterion extends BinaryCriterion {
     @Override
     protected void afterPopulateOperator(SqlBuilder builder, boolean forSqlValidation) {
         builder.sql.append("(");
-        builder.addCollectionArg(collection);
+        builder.addInListArg(collection);
         builder.sql.append(")");
     }
 
@@ -5,6 +5,8 @@
  */
 package com.yahoo.squidb.sql;
 
+import java.util.Arrays;
+
 /**
  * A JOIN clause used in a SELECT statement.
  * <p>
@@ -110,6 +112,7 @@ public class Join extends CompilableWithArguments {
     void appendToSqlBuilder(SqlBuilder builder, boolean forSqlValidation) {
         builder.sql.append(joinType).append(" JOIN ");
         joinTable.appendToSqlBuilder(builder, forSqlValidation);
+        builder.addReferencedTable(joinTable);
         builder.sql.append(" ");
         if (criterions != null && criterions.length > 0) {
             builder.sql.append("ON ");
@@ -130,4 +133,29 @@ public class Join extends CompilableWithArguments {
             builder.sql.append(")");
         }
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        Join join = (Join) o;
+        return joinType == join.joinType
+                && joinTable.equals(join.joinTable)
+                && Arrays.equals(criterions, join.criterions)
+                && Arrays.equals(usings, join.usings);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = joinTable.hashCode();
+        result = 31 * result + joinType.hashCode();
+        result = 31 * result + Arrays.hashCode(criterions);
+        result = 31 * result + Arrays.hashCode(usings);
+        return result;
+    }
 }
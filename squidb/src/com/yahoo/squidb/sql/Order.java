@@ -87,4 +87,25 @@ public class Order extends CompilableWithArguments {
                     + orderType.toString());
         }
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        Order order = (Order) o;
+        return orderType == order.orderType
+                && (expression != null ? expression.equals(order.expression) : order.expression == null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = expression != null ? expression.hashCode() : 0;
+        result = 31 * result + orderType.hashCode();
+        return result;
+    }
 }
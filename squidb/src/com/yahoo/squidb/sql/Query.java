@@ -9,7 +9,9 @@ import com.yahoo.squidb.data.ViewModel;
 import com.yahoo.squidb.utility.SquidUtilities;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Builder class for a SQLite SELECT statement
@@ -36,6 +38,8 @@ public final class Query extends TableStatement {
 
     private boolean needsValidation = false;
 
+    private int cachedHashCode = 0; // only populated once the query is frozen
+
     private ArrayList<Field<?>> selectAllCache = null;
 
     private Query(List<Field<?>> fields) {
@@ -497,14 +501,79 @@ public final class Query extends TableStatement {
         return needsValidation;
     }
 
+    /**
+     * Queries are compared structurally: two queries are equal if they select the same fields from the same table
+     * with equal joins, criterions, grouping, compound selects, ordering, limit, and offset. Unlike comparing the
+     * compiled SQL, this does not require compiling either query.
+     */
     @Override
     public boolean equals(Object o) {
-        return this == o || !(o == null || getClass() != o.getClass()) && this.toString().equals(o.toString());
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        Query other = (Query) o;
+        if (immutable && other.immutable && hashCode() != other.hashCode()) {
+            return false;
+        }
+        return distinct == other.distinct
+                && (table != null ? table.equals(other.table) : other.table == null)
+                && listsEqual(fields, other.fields)
+                && listsEqual(joins, other.joins)
+                && listsEqual(criterions, other.criterions)
+                && listsEqual(groupByFields, other.groupByFields)
+                && listsEqual(havings, other.havings)
+                && listsEqual(compoundSelects, other.compoundSelects)
+                && listsEqual(orders, other.orders)
+                && limit.equals(other.limit)
+                && offset.equals(other.offset);
     }
 
+    /**
+     * The hash code is computed from the same state as {@link #equals(Object)}. Once the query has been
+     * {@link #freeze() frozen} it is computed only once and then cached, so frozen queries are cheap to use as map
+     * keys.
+     */
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        int result = cachedHashCode;
+        if (result == 0) {
+            result = computeHashCode();
+            if (immutable) {
+                cachedHashCode = result;
+            }
+        }
+        return result;
+    }
+
+    private int computeHashCode() {
+        int result = distinct ? 1 : 0;
+        result = 31 * result + (table != null ? table.hashCode() : 0);
+        result = 31 * result + listHashCode(fields);
+        result = 31 * result + listHashCode(joins);
+        result = 31 * result + listHashCode(criterions);
+        result = 31 * result + listHashCode(groupByFields);
+        result = 31 * result + listHashCode(havings);
+        result = 31 * result + listHashCode(compoundSelects);
+        result = 31 * result + listHashCode(orders);
+        result = 31 * result + limit.hashCode();
+        result = 31 * result + offset.hashCode();
+        return result;
+    }
+
+    // null and empty lists are equivalent; neither adds anything to the compiled SQL
+    private boolean listsEqual(List<?> list1, List<?> list2) {
+        if (isEmpty(list1)) {
+            return isEmpty(list2);
+        }
+        return list1.equals(list2);
+    }
+
+    private int listHashCode(List<?> list) {
+        return isEmpty(list) ? 0 : list.hashCode();
     }
 
     @Override
@@ -546,6 +615,7 @@ public final class Query extends TableStatement {
         }
         builder.sql.append(" FROM ");
         table.appendToSqlBuilder(builder, forSqlValidation);
+        builder.addReferencedTable(table);
     }
 
     private void visitJoinClause(SqlBuilder builder, boolean forSqlValidation) {
@@ -650,6 +720,18 @@ public final class Query extends TableStatement {
         return SubqueryTable.fromQuery(this, alias, modelClass, properties);
     }
 
+    /**
+     * @return the set of tables and views this query reads from. This includes the tables of joins, compound selects,
+     * and subqueries, as well as the tables read by the queries underlying any views. Tables that are only mentioned
+     * in raw SQL strings (e.g. raw selections or {@link Field#field(String) raw fields}) are not included.
+     */
+    public Set<SqlTable<?>> getReferencedTables() {
+        SqlBuilder builder = new SqlBuilder(CompileContext.defaultContextForVersionCode(VERSION_FOR_TO_STRING), false);
+        builder.referencedTables = new HashSet<>();
+        appendToSqlBuilder(builder, false);
+        return builder.referencedTables;
+    }
+
     /**
      * Return this query wrapped in a Function object, making it suitable for inclusion in another SELECT clause as a
      * subquery or for constructing {@link Criterion}s. Note: the query must have exactly one column in its
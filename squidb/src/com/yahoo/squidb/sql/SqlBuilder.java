@@ -9,7 +9,10 @@ import com.yahoo.squidb.utility.VersionCode;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 public final class SqlBuilder {
 
@@ -27,6 +30,12 @@ public final class SqlBuilder {
 
     private boolean needsValidation = false;
 
+    // Only non-null when collecting the tables a query reads from; see Query#getReferencedTables()
+    Set<SqlTable<?>> referencedTables = null;
+
+    // Collection arguments that are the value list of an IN criterion; see CompiledArgumentResolver
+    private Set<Collection<?>> inListArgs = null;
+
     SqlBuilder(CompileContext compileContext, boolean withBoundArguments) {
         this.compileContext = compileContext;
         this.sqliteVersion = compileContext.getVersionCode();
@@ -99,6 +108,36 @@ public final class SqlBuilder {
         }
     }
 
+    /**
+     * Record that the statement being built reads from the given table. Does nothing unless this builder is collecting
+     * referenced tables. For views, the tables read by the view's query are recorded as well.
+     */
+    void addReferencedTable(SqlTable<?> table) {
+        if (referencedTables != null && table != null && referencedTables.add(table) && table instanceof View) {
+            SqlBuilder viewBuilder = new SqlBuilder(compileContext, false);
+            viewBuilder.referencedTables = referencedTables;
+            ((View) table).query.appendToSqlBuilder(viewBuilder, false);
+        }
+    }
+
+    /**
+     * Add the value list of an IN criterion. Unlike other collection arguments, the values of an IN list may be
+     * padded with duplicates when the statement is compiled.
+     */
+    void addInListArg(Collection<?> value) {
+        if (value != null && args != null) {
+            if (inListArgs == null) {
+                inListArgs = Collections.newSetFromMap(new IdentityHashMap<Collection<?>, Boolean>());
+            }
+            inListArgs.add(value);
+        }
+        addCollectionArg(value);
+    }
+
+    boolean isInListArg(Collection<?> value) {
+        return inListArgs != null && inListArgs.contains(value);
+    }
+
     void addCollectionArg(Collection<?> value) {
         if (value != null) {
             if (args == null) {
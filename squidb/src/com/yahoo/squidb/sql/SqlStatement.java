@@ -24,6 +24,15 @@ public interface SqlStatement {
      */
     int MAX_VARIABLE_NUMBER = 999;
 
+    /**
+     * Name of the TEMP table that holds the values of IN lists too large to bind as arguments, when
+     * {@link CompileContext#useTempTableForLargeInLists()} is enabled. Each list's values are stored as rows with
+     * columns {@link #IN_LIST_ID_COLUMN} and {@link #IN_LIST_VALUE_COLUMN}.
+     */
+    String IN_LIST_VALUES_TABLE = "squidb_in_list_values";
+    String IN_LIST_ID_COLUMN = "list_id";
+    String IN_LIST_VALUE_COLUMN = "value";
+
     /**
      * Compile this object into a SQL string and its arguments. This method is deprecated in favor of
      * {@link #compile(CompileContext)}
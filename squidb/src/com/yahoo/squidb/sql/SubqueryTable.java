@@ -51,6 +51,20 @@ public class SubqueryTable extends QueryTable {
         return new SubqueryTable(modelClass, newProperties, newAlias, query);
     }
 
+    /**
+     * In addition to the alias, SubqueryTables are compared by their backing {@link Query}, so that subqueries with
+     * the same alias but different SQL are not equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        return super.equals(o) && query.equals(((SubqueryTable) o).query);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * super.hashCode() + query.hashCode();
+    }
+
     @Override
     void appendToSqlBuilder(SqlBuilder builder, boolean forSqlValidation) {
         builder.sql.append("(");
@@ -7,6 +7,9 @@ package com.yahoo.squidb.sql;
 
 import com.yahoo.squidb.utility.VersionCode;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * A statement that operates on a {@link SqlTable}
  */
@@ -49,24 +52,57 @@ public abstract class TableStatement extends CompilableWithArguments implements
         REPLACE
     }
 
-    private CompiledArgumentResolver compiledArgumentResolver = null;
+    /**
+     * The compiled form of this statement and the CompileContext it was compiled with. Instances are immutable so
+     * that they can be safely published to other threads through {@link #compileCache}.
+     */
+    private static final class CompileCache {
+
+        final CompileContext compileContext;
+        final CompiledArgumentResolver compiledArgumentResolver;
+
+        CompileCache(CompileContext compileContext, CompiledArgumentResolver compiledArgumentResolver) {
+            this.compileContext = compileContext;
+            this.compiledArgumentResolver = compiledArgumentResolver;
+        }
+    }
+
+    private final AtomicReference<CompileCache> compileCache = new AtomicReference<>();
+
+    // Incremented each time the compile cache is invalidated, so that a compile racing with a modification of this
+    // statement can't publish a cache entry built from the old state
+    private final AtomicInteger compileCacheGeneration = new AtomicInteger();
 
     /**
      * Deprecated, use {@link #compile(CompileContext)} instead
      */
     @Override
     @Deprecated
-    public final synchronized CompiledStatement compile(VersionCode sqliteVersion) {
+    public final CompiledStatement compile(VersionCode sqliteVersion) {
         return compile(CompileContext.defaultContextForVersionCode(sqliteVersion));
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The compiled SQL is cached until this statement is modified or compiled with a different CompileContext
+     * instance, so compiling an unmodified statement repeatedly with the same CompileContext (as SquidDatabase does)
+     * only builds the SQL once. Compiling does not lock, so frozen statements can be compiled from many threads
+     * concurrently.
+     */
     @Override
-    public final synchronized CompiledStatement compile(CompileContext compileContext) {
-        if (compiledArgumentResolver == null) {
+    public final CompiledStatement compile(CompileContext compileContext) {
+        CompileCache cache = compileCache.get();
+        if (cache == null || cache.compileContext != compileContext) {
+            int generation = compileCacheGeneration.get();
             SqlBuilder builder = buildSql(compileContext, true, false);
-            compiledArgumentResolver = new CompiledArgumentResolver(builder);
+            cache = new CompileCache(compileContext, new CompiledArgumentResolver(builder));
+            compileCache.set(cache);
+            if (compileCacheGeneration.get() != generation) {
+                compileCache.compareAndSet(cache, null);
+            }
         }
-        return compiledArgumentResolver.resolveToCompiledStatement();
+        return cache.compiledArgumentResolver.resolveToCompiledStatement();
     }
 
     /**
@@ -87,7 +123,8 @@ public abstract class TableStatement extends CompilableWithArguments implements
     /**
      * Invalidate the compile cache for this statement
      */
-    protected final synchronized void invalidateCompileCache() {
-        compiledArgumentResolver = null;
+    protected final void invalidateCompileCache() {
+        compileCacheGeneration.incrementAndGet();
+        compileCache.set(null);
     }
 }